@@ -201,6 +201,9 @@
 	      <xsl:if test="@depth!=''">
 		depth=<xsl:value-of select="@depth"/>
 	      </xsl:if>
+	      <xsl:if test="@temp!=''">
+		temp=<font style="font-family:courier new"><xsl:value-of select="@temp"/></font>
+	      </xsl:if>
 	    </nobr>
 	  </td>
 	</tr>
@@ -0,0 +1,169 @@
+package lang24;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import lang24.common.report.*;
+
+/**
+ * A batch compiler compiling many source files concurrently.
+ *
+ * The source files are either all LANG'24 source files within a directory (and
+ * its subdirectories) or the source files listed in a text file, one per line.
+ * Each source file is compiled within its own compilation context (see
+ * {@link Compilation}) on a fixed pool of threads using the command line
+ * options given for the batch; the destination file name of each source file is
+ * derived from its source file name. Once all source files are compiled, the
+ * aggregate throughput is reported.
+ */
+public class BatchCompiler {
+
+	/** The directory or the file listing the source files. */
+	private final String batch;
+
+	/** The number of threads. */
+	private final int numThreads;
+
+	/** The command line options common to all source files. */
+	private final HashMap<String, String> optValues;
+
+	/**
+	 * The outcome of a compilation of a single source file.
+	 *
+	 * @param srcFileName The source file name.
+	 * @param numLines    The number of lines of the source file.
+	 * @param nanos       The compilation time in nanoseconds.
+	 * @param error       The error message (or {@code null} if the compilation
+	 *                    succeeded).
+	 */
+	private record Outcome(String srcFileName, long numLines, long nanos, String error) {
+	}
+
+	/**
+	 * Constructs a new batch compiler.
+	 *
+	 * @param batch      The directory or the file listing the source files.
+	 * @param numThreads The number of threads.
+	 * @param optValues  Values of command line options indexed by their command
+	 *                   line option name.
+	 */
+	public BatchCompiler(final String batch, final int numThreads, final Map<String, String> optValues) {
+		this.batch = batch;
+		this.numThreads = numThreads;
+		this.optValues = new HashMap<String, String>(optValues);
+		this.optValues.remove("--batch");
+		this.optValues.remove("--threads");
+		if (this.optValues.remove("--src-file-name") != null)
+			Report.warning("Source file ignored in batch mode.");
+		if (this.optValues.remove("--dst-file-name") != null)
+			Report.warning("Destination file ignored in batch mode.");
+		if (this.optValues.get("--profile") != null && !this.optValues.get("--profile").matches("--profile|")) {
+			Report.warning("Profile file ignored in batch mode.");
+			this.optValues.put("--profile", "");
+		}
+	}
+
+	/**
+	 * Compiles all source files of the batch and reports the throughput.
+	 */
+	public void compile() {
+		final List<String> srcFileNames = srcFileNames();
+		if (srcFileNames.isEmpty())
+			throw new Report.Error("No source files in '" + batch + "'.");
+
+		final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		final Vector<Outcome> outcomes = new Vector<Outcome>();
+		final long start = System.nanoTime();
+		try {
+			final Vector<Future<Outcome>> futures = new Vector<Future<Outcome>>();
+			for (final String srcFileName : srcFileNames)
+				futures.add(executor.submit(() -> compile(srcFileName)));
+			for (final Future<Outcome> future : futures)
+				outcomes.add(future.get());
+		} catch (final InterruptedException | ExecutionException ex) {
+			throw new Report.InternalError();
+		} finally {
+			executor.shutdown();
+		}
+		final long wallNanos = System.nanoTime() - start;
+
+		// Report the outcomes in the order the source files were given.
+		long numLines = 0;
+		long sumNanos = 0;
+		int numFailed = 0;
+		for (final Outcome outcome : outcomes) {
+			numLines += outcome.numLines;
+			sumNanos += outcome.nanos;
+			if (outcome.error == null)
+				Report.info(String.format("Compiled '%s' in %.3f ms.", outcome.srcFileName, outcome.nanos / 1e6));
+			else {
+				numFailed++;
+				Report.warning(String.format("Failed to compile '%s' in %.3f ms: %s", outcome.srcFileName,
+						outcome.nanos / 1e6, outcome.error));
+			}
+		}
+		Report.info(String.format(
+				"Batch of %d source files (%d lines) compiled on %d threads in %.3f ms: %.1f files/s, %.1f lines/s, speedup %.2f.",
+				outcomes.size(), numLines, numThreads, wallNanos / 1e6, outcomes.size() / (wallNanos / 1e9),
+				numLines / (wallNanos / 1e9), (double) sumNanos / wallNanos));
+		if (numFailed > 0)
+			throw new Report.Error(numFailed + " of " + outcomes.size() + " source files failed to compile.");
+	}
+
+	/**
+	 * Compiles a single source file within a new compilation context.
+	 *
+	 * @param srcFileName The source file name.
+	 * @return The outcome of the compilation.
+	 */
+	private Outcome compile(final String srcFileName) {
+		long numLines = 0;
+		try (final Stream<String> lines = Files.lines(Paths.get(srcFileName))) {
+			numLines = lines.count();
+		} catch (final IOException | UncheckedIOException __) {
+			// The compilation itself reports the unreadable source file.
+		}
+
+		String error = null;
+		final long start = System.nanoTime();
+		try {
+			Compilation.begin();
+			final HashMap<String, String> srcOptValues = new HashMap<String, String>(optValues);
+			srcOptValues.put("--src-file-name", srcFileName);
+			Compiler.compile(srcOptValues);
+		} catch (final Report.Error ex) {
+			error = ex.getMessage();
+		} catch (final RuntimeException | StackOverflowError | java.lang.InternalError ex) {
+			error = ex.toString();
+		} finally {
+			Compilation.end();
+		}
+		return new Outcome(srcFileName, numLines, System.nanoTime() - start, error);
+	}
+
+	/**
+	 * Returns the names of all source files of the batch.
+	 *
+	 * @return The names of all source files of the batch.
+	 */
+	private List<String> srcFileNames() {
+		final Path path = Paths.get(batch);
+		try {
+			if (Files.isDirectory(path)) {
+				try (final Stream<Path> paths = Files.walk(path)) {
+					return paths.filter(p -> p.toString().endsWith(".lang24")).map(Path::toString).sorted()
+							.collect(Collectors.toList());
+				}
+			} else {
+				try (final Stream<String> lines = Files.lines(path)) {
+					return lines.map(String::trim).filter(line -> !line.isEmpty()).collect(Collectors.toList());
+				}
+			}
+		} catch (final IOException | UncheckedIOException ex) {
+			throw new Report.Error("Cannot read batch '" + batch + "': " + ex.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,415 @@
+package lang24;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+import lang24.common.report.*;
+import lang24.data.asm.*;
+import lang24.data.mem.*;
+import lang24.phase.regall.*;
+
+/**
+ * A per-function cache of allocated machine code.
+ *
+ * Once the machine code of all functions has been generated, the code of each
+ * function is brought into a canonical form where temporaries and anonymous
+ * labels are numbered in the order of their first occurrence. Together with the
+ * layout of the function's frame and the number of registers, the canonical
+ * form determines the outcome of liveness analysis and register allocation of
+ * the function, so it is used as the function's key in the compile cache (see
+ * {@link CompileCache}). Functions found in the cache get their allocated code
+ * restored and skip liveness analysis and register allocation; only the
+ * remaining functions pass through these phases and are stored in the cache
+ * afterwards.
+ */
+public class CodeCache {
+
+	/** An anonymous label within the text of an instruction. */
+	private static final Pattern ANON_LABEL = Pattern.compile("(?<![\\w$`])L\\d+(?!\\w)");
+
+	/** A canonical label within the text of an instruction. */
+	private static final Pattern CANON_LABEL = Pattern.compile("`L(\\d+)");
+
+	/** The kinds of instructions as serialized. */
+	private static final byte OPER = 0, MOVE = 1, LABEL = 2;
+
+	/** The compile cache. */
+	private final CompileCache cache;
+
+	/** The number of registers. */
+	private final int numRegs;
+
+	/**
+	 * A function whose code is being cached.
+	 */
+	private class Function {
+
+		/** The function's code. */
+		final Code code;
+
+		/** The temporaries indexed by their canonical numbers. */
+		final Vector<MemTemp> temps = new Vector<MemTemp>();
+
+		/** The canonical numbers of temporaries. */
+		final HashMap<MemTemp, Integer> tempIds = new HashMap<MemTemp, Integer>();
+
+		/** The names of anonymous labels indexed by their canonical numbers. */
+		final Vector<String> labelNames = new Vector<String>();
+
+		/** The canonical numbers of anonymous labels indexed by their names. */
+		final HashMap<String, Integer> labelIds = new HashMap<String, Integer>();
+
+		/** Labels indexed by their names. */
+		final HashMap<String, MemLabel> labels = new HashMap<String, MemLabel>();
+
+		/** The key of the function's code (before register allocation). */
+		final String key;
+
+		/**
+		 * Constructs a new function and computes the key of its code.
+		 *
+		 * @param code The function's code.
+		 */
+		Function(final Code code) {
+			this.code = code;
+			final StringBuilder canon = new StringBuilder();
+			canon.append("regs ").append(numRegs).append('\n');
+			canon.append("frame ").append(label(code.frame.label)).append(' ').append(code.frame.depth).append(' ')
+					.append(code.frame.size).append(' ').append(code.frame.locsSize).append(' ')
+					.append(code.frame.argsSize).append(' ').append(temp(code.frame.FP)).append(' ')
+					.append(temp(code.frame.RV)).append('\n');
+			canon.append("code ").append(label(code.entryLabel)).append(' ').append(label(code.exitLabel))
+					.append(' ').append(code.tempSize).append('\n');
+			for (final AsmInstr instr : code.instrs) {
+				canonical(instr, canon);
+				canon.append('\n');
+			}
+			this.key = cache.codeKey(canon.toString());
+		}
+
+		/**
+		 * Returns the canonical number of a temporary.
+		 *
+		 * @param temp The temporary.
+		 * @return The canonical number of the temporary.
+		 */
+		int temp(final MemTemp temp) {
+			Integer id = tempIds.get(temp);
+			if (id == null) {
+				id = temps.size();
+				temps.add(temp);
+				tempIds.put(temp, id);
+			}
+			return id;
+		}
+
+		/**
+		 * Returns the canonical name of a label.
+		 *
+		 * @param label The label.
+		 * @return The canonical name of the label.
+		 */
+		String label(final MemLabel label) {
+			labels.putIfAbsent(label.name, label);
+			return label(label.name);
+		}
+
+		/**
+		 * Returns the canonical name of a label.
+		 *
+		 * @param name The name of the label.
+		 * @return The canonical name of the label.
+		 */
+		String label(final String name) {
+			if (name.startsWith("_"))
+				return name;
+			Integer id = labelIds.get(name);
+			if (id == null) {
+				id = labelNames.size();
+				labelNames.add(name);
+				labelIds.put(name, id);
+			}
+			return "`L" + id;
+		}
+
+		/**
+		 * Returns the text of an instruction with all anonymous labels in their
+		 * canonical form.
+		 *
+		 * @param instr The text of an instruction.
+		 * @return The canonical text of the instruction.
+		 */
+		String text(final String instr) {
+			return ANON_LABEL.matcher(instr).replaceAll(match -> Matcher.quoteReplacement(label(match.group())));
+		}
+
+		/**
+		 * Appends the canonical form of an instruction.
+		 *
+		 * @param instr The instruction.
+		 * @param canon The canonical form of the code so far.
+		 */
+		void canonical(final AsmInstr instr, final StringBuilder canon) {
+			if (instr instanceof AsmLABEL label) {
+				canon.append(label(label.getLabel())).append(':');
+				return;
+			}
+			canon.append(instr instanceof AsmMOVE ? "move " : "oper ").append(text(((AsmOPER) instr).instr()));
+			canon.append(" |");
+			for (final MemTemp use : instr.uses())
+				canon.append(' ').append(temp(use));
+			canon.append(" |");
+			for (final MemTemp def : instr.defs())
+				canon.append(' ').append(temp(def));
+			canon.append(" |");
+			for (final MemLabel jump : instr.jumps())
+				canon.append(' ').append(label(jump));
+		}
+
+		/**
+		 * Serializes the allocated code of the function.
+		 *
+		 * @return The serialized code (or {@code null} if the code refers to labels
+		 *         not present before register allocation).
+		 * @throws IOException If the code cannot be serialized.
+		 */
+		byte[] serialize() throws IOException {
+			final int numLabels = labelNames.size();
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			out.writeLong(code.tempSize);
+			out.writeInt(code.instrs.size());
+			for (final AsmInstr instr : code.instrs) {
+				if (instr instanceof AsmLABEL label) {
+					out.writeByte(LABEL);
+					out.writeUTF(label(label.getLabel()));
+					continue;
+				}
+				out.writeByte(instr instanceof AsmMOVE ? MOVE : OPER);
+				out.writeUTF(text(((AsmOPER) instr).instr()));
+				writeTemps(out, instr.uses());
+				writeTemps(out, instr.defs());
+				if (!(instr instanceof AsmMOVE)) {
+					out.writeInt(instr.jumps().size());
+					for (final MemLabel jump : instr.jumps())
+						out.writeUTF(label(jump));
+				}
+			}
+			if (labelNames.size() != numLabels)
+				return null;
+			final HashMap<MemTemp, Integer> tempToReg = RegAll.tempToReg.get();
+			out.writeInt(temps.size());
+			for (final MemTemp temp : temps) {
+				final Integer reg = tempToReg.get(temp);
+				out.writeInt(reg == null ? -1 : reg);
+			}
+			out.flush();
+			return bytes.toByteArray();
+		}
+
+		/**
+		 * Writes canonical numbers of temporaries.
+		 *
+		 * @param out   The output stream.
+		 * @param temps The temporaries.
+		 * @throws IOException If the temporaries cannot be written.
+		 */
+		private void writeTemps(final DataOutputStream out, final Vector<MemTemp> temps) throws IOException {
+			out.writeInt(temps.size());
+			for (final MemTemp temp : temps)
+				out.writeInt(temp(temp));
+		}
+
+		/**
+		 * Restores the allocated code of the function.
+		 *
+		 * @param serialized The serialized code.
+		 * @return The registers of temporaries of the restored code (or
+		 *         {@code null} if the code cannot be restored).
+		 */
+		HashMap<MemTemp, Integer> restore(final byte[] serialized) {
+			final Vector<MemTemp> temps = new Vector<MemTemp>(this.temps);
+			final Vector<AsmInstr> instrs = new Vector<AsmInstr>();
+			final HashMap<MemTemp, Integer> regs = new HashMap<MemTemp, Integer>();
+			final long tempSize;
+			try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(serialized))) {
+				tempSize = in.readLong();
+				final int numInstrs = in.readInt();
+				for (int i = 0; i < numInstrs; i++) {
+					final byte kind = in.readByte();
+					if (kind == LABEL) {
+						final MemLabel label = labels.get(labelName(in.readUTF()));
+						if (label == null)
+							return null;
+						instrs.add(new AsmLABEL(label));
+						continue;
+					}
+					final String instr = labelNames(in.readUTF());
+					final Vector<MemTemp> uses = readTemps(in, temps);
+					final Vector<MemTemp> defs = readTemps(in, temps);
+					if (kind == MOVE) {
+						instrs.add(new AsmMOVE(instr, uses, defs));
+						continue;
+					}
+					final Vector<MemLabel> jumps = new Vector<MemLabel>();
+					final int numJumps = in.readInt();
+					for (int j = 0; j < numJumps; j++) {
+						final MemLabel jump = labels.get(labelName(in.readUTF()));
+						if (jump == null)
+							return null;
+						jumps.add(jump);
+					}
+					instrs.add(new AsmOPER(instr, uses, defs, jumps));
+				}
+				final int numTemps = in.readInt();
+				if (numTemps != temps.size())
+					return null;
+				for (int t = 0; t < numTemps; t++) {
+					final int reg = in.readInt();
+					if (reg >= 0)
+						regs.put(temps.get(t), reg);
+				}
+			} catch (final IOException | IndexOutOfBoundsException __) {
+				return null;
+			}
+			code.instrs.clear();
+			code.instrs.addAll(instrs);
+			code.tempSize = tempSize;
+			return regs;
+		}
+
+		/**
+		 * Reads canonical numbers of temporaries and returns the temporaries, where
+		 * temporaries not seen before are created anew.
+		 *
+		 * @param in    The input stream.
+		 * @param temps The temporaries indexed by their canonical numbers.
+		 * @return The temporaries.
+		 * @throws IOException If the temporaries cannot be read.
+		 */
+		private Vector<MemTemp> readTemps(final DataInputStream in, final Vector<MemTemp> temps) throws IOException {
+			final Vector<MemTemp> readTemps = new Vector<MemTemp>();
+			final int numTemps = in.readInt();
+			for (int t = 0; t < numTemps; t++) {
+				final int id = in.readInt();
+				if (id < 0 || id > temps.size())
+					throw new IOException();
+				if (id == temps.size())
+					temps.add(new MemTemp());
+				readTemps.add(temps.get(id));
+			}
+			return readTemps;
+		}
+
+		/**
+		 * Returns the name of a label given its canonical name.
+		 *
+		 * @param canonName The canonical name of the label.
+		 * @return The name of the label.
+		 */
+		private String labelName(final String canonName) {
+			final Matcher matcher = CANON_LABEL.matcher(canonName);
+			return matcher.matches() ? labelNames.get(Integer.parseInt(matcher.group(1))) : canonName;
+		}
+
+		/**
+		 * Returns the text of an instruction with all canonical labels replaced by
+		 * their names.
+		 *
+		 * @param canonInstr The canonical text of an instruction.
+		 * @return The text of the instruction.
+		 */
+		private String labelNames(final String canonInstr) {
+			return CANON_LABEL.matcher(canonInstr).replaceAll(
+					match -> Matcher.quoteReplacement(labelNames.get(Integer.parseInt(match.group(1)))));
+		}
+
+	}
+
+	/** The functions whose code has been restored from the cache. */
+	private final Vector<Function> hits = new Vector<Function>();
+
+	/** The functions whose code has not been found in the cache. */
+	private final Vector<Function> misses = new Vector<Function>();
+
+	/** The registers of temporaries of the restored code. */
+	private final HashMap<MemTemp, Integer> hitRegs = new HashMap<MemTemp, Integer>();
+
+	/** The code of all functions in the original order. */
+	private Vector<Code> codes = null;
+
+	/**
+	 * Constructs a new per-function cache of allocated machine code.
+	 *
+	 * @param cache   The compile cache holding the code.
+	 * @param numRegs The number of registers.
+	 */
+	public CodeCache(final CompileCache cache, final int numRegs) {
+		this.cache = cache;
+		this.numRegs = numRegs;
+	}
+
+	/**
+	 * Restores the allocated code of all functions found in the cache.
+	 *
+	 * @param codes The code of all functions (before register allocation).
+	 * @return The code of functions not found in the cache.
+	 */
+	public Vector<Code> restore(final Vector<Code> codes) {
+		this.codes = new Vector<Code>(codes);
+		final Vector<Code> missedCodes = new Vector<Code>();
+		for (final Code code : codes) {
+			final Function function = new Function(code);
+			final byte[] serialized = cache.loadCode(function.key);
+			final HashMap<MemTemp, Integer> regs = serialized == null ? null : function.restore(serialized);
+			if (regs == null) {
+				misses.add(function);
+				missedCodes.add(code);
+			} else {
+				hits.add(function);
+				hitRegs.putAll(regs);
+			}
+		}
+		return missedCodes;
+	}
+
+	/**
+	 * Stores the allocated code of all functions not found in the cache.
+	 *
+	 * @return The code of all functions (after register allocation) in the
+	 *         original order.
+	 */
+	public Vector<Code> store() {
+		RegAll.tempToReg.get().putAll(hitRegs);
+		for (final Function function : misses) {
+			try {
+				final byte[] serialized = function.serialize();
+				if (serialized != null)
+					cache.storeCode(function.key, serialized);
+			} catch (final IOException ex) {
+				Report.warning("Cannot store function code in cache: " + ex.getMessage());
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * Returns the number of functions whose code has been restored from the
+	 * cache.
+	 *
+	 * @return The number of functions whose code has been restored.
+	 */
+	public int numHits() {
+		return hits.size();
+	}
+
+	/**
+	 * Returns the number of functions whose code has not been found in the cache.
+	 *
+	 * @return The number of functions whose code has not been found.
+	 */
+	public int numMisses() {
+		return misses.size();
+	}
+
+}
@@ -0,0 +1,176 @@
+package lang24;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * A compilation context.
+ *
+ * A compilation context holds all the state of a compilation of a single source
+ * file, i.e., command line options, trees, attributes, chunks, code etc. Each
+ * compilation runs within its own context, so that several source files can be
+ * compiled one after another or concurrently within the same process. The
+ * context of the compilation running in the current thread is returned by
+ * {@link #current()}.
+ *
+ * Parts of the compiler do not refer to the context directly. Instead, they
+ * declare their state as (static) {@link Local} values whose actual values are
+ * stored in the current compilation context.
+ */
+public class Compilation {
+
+	/** The compilation context of the current thread. */
+	private static final ThreadLocal<Compilation> current = ThreadLocal.withInitial(Compilation::new);
+
+	/** The number of per-compilation values declared so far. */
+	private static final AtomicInteger numLocals = new AtomicInteger(0);
+
+	/**
+	 * The values of this compilation indexed by the index of their declaration.
+	 * The array is replaced by an updated copy whenever a value is set, so that
+	 * several threads can share the same compilation context.
+	 */
+	private volatile Object[] values = new Object[16];
+
+	/**
+	 * Constructs a new compilation context.
+	 */
+	public Compilation() {
+	}
+
+	/**
+	 * Returns the compilation context of the current thread.
+	 *
+	 * @return The compilation context of the current thread.
+	 */
+	public static Compilation current() {
+		return current.get();
+	}
+
+	/**
+	 * Starts a new compilation within the current thread, i.e., replaces the
+	 * compilation context of the current thread with a new one.
+	 *
+	 * @return The new compilation context.
+	 */
+	public static Compilation begin() {
+		final Compilation compilation = new Compilation();
+		current.set(compilation);
+		return compilation;
+	}
+
+	/**
+	 * Ends the compilation within the current thread and releases its context.
+	 */
+	public static void end() {
+		current.remove();
+	}
+
+	/**
+	 * Runs an action within this compilation context in the current thread, e.g.,
+	 * in a worker thread helping with this compilation, and restores the previous
+	 * context of the current thread afterwards.
+	 *
+	 * @param action The action.
+	 */
+	public void run(final Runnable action) {
+		final Compilation previous = current.get();
+		current.set(this);
+		try {
+			action.run();
+		} finally {
+			current.set(previous);
+		}
+	}
+
+	/**
+	 * A value that each compilation has its own copy of.
+	 *
+	 * @param <Value> The type of the value.
+	 */
+	public static class Local<Value> {
+
+		/** The index of this value within each compilation context. */
+		private final int index;
+
+		/** Produces the initial value. */
+		private final Supplier<? extends Value> initial;
+
+		/**
+		 * Declares a new per-compilation value.
+		 *
+		 * @param initial Produces the initial value in each compilation context.
+		 */
+		public Local(final Supplier<? extends Value> initial) {
+			this.index = numLocals.getAndIncrement();
+			this.initial = initial;
+		}
+
+		/**
+		 * Returns the value within the current compilation context.
+		 *
+		 * @return The value.
+		 */
+		public Value get() {
+			return current().get(this);
+		}
+
+		/**
+		 * Sets the value within the current compilation context.
+		 *
+		 * @param value The value.
+		 */
+		public void set(final Value value) {
+			current().set(this, value);
+		}
+
+		/**
+		 * Releases the value within the current compilation context so that it can
+		 * be garbage collected once the compilation no longer needs it. If the value
+		 * is needed again, the initial value is produced anew.
+		 */
+		public void release() {
+			current().set(this, null);
+		}
+
+	}
+
+	/**
+	 * Returns the value of a per-compilation value within this compilation
+	 * context.
+	 *
+	 * @param <Value> The type of the value.
+	 * @param local   The per-compilation value.
+	 * @return The value.
+	 */
+	@SuppressWarnings("unchecked")
+	public <Value> Value get(final Local<Value> local) {
+		final Object[] values = this.values;
+		if (local.index < values.length && values[local.index] != null)
+			return (Value) values[local.index];
+		synchronized (this) {
+			Value value = local.index < this.values.length ? (Value) this.values[local.index] : null;
+			if (value == null) {
+				value = local.initial.get();
+				if (value != null)
+					set(local, value);
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Sets the value of a per-compilation value within this compilation context.
+	 *
+	 * @param <Value> The type of the value.
+	 * @param local   The per-compilation value.
+	 * @param value   The value.
+	 */
+	public synchronized <Value> void set(final Local<Value> local, final Value value) {
+		final Object[] values = Arrays.copyOf(this.values, Math.max(this.values.length, local.index + 1));
+		values[local.index] = value;
+		this.values = values;
+	}
+
+}
@@ -0,0 +1,367 @@
+package lang24;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import lang24.common.report.*;
+
+/**
+ * A content-addressed on-disk cache of compilation results.
+ *
+ * A compilation is identified by a key, i.e., a hash of the compiler itself (its
+ * class files), the text of the source file and the command line options that
+ * affect the results. An entry of the cache holds the contents of all files
+ * produced by the compilation (the assembly and the logs of phases), each under
+ * the role it plays (e.g., {@code mms} or {@code xml:seman}), so that a hit
+ * restores them under the names the current compilation would have used.
+ *
+ * The cache also holds the allocated machine code of single functions (see
+ * {@link CodeCache}) so that functions that have not changed need not pass
+ * through the back end again.
+ *
+ * Entries are stored as single files within the cache directory. The total
+ * size of all entries is kept below the limit by evicting the least recently
+ * used ones, where the last modification time of an entry records its last use.
+ * The numbers of hits, misses, stores and evictions are kept in file
+ * {@code stats} within the cache directory.
+ */
+public class CompileCache {
+
+	/** The caches opened so far indexed by their directories. */
+	private static final ConcurrentHashMap<Path, CompileCache> caches = new ConcurrentHashMap<Path, CompileCache>();
+
+	/** The hash of the compiler (or {@code null} if not computed yet). */
+	private static String compilerHash = null;
+
+	/** The suffix of entry files holding results of entire compilations. */
+	private static final String ENTRY_SUFFIX = ".entry";
+
+	/** The suffix of entry files holding machine code of single functions. */
+	private static final String CODE_SUFFIX = ".code";
+
+	/** The cache directory. */
+	private final Path dir;
+
+	/** The maximal total size of all entries in bytes. */
+	private final long limit;
+
+	/** The statistics of this cache. */
+	private final Properties stats = new Properties();
+
+	/**
+	 * Constructs a new cache.
+	 *
+	 * @param dir   The cache directory.
+	 * @param limit The maximal total size of all entries in bytes.
+	 */
+	private CompileCache(final Path dir, final long limit) {
+		this.dir = dir;
+		this.limit = limit;
+		try {
+			Files.createDirectories(dir);
+		} catch (final IOException ex) {
+			throw new Report.Error("Cannot create cache directory '" + dir + "'.");
+		}
+		try (final Reader reader = Files.newBufferedReader(dir.resolve("stats"))) {
+			stats.load(reader);
+		} catch (final IOException __) {
+			// No statistics yet.
+		}
+	}
+
+	/**
+	 * Returns the cache within the specified directory.
+	 *
+	 * @param dirName The name of the cache directory.
+	 * @param limit   The maximal total size of all entries in bytes.
+	 * @return The cache.
+	 */
+	public static CompileCache open(final String dirName, final long limit) {
+		final Path dir = Paths.get(dirName).toAbsolutePath().normalize();
+		return caches.computeIfAbsent(dir, __ -> new CompileCache(dir, limit));
+	}
+
+	/**
+	 * Computes the key of a compilation.
+	 *
+	 * @param srcFileName The name of the source file.
+	 * @param optValues   The values of the command line options that affect the
+	 *                    results of the compilation.
+	 * @return The key (or {@code null} if the source file cannot be read).
+	 */
+	public String key(final String srcFileName, final SortedMap<String, String> optValues) {
+		final byte[] src;
+		try {
+			src = Files.readAllBytes(Paths.get(srcFileName));
+		} catch (final IOException __) {
+			return null;
+		}
+		final MessageDigest digest = digest();
+		digest.update(compilerHash().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		for (final Map.Entry<String, String> optValue : optValues.entrySet()) {
+			digest.update((optValue.getKey() + "=" + optValue.getValue()).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+		digest.update(src);
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	 * Computes the key of the machine code of a single function.
+	 *
+	 * @param canonicalCode The canonical form of the function's code before
+	 *                      register allocation together with everything else the
+	 *                      allocated code depends on.
+	 * @return The key.
+	 */
+	public String codeKey(final String canonicalCode) {
+		final MessageDigest digest = digest();
+		digest.update(compilerHash().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(canonicalCode.getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	 * Loads the machine code of a single function.
+	 *
+	 * @param key The key of the function's code.
+	 * @return The serialized code (or {@code null} on a miss).
+	 */
+	public synchronized byte[] loadCode(final String key) {
+		final Path entry = dir.resolve(key + CODE_SUFFIX);
+		try {
+			final byte[] code = Files.readAllBytes(entry);
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+			count("functionHits");
+			return code;
+		} catch (final IOException __) {
+			count("functionMisses");
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the machine code of a single function.
+	 *
+	 * @param key  The key of the function's code.
+	 * @param code The serialized code.
+	 */
+	public synchronized void storeCode(final String key, final byte[] code) {
+		try {
+			final Path tmpEntry = Files.createTempFile(dir, key, ".tmp");
+			try {
+				Files.write(tmpEntry, code);
+			} catch (final IOException ex) {
+				Files.deleteIfExists(tmpEntry);
+				throw ex;
+			}
+			Files.move(tmpEntry, dir.resolve(key + CODE_SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException ex) {
+			Report.warning("Cannot store function code in cache: " + ex.getMessage());
+			return;
+		}
+		evict();
+	}
+
+	/**
+	 * Restores the files produced by a compilation.
+	 *
+	 * @param key       The key of the compilation.
+	 * @param fileNames The names of files indexed by their roles.
+	 * @return {@code true} on a hit, i.e., if all files have been restored,
+	 *         {@code false} otherwise.
+	 */
+	public synchronized boolean restore(final String key, final Map<String, String> fileNames) {
+		final Path entry = dir.resolve(key + ENTRY_SUFFIX);
+		final LinkedHashMap<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+			final int numFiles = in.readInt();
+			for (int f = 0; f < numFiles; f++) {
+				final String role = in.readUTF();
+				final byte[] content = new byte[in.readInt()];
+				in.readFully(content);
+				contents.put(role, content);
+			}
+		} catch (final IOException __) {
+			count("misses");
+			return false;
+		}
+		if (!contents.keySet().equals(fileNames.keySet())) {
+			count("misses");
+			return false;
+		}
+		try {
+			for (final Map.Entry<String, byte[]> content : contents.entrySet())
+				Files.write(Paths.get(fileNames.get(content.getKey())), content.getValue());
+			// Record the use of the entry.
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (final IOException ex) {
+			throw new Report.Error("Cannot restore compilation results from cache: " + ex.getMessage());
+		}
+		count("hits");
+		return true;
+	}
+
+	/**
+	 * Stores the files produced by a compilation.
+	 *
+	 * @param key       The key of the compilation.
+	 * @param fileNames The names of files indexed by their roles.
+	 */
+	public synchronized void store(final String key, final Map<String, String> fileNames) {
+		final Path entry = dir.resolve(key + ENTRY_SUFFIX);
+		try {
+			final Path tmpEntry = Files.createTempFile(dir, key, ".tmp");
+			try (final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmpEntry)))) {
+				out.writeInt(fileNames.size());
+				for (final Map.Entry<String, String> fileName : fileNames.entrySet()) {
+					final byte[] content = Files.readAllBytes(Paths.get(fileName.getValue()));
+					out.writeUTF(fileName.getKey());
+					out.writeInt(content.length);
+					out.write(content);
+				}
+			} catch (final IOException ex) {
+				Files.deleteIfExists(tmpEntry);
+				throw ex;
+			}
+			Files.move(tmpEntry, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException ex) {
+			Report.warning("Cannot store compilation results in cache: " + ex.getMessage());
+			return;
+		}
+		count("stores");
+		evict();
+	}
+
+	/**
+	 * Evicts the least recently used entries until the total size of all entries
+	 * is within the limit.
+	 */
+	private void evict() {
+		final List<Path> entries;
+		try (final Stream<Path> paths = Files.list(dir)) {
+			entries = paths.filter(path -> path.toString().endsWith(ENTRY_SUFFIX) || path.toString().endsWith(CODE_SUFFIX))
+					.collect(Collectors.toList());
+		} catch (final IOException __) {
+			return;
+		}
+		final HashMap<Path, Long> sizes = new HashMap<Path, Long>();
+		final HashMap<Path, Long> times = new HashMap<Path, Long>();
+		long size = 0;
+		for (final Path entry : entries) {
+			try {
+				sizes.put(entry, Files.size(entry));
+				times.put(entry, Files.getLastModifiedTime(entry).toMillis());
+				size += sizes.get(entry);
+			} catch (final IOException __) {
+				// Evicted by someone else.
+			}
+		}
+		if (size <= limit)
+			return;
+		final Vector<Path> lruEntries = new Vector<Path>(sizes.keySet());
+		lruEntries.sort(Comparator.comparingLong(times::get));
+		for (final Path entry : lruEntries) {
+			if (size <= limit)
+				break;
+			try {
+				Files.deleteIfExists(entry);
+				size -= sizes.get(entry);
+				count("evictions");
+			} catch (final IOException __) {
+				// Try the next one.
+			}
+		}
+	}
+
+	/**
+	 * Increments a statistic of this cache and saves all statistics.
+	 *
+	 * @param statName The name of the statistic.
+	 */
+	private void count(final String statName) {
+		stats.setProperty(statName, Long.toString(stat(statName) + 1));
+		try (final Writer writer = Files.newBufferedWriter(dir.resolve("stats"))) {
+			stats.store(writer, "LANG'24 compile cache statistics");
+		} catch (final IOException __) {
+			// Statistics are not essential.
+		}
+	}
+
+	/**
+	 * Returns a statistic of this cache.
+	 *
+	 * @param statName The name of the statistic.
+	 * @return The value of the statistic.
+	 */
+	public synchronized long stat(final String statName) {
+		return Long.parseLong(stats.getProperty(statName, "0"));
+	}
+
+	/**
+	 * Returns a summary of the statistics of this cache.
+	 *
+	 * @return The summary of the statistics.
+	 */
+	public synchronized String stats() {
+		final long hits = stat("hits");
+		final long misses = stat("misses");
+		final long functionHits = stat("functionHits");
+		final long functionMisses = stat("functionMisses");
+		return String.format("%d hits, %d misses (%.1f%% hit rate), %d function hits, %d function misses, %d stores, %d evictions",
+				hits, misses, hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses), functionHits, functionMisses,
+				stat("stores"), stat("evictions"));
+	}
+
+	/**
+	 * Returns a new SHA-256 message digest.
+	 *
+	 * @return A new SHA-256 message digest.
+	 */
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException __) {
+			throw new Report.InternalError();
+		}
+	}
+
+	/**
+	 * Returns the hash of the compiler, i.e., of all its class files (or of the
+	 * archive containing them).
+	 *
+	 * @return The hash of the compiler.
+	 */
+	private static synchronized String compilerHash() {
+		if (compilerHash != null)
+			return compilerHash;
+		final MessageDigest digest = digest();
+		try {
+			final Path location = Paths.get(Compiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (Files.isDirectory(location)) {
+				try (final Stream<Path> paths = Files.walk(location)) {
+					for (final Path path : paths.filter(path -> path.toString().endsWith(".class")).sorted()
+							.collect(Collectors.toList())) {
+						digest.update(location.relativize(path).toString().getBytes(StandardCharsets.UTF_8));
+						digest.update(Files.readAllBytes(path));
+					}
+				}
+			} else
+				digest.update(Files.readAllBytes(location));
+		} catch (final Exception ex) {
+			throw new Report.Error("Cannot identify the compiler for caching: " + ex.getMessage());
+		}
+		compilerHash = HexFormat.of().formatHex(digest.digest());
+		return compilerHash;
+	}
+
+}
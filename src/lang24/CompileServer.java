@@ -0,0 +1,124 @@
+package lang24;
+
+import java.io.*;
+import java.net.*;
+import lang24.common.report.*;
+
+/**
+ * A compile server keeping the compiler (and the JVM it runs in) warm across
+ * compilations.
+ *
+ * The server listens on a local socket. Each line received is a compile request
+ * consisting of command line options separated by white space (see
+ * {@link lang24}). For each request the full pipeline is run in-process and a
+ * single line is sent back:
+ *
+ * <ul>
+ *
+ * <li><code>OK </code><i>millis</i><code> cold|warm</code> if the compilation
+ * succeeded, or</li>
+ *
+ * <li><code>ERROR </code><i>millis</i><code> cold|warm </code><i>message</i> if
+ * it did not.</li>
+ *
+ * </ul>
+ *
+ * The first request served by the process is reported as cold, all subsequent
+ * ones as warm. A line <code>quit</code> closes the connection, a line
+ * <code>shutdown</code> stops the server.
+ */
+public class CompileServer {
+
+	/** The port the server listens on. */
+	private final int port;
+
+	/** The number of requests served so far. */
+	private int numRequests = 0;
+
+	/** The latency of the first (cold) request in nanoseconds. */
+	private long coldNanos = 0;
+
+	/** The total latency of all subsequent (warm) requests in nanoseconds. */
+	private long warmNanos = 0;
+
+	/** Whether the server has been asked to stop. */
+	private boolean shutdown = false;
+
+	/**
+	 * Constructs a new compile server.
+	 *
+	 * @param port The port the server listens on.
+	 */
+	public CompileServer(final int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Serves compile requests until the server is asked to stop.
+	 */
+	public void serve() {
+		try (final ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+			Report.info("Compile server listening on port " + serverSocket.getLocalPort() + ".");
+			while (!shutdown) {
+				try (final Socket socket = serverSocket.accept();
+						final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+						final PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true)) {
+					String line;
+					while ((line = in.readLine()) != null) {
+						line = line.trim();
+						if (line.isEmpty())
+							continue;
+						if (line.equals("quit"))
+							break;
+						if (line.equals("shutdown")) {
+							shutdown = true;
+							break;
+						}
+						out.println(serve(line.split("\\s+")));
+					}
+				} catch (final IOException ex) {
+					Report.warning("Compile server connection failed: " + ex.getMessage());
+				}
+			}
+		} catch (final IOException ex) {
+			throw new Report.Error("Cannot start compile server on port " + port + ": " + ex.getMessage());
+		}
+		if (numRequests > 1)
+			Report.info(String.format("Compile server served %d requests (cold %.3f ms, warm average %.3f ms).",
+					numRequests, coldNanos / 1e6, warmNanos / 1e6 / (numRequests - 1)));
+	}
+
+	/**
+	 * Serves a single compile request.
+	 *
+	 * @param opts Command line arguments (see {@link lang24}).
+	 * @return The response line.
+	 */
+	private String serve(final String[] opts) {
+		final boolean cold = numRequests == 0;
+		String error = null;
+		final long start = System.nanoTime();
+		try {
+			Compilation.begin();
+			Compiler.compile(opts);
+		} catch (final Report.Error ex) {
+			error = ex.getMessage();
+		} catch (final RuntimeException | StackOverflowError | java.lang.InternalError ex) {
+			error = ex.toString();
+		} finally {
+			Compilation.end();
+		}
+		final long nanos = System.nanoTime() - start;
+
+		numRequests++;
+		if (cold)
+			coldNanos = nanos;
+		else
+			warmNanos += nanos;
+
+		final String latency = String.format("%.3f %s", nanos / 1e6, cold ? "cold" : "warm");
+		Report.info("Request #" + numRequests + ": " + latency + (error == null ? "" : " (failed)") + ".");
+		return error == null ? "OK " + latency : "ERROR " + latency + " " + error.replace('\n', ' ');
+	}
+
+}
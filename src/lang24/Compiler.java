@@ -4,8 +4,14 @@ import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
 import java.util.*;
+import java.util.concurrent.*;
+import lang24.common.profile.*;
 import lang24.common.report.*;
-import lang24.data.mem.MemTemp;
+import lang24.data.asm.*;
+import lang24.data.ast.compact.*;
+import lang24.data.ast.tree.*;
+import lang24.data.lin.*;
+import lang24.data.mem.*;
 import lang24.phase.lexan.*;
 import lang24.phase.livean.LiveAn;
 import lang24.phase.synan.*;
@@ -15,6 +21,7 @@ import lang24.phase.memory.*;
 import lang24.phase.regall.RegAll;
 import lang24.phase.imcgen.*;
 import lang24.phase.imclin.*;
+import lang24.phase.imcopt.*;
 import lang24.phase.asmdump.*;
 import lang24.phase.asmgen.*;
 
@@ -32,14 +39,17 @@ public class Compiler {
 
 	/** All valid phases name of the compiler. */
 	private static final Vector<String> phaseNames = new Vector<String>(Arrays.asList("none", "all", "lexan", "synan",
-			"abstr", "seman", "memory", "imcgen", "imclin", "asmgen", "livean", "regall", "asmdump"));
+			"abstr", "seman", "memory", "imcgen", "imclin", "imcopt", "asmgen", "livean", "regall", "asmdump"));
 
 	/** Names of command line options. */
 	private static final HashSet<String> cmdLineOptNames = new HashSet<String>(
-			Arrays.asList("--src-file-name", "--dst-file-name", "--target-phase", "--logged-phase", "--xml", "--xsl", "--num-regs"));
+			Arrays.asList("--src-file-name", "--dst-file-name", "--target-phase", "--logged-phase", "--xml", "--xsl", "--num-regs", "--server",
+					"--batch", "--threads", "--profile", "--cache",
+					"--cache-size", "--compact-ast", "--parallel", "--heap-budget", "--opt-level"));
 
 	/** Values of command line options indexed by their command line option name. */
-	private static final HashMap<String, String> cmdLineOptValues = new HashMap<String, String>();
+	private static final Compilation.Local<HashMap<String, String>> cmdLineOptValues = new Compilation.Local<HashMap<String, String>>(
+			HashMap::new);
 
 	/**
 	 * Returns the value of a command line option.
@@ -48,7 +58,7 @@ public class Compiler {
 	 * @return Command line option value.
 	 */
 	public static final String cmdLineOptValue(final String cmdLineOptName) {
-		return cmdLineOptValues.get(cmdLineOptName);
+		return cmdLineOptValues.get().get(cmdLineOptName);
 	}
 
 	/**
@@ -60,206 +70,543 @@ public class Compiler {
 		try {
 			Report.info("This is LANG'24 compiler:");
 
-			// Scan the command line.
-			for (int optc = 0; optc < opts.length; optc++) {
-				if (opts[optc].startsWith("--")) {
-					// Command line option.
-					final String cmdLineOptName = opts[optc].replaceFirst("=.*", "");
-					final String cmdLineOptValue = opts[optc].replaceFirst("^[^=]*=", "");
-					if (!cmdLineOptNames.contains(cmdLineOptName)) {
-						Report.warning("Unknown command line option '" + cmdLineOptName + "'.");
-						continue;
+			Compilation.begin();
+			scanCmdLine(opts);
+			if (cmdLineOptValue("--server") != null) {
+				// Keep the compiler running and compile sources on request.
+				final int port;
+				try {
+					port = Integer.parseInt(cmdLineOptValue("--server"));
+				} catch (final NumberFormatException __) {
+					throw new Report.Error("Illegal server port '" + cmdLineOptValue("--server") + "'.");
+				}
+				new CompileServer(port).serve();
+			} else if (cmdLineOptValue("--batch") != null) {
+				// Compile many source files concurrently.
+				int numThreads = Runtime.getRuntime().availableProcessors();
+				if (cmdLineOptValue("--threads") != null) {
+					try {
+						numThreads = Integer.parseInt(cmdLineOptValue("--threads"));
+					} catch (final NumberFormatException __) {
+						numThreads = 0;
 					}
-					if (cmdLineOptValues.get(cmdLineOptName) == null) {
-						// Not yet successfully specified command line option.
-
-						// Check the value of the command line option.
-						if ((cmdLineOptName.equals("--target-phase") && (!phaseNames.contains(cmdLineOptValue)))
-								|| (cmdLineOptName.equals("--logged-phase")
-										&& (!phaseNames.contains(cmdLineOptValue)))) {
-							Report.warning("Illegal phase specification in '" + opts[optc] + "' ignored.");
-							continue;
-						}
-
-						cmdLineOptValues.put(cmdLineOptName, cmdLineOptValue);
-					} else {
-						// Repeated specification of a command line option.
-						Report.warning("Command line option '" + opts[optc] + "' ignored.");
+					if (numThreads <= 0)
+						throw new Report.Error("Illegal number of threads '" + cmdLineOptValue("--threads") + "'.");
+				}
+				new BatchCompiler(cmdLineOptValue("--batch"), numThreads, cmdLineOptValues.get()).compile();
+			} else {
+				checkCmdLine();
+				runCachedPhases();
+			}
+
+			// Let's hope we ever come this far.
+			// But beware:
+			// 1. The generated translation of the source file might be erroneous :-o
+			// 2. The source file might not be what the programmer intended it to be ;-)
+			Report.info("Done.");
+		} catch (final Report.Error error) {
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compiles a single source file within the running compiler. The compilation
+	 * runs within the current compilation context, which must be a fresh one (see
+	 * {@link Compilation#begin()}).
+	 * 
+	 * @param opts Command line arguments (see {@link lang24}).
+	 */
+	static void compile(final String[] opts) {
+		scanCmdLine(opts);
+		checkCmdLine();
+		runCachedPhases();
+	}
+
+	/**
+	 * Compiles a single source file within the running compiler. The compilation
+	 * runs within the current compilation context, which must be a fresh one (see
+	 * {@link Compilation#begin()}).
+	 * 
+	 * @param optValues Values of command line options indexed by their command
+	 *                  line option name.
+	 */
+	static void compile(final Map<String, String> optValues) {
+		cmdLineOptValues.get().putAll(optValues);
+		checkCmdLine();
+		runCachedPhases();
+	}
+
+	/**
+	 * Sets up the command line options of the current compilation context without
+	 * running any phase (so that phases can be run one by one, e.g., by
+	 * benchmarks).
+	 * 
+	 * @param opts Command line arguments (see {@link lang24}).
+	 */
+	public static void configure(final String[] opts) {
+		scanCmdLine(opts);
+		checkCmdLine();
+	}
+
+	/**
+	 * Scans the command line and stores the values of command line options.
+	 * 
+	 * @param opts Command line arguments (see {@link lang24}).
+	 */
+	private static void scanCmdLine(final String[] opts) {
+		for (int optc = 0; optc < opts.length; optc++) {
+			// Optimization level (-O alone stands for -O1).
+			final String opt = opts[optc].matches("-O[0-9]*")
+					? "--opt-level=" + (opts[optc].equals("-O") ? "1" : opts[optc].substring(2))
+					: opts[optc];
+			if (opt.startsWith("--")) {
+				// Command line option.
+				final String cmdLineOptName = opt.replaceFirst("=.*", "");
+				final String cmdLineOptValue = opt.replaceFirst("^[^=]*=", "");
+				if (!cmdLineOptNames.contains(cmdLineOptName)) {
+					Report.warning("Unknown command line option '" + cmdLineOptName + "'.");
+					continue;
+				}
+				if (cmdLineOptValue(cmdLineOptName) == null) {
+					// Not yet successfully specified command line option.
+
+					// Check the value of the command line option.
+					if ((cmdLineOptName.equals("--target-phase") && (!phaseNames.contains(cmdLineOptValue)))
+							|| (cmdLineOptName.equals("--logged-phase")
+									&& (!phaseNames.contains(cmdLineOptValue)))) {
+						Report.warning("Illegal phase specification in '" + opt + "' ignored.");
 						continue;
 					}
+
+					cmdLineOptValues.get().put(cmdLineOptName, cmdLineOptValue);
 				} else {
-					// Source file name.
-					if (cmdLineOptValues.get("--src-file-name") == null) {
-						cmdLineOptValues.put("--src-file-name", opts[optc]);
-					} else {
-						Report.warning("Source file '" + opts[optc] + "' ignored.");
-						continue;
-					}
+					// Repeated specification of a command line option.
+					Report.warning("Command line option '" + opt + "' ignored.");
+					continue;
+				}
+			} else {
+				// Source file name.
+				if (cmdLineOptValue("--src-file-name") == null) {
+					cmdLineOptValues.get().put("--src-file-name", opt);
+				} else {
+					Report.warning("Source file '" + opt + "' ignored.");
+					continue;
 				}
 			}
-			// Check the command line option values.
-			if (cmdLineOptValues.get("--src-file-name") == null) {
-				try {
-					// Source file has not been specified, so consider using the last modified
-					// lang24 file in the working directory.
-					final String currWorkDir = new File(".").getCanonicalPath();
-					FileTime latestTime = FileTime.fromMillis(0);
-					Path latestPath = null;
-					for (final Path path : java.nio.file.Files.walk(Paths.get(currWorkDir))
-							.filter(path -> path.toString().endsWith(".lang24")).toArray(Path[]::new)) {
-						final FileTime time = Files.getLastModifiedTime(path);
-						if (time.compareTo(latestTime) > 0) {
-							latestTime = time;
-							latestPath = path;
-						}
-					}
-					if (latestPath != null) {
-						cmdLineOptValues.put("--src-file-name", latestPath.toString());
-						Report.warning("Source file not specified, using '" + latestPath.toString() + "'.");
+		}
+	}
+
+	/**
+	 * Checks the command line option values and supplies the default values of
+	 * the missing ones.
+	 */
+	private static void checkCmdLine() {
+		if (cmdLineOptValue("--src-file-name") == null) {
+			try {
+				// Source file has not been specified, so consider using the last modified
+				// lang24 file in the working directory.
+				final String currWorkDir = new File(".").getCanonicalPath();
+				FileTime latestTime = FileTime.fromMillis(0);
+				Path latestPath = null;
+				for (final Path path : java.nio.file.Files.walk(Paths.get(currWorkDir))
+						.filter(path -> path.toString().endsWith(".lang24")).toArray(Path[]::new)) {
+					final FileTime time = Files.getLastModifiedTime(path);
+					if (time.compareTo(latestTime) > 0) {
+						latestTime = time;
+						latestPath = path;
 					}
-				} catch (final IOException __) {
-					throw new Report.Error("Source file not specified.");
 				}
-
-				if (cmdLineOptValues.get("--src-file-name") == null) {
-					throw new Report.Error("Source file not specified.");
+				if (latestPath != null) {
+					cmdLineOptValues.get().put("--src-file-name", latestPath.toString());
+					Report.warning("Source file not specified, using '" + latestPath.toString() + "'.");
 				}
+			} catch (final IOException __) {
+				throw new Report.Error("Source file not specified.");
 			}
-			if (cmdLineOptValues.get("--dst-file-name") == null) {
-				cmdLineOptValues.put("--dst-file-name",
-						// TODO: Insert the appropriate file suffix.
-						cmdLineOptValues.get("--src-file-name").replaceFirst("\\.[^./]*$", "") + "");
+
+			if (cmdLineOptValue("--src-file-name") == null) {
+				throw new Report.Error("Source file not specified.");
 			}
-			if (cmdLineOptValues.get("--target-phase") == null)
-				cmdLineOptValues.put("--target-phase", "all");
-			if (cmdLineOptValues.get("--logged-phase") == null)
-				cmdLineOptValues.put("--logged-phase", "none");
-
-			// Carry out the compilation phase by phase.
-			while (true) {
-
-				if (cmdLineOptValues.get("--target-phase").equals("none"))
-					break;
-
-				// Lexical analysis.
-				if (cmdLineOptValues.get("--target-phase").equals("lexan")) {
-					try (final LexAn lexan = new LexAn()) {
-						while (lexan.lexer.nextToken().getType() != lang24.data.token.LocLogToken.EOF) {
-						}
-					}
-					break;
+		}
+		if (cmdLineOptValue("--dst-file-name") == null) {
+			cmdLineOptValues.get().put("--dst-file-name",
+					// TODO: Insert the appropriate file suffix.
+					cmdLineOptValue("--src-file-name").replaceFirst("\\.[^./]*$", "") + "");
+		}
+		if (cmdLineOptValue("--target-phase") == null)
+			cmdLineOptValues.get().put("--target-phase", "all");
+		if (cmdLineOptValue("--logged-phase") == null)
+			cmdLineOptValues.get().put("--logged-phase", "none");
+		if (cmdLineOptValue("--opt-level") == null)
+			cmdLineOptValues.get().put("--opt-level", "0");
+		if (!cmdLineOptValue("--opt-level").matches("[0-" + PassManager.MAX_LEVEL + "]"))
+			throw new Report.Error("Illegal optimization level '" + cmdLineOptValue("--opt-level") + "'.");
+	}
+
+	/**
+	 * Carries out the compilation phase by phase unless its results can be
+	 * restored from the compile cache (if one has been specified).
+	 */
+	private static void runCachedPhases() {
+		if (cmdLineOptValue("--cache") == null || cmdLineOptValue("--profile") != null) {
+			runReservedPhases(null);
+			return;
+		}
+		long cacheSize = 256;
+		if (cmdLineOptValue("--cache-size") != null) {
+			try {
+				cacheSize = Long.parseLong(cmdLineOptValue("--cache-size"));
+			} catch (final NumberFormatException __) {
+				throw new Report.Error("Illegal cache size '" + cmdLineOptValue("--cache-size") + "'.");
+			}
+		}
+		final CompileCache cache = CompileCache.open(cmdLineOptValue("--cache"), cacheSize << 20);
+
+		// Options affecting the results.
+		final TreeMap<String, String> keyOptValues = new TreeMap<String, String>();
+		for (final String cmdLineOptName : new String[] { "--target-phase", "--logged-phase", "--num-regs", "--xsl",
+				"--parallel", "--opt-level" })
+			if (cmdLineOptValue(cmdLineOptName) != null)
+				keyOptValues.put(cmdLineOptName, cmdLineOptValue(cmdLineOptName));
+		keyOptValues.put("--xml", Boolean.toString(cmdLineOptValue("--xml") != null));
+
+		// Files produced by the compilation.
+		final LinkedHashMap<String, String> fileNames = new LinkedHashMap<String, String>();
+		final String targetPhase = cmdLineOptValue("--target-phase");
+		for (final String phaseName : phaseNames.subList(phaseNames.indexOf("lexan"), phaseNames.size())) {
+			if (!targetPhase.equals("all") && phaseNames.indexOf(phaseName) > phaseNames.indexOf(targetPhase))
+				break;
+			if (lang24.phase.Phase.isLogged(phaseName))
+				fileNames.put("xml:" + phaseName, lang24.phase.Phase.xmlFileName(phaseName));
+		}
+		if (targetPhase.equals("all") || targetPhase.equals("asmdump"))
+			fileNames.put("mms", cmdLineOptValue("--dst-file-name") + ".mms");
+
+		final String key = cache.key(cmdLineOptValue("--src-file-name"), keyOptValues);
+		if (key != null && cache.restore(key, fileNames)) {
+			Report.info("Compile cache hit (" + cache.stats() + ").");
+			return;
+		}
+		runReservedPhases(cache);
+		if (key != null) {
+			cache.store(key, fileNames);
+			Report.info("Compile cache miss (" + cache.stats() + ").");
+		}
+	}
+
+	/**
+	 * Carries out the compilation phase by phase, on a stack reserved for the
+	 * compilation if the source file is nested deeply (see {@link StackReserve}).
+	 * 
+	 * @param cache The compile cache holding the allocated code of single
+	 *              functions (or {@code null} if there is none).
+	 */
+	private static void runReservedPhases(final CompileCache cache) {
+		StackReserve.run(StackReserve.depth(cmdLineOptValue("--src-file-name")), () -> runPhases(cache));
+	}
+
+	/**
+	 * Returns a new pool of threads that top-level functions are processed by if
+	 * processing functions in parallel has been requested (see
+	 * {@link lang24.phase.FunctionTasks}).
+	 * 
+	 * @return The pool of threads or {@code null} if functions are processed one
+	 *         after another.
+	 */
+	private static ForkJoinPool functionPool() {
+		if (cmdLineOptValue("--parallel") == null)
+			return null;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		if (!cmdLineOptValue("--parallel").matches("--parallel|")) {
+			try {
+				numThreads = Integer.parseInt(cmdLineOptValue("--parallel"));
+			} catch (final NumberFormatException __) {
+				numThreads = 0;
+			}
+			if (numThreads <= 0)
+				throw new Report.Error("Illegal number of threads '" + cmdLineOptValue("--parallel") + "'.");
+		}
+		if (StackReserve.isReserved()) {
+			// The threads of a pool have ordinary stacks.
+			return null;
+		}
+		return new ForkJoinPool(numThreads);
+	}
+
+	/**
+	 * Returns the heap budget of the compilation.
+	 * 
+	 * @return The largest live heap allowed after any phase (in bytes, or 0 if
+	 *         unlimited).
+	 */
+	private static long heapBudget() {
+		if (cmdLineOptValue("--heap-budget") == null)
+			return 0;
+		long heapBudget;
+		try {
+			heapBudget = Long.parseLong(cmdLineOptValue("--heap-budget"));
+		} catch (final NumberFormatException __) {
+			heapBudget = 0;
+		}
+		if (heapBudget <= 0)
+			throw new Report.Error("Illegal heap budget '" + cmdLineOptValue("--heap-budget") + "'.");
+		return heapBudget << 20;
+	}
+
+	/**
+	 * Carries out the compilation phase by phase.
+	 * 
+	 * @param cache The compile cache holding the allocated code of single
+	 *              functions (or {@code null} if there is none).
+	 */
+	private static void runPhases(final CompileCache cache) {
+		final Profiler profiler = Profiler.start(cmdLineOptValue("--profile") != null, heapBudget());
+
+		while (true) {
+
+			if (cmdLineOptValue("--target-phase").equals("none"))
+				break;
+
+			// Lexical analysis.
+			if (cmdLineOptValue("--target-phase").equals("lexan")) {
+				profiler.begin("lexan");
+				long numTokens = 0;
+				try (final LexAn lexan = new LexAn()) {
+					lexan.tokens.fill();
+					numTokens = lexan.tokens.size() - 1;
 				}
+				profiler.end();
+				profiler.count("tokens", numTokens);
+				break;
+			}
 
-				// Syntax analysis.
-				try (LexAn lexan = new LexAn(); SynAn synan = new SynAn(lexan)) {
-					SynAn.tree = synan.parser.source();
-					synan.log(SynAn.tree);
+			// Syntax analysis.
+			try (LexAn lexan = new LexAn(); SynAn synan = new SynAn(lexan)) {
+				if (profiler.enabled()) {
+					// Lex the entire source file first to separate lexing from parsing.
+					profiler.begin("lexan");
+					lexan.tokens.fill();
+					profiler.end();
+					profiler.count("tokens", lexan.tokens.size() - 1);
 				}
-				if (cmdLineOptValues.get("--target-phase").equals("synan"))
-					break;
-
-				// Abstract syntax.
-				try (Abstr abstr = new Abstr()) {
-					Abstr.tree = SynAn.tree.ast;
-					SynAn.tree = null;
-					AbstrLogger logger = new AbstrLogger(abstr.logger);
-					Abstr.tree.accept(logger, "AstDefn");
+				profiler.begin("synan");
+				SynAn.tree.set(synan.parse());
+				profiler.count("llFallbacks", synan.fallenBack() ? 1 : 0);
+				synan.log(SynAn.tree.get());
+			}
+			profiler.end();
+			if (cmdLineOptValue("--target-phase").equals("synan"))
+				break;
+
+			// Abstract syntax.
+			profiler.begin("abstr");
+			try (Abstr abstr = new Abstr()) {
+				Abstr.tree.set(SynAn.tree.get().ast);
+				SynAn.tree.set(null);
+				AbstrLogger logger = new AbstrLogger(abstr.logger);
+				Abstr.tree.get().accept(logger, "AstDefn");
+				if (cmdLineOptValue("--compact-ast") != null) {
+					// Pack the tree and run all subsequent phases on its materialization.
+					final CompactAst compactTree = new CompactAst(Abstr.tree.get());
+					Abstr.tree.set(null);
+					Abstr.tree.set(compactTree.node(compactTree.root()));
+					profiler.count("compactAstBytes", compactTree.footprint());
 				}
-				if (cmdLineOptValues.get("--target-phase").equals("abstr"))
-					break;
-
-				// Semantic analysis.
-				try (SemAn seman = new SemAn()) {
-					Abstr.tree.accept(new NameResolver(), null);
-					Abstr.tree.accept(new LValResolver(), null);
-					Abstr.tree.accept(new TypeResolver(), null);
+			}
+			profiler.end();
+			profiler.count("astNodes", AstNode.numNodes());
+			if (cmdLineOptValue("--target-phase").equals("abstr"))
+				break;
+
+			// Semantic analysis.
+			profiler.begin("seman");
+			try (SemAn seman = new SemAn(); ForkJoinPool pool = functionPool()) {
+				// Names and lvalues are resolved within a single traversal; types can only be
+				// resolved once all names (including those of functions defined later) are.
+				Abstr.tree.get().accept(new NameResolver(), null);
+				Abstr.tree.get().accept(new TypeResolver(pool), null);
+				if (seman.logger != null) {
 					AbstrLogger logger = new AbstrLogger(seman.logger);
 					logger.addSubvisitor(new SemAnLogger(seman.logger));
-					Abstr.tree.accept(logger, "AstDefn");
-				}
-				if (cmdLineOptValues.get("--target-phase").equals("seman"))
-					break;
-
-				// Memory layout.
-				try (Memory memory = new Memory()) {
-					Abstr.tree.accept(new MemEvaluator(), null);
-					AbstrLogger logger = new AbstrLogger(memory.logger);
-					logger.addSubvisitor(new SemAnLogger(memory.logger));
-					logger.addSubvisitor(new MemLogger(memory.logger));
-					Abstr.tree.accept(logger, "AstDefn");
-				}
-				if (cmdLineOptValues.get("--target-phase").equals("memory"))
-					break;
-
-				// Intermediate code generation.
-				try (ImcGen imcGen = new ImcGen()) {
-					Abstr.tree.accept(new ImcGenerator(), null);
-					AbstrLogger logger = new AbstrLogger(imcGen.logger);
-					logger.addSubvisitor(new SemAnLogger(imcGen.logger));
-					logger.addSubvisitor(new MemLogger(imcGen.logger));
-					logger.addSubvisitor(new ImcLogger(imcGen.logger));
-					Abstr.tree.accept(logger, "AstDefn");
+					Abstr.tree.get().accept(logger, "AstDefn");
 				}
-				if (cmdLineOptValues.get("--target-phase").equals("imcgen"))
-					break;
+			}
+			profiler.end();
+			if (cmdLineOptValue("--target-phase").equals("seman"))
+				break;
 
-				// Linearization of intermediate code.
-				try (ImcLin imclin = new ImcLin()) {
-					Abstr.tree.accept(new ChunkGenerator(), null);
-					imclin.log();
+			// Memory layout.
+			profiler.begin("memory");
+			try (Memory memory = new Memory()) {
+				// From level 1 on, scalar local variables that do not escape are kept in temporaries.
+				final MemEvaluator memEvaluator = Integer.parseInt(cmdLineOptValue("--opt-level")) >= 1
+						? new MemEvaluator(EscapeAnalysis.tempVars(Abstr.tree.get()))
+						: new MemEvaluator();
+				Abstr.tree.get().accept(memEvaluator, null);
+				AbstrLogger logger = new AbstrLogger(memory.logger);
+				logger.addSubvisitor(new SemAnLogger(memory.logger));
+				logger.addSubvisitor(new MemLogger(memory.logger));
+				Abstr.tree.get().accept(logger, "AstDefn");
+			}
+			profiler.end();
+			profiler.count("memTemps", MemTemp.count());
+			if (cmdLineOptValue("--target-phase").equals("memory"))
+				break;
 
-					if (true) {
-						Interpreter interpreter = new Interpreter(ImcLin.dataChunks(), ImcLin.codeChunks());
-						System.out.println("EXIT CODE: " + interpreter.run("_main"));
-					}
-				}
-				if (cmdLineOptValues.get("--target-phase").equals("imclin"))
-					break;
+			// Intermediate code generation.
+			profiler.begin("imcgen");
+			try (ImcGen imcGen = new ImcGen(); ForkJoinPool pool = functionPool()) {
+				Abstr.tree.get().accept(new ImcGenerator(pool), null);
+				AbstrLogger logger = new AbstrLogger(imcGen.logger);
+				logger.addSubvisitor(new SemAnLogger(imcGen.logger));
+				logger.addSubvisitor(new MemLogger(imcGen.logger));
+				logger.addSubvisitor(new ImcLogger(imcGen.logger));
+				Abstr.tree.get().accept(logger, "AstDefn");
+			}
+			profiler.end();
+			profiler.count("memTemps", MemTemp.count());
+			if (cmdLineOptValue("--target-phase").equals("imcgen"))
+				break;
 
-				// Machine code generation.
-				try (AsmGen asmgen = new AsmGen()) {
-					asmgen.genAsmCodes();
-					asmgen.log();
-				}
-				if (cmdLineOptValues.get("--target-phase").equals("asmgen"))
-					break;
-
-				// Liveness analysis.
-				// By now you should know how to add another phase here ;-)
-				try (LiveAn liveness = new LiveAn()) {
-					liveness.analysis();
-					liveness.log();
-				}
-				if (cmdLineOptValues.get("--target-phase").equals("livean"))
-					break;
-
-				// Register allocation.
-				// By now you should know how to add another phase here ;-)
-				int numRegs = cmdLineOptValues.get("--num-regs").equals("") ? 8 : Integer.parseInt(cmdLineOptValues.get("--num-regs"));
-				try (RegAll regall = new RegAll(numRegs)) {
-					regall.allocate();
-					regall.log();
-				}
-				if (cmdLineOptValues.get("--target-phase").equals("regall"))
-					break;
+			// Linearization of intermediate code.
+			profiler.begin("imclin");
+			try (ImcLin imclin = new ImcLin()) {
+				Abstr.tree.get().accept(new ChunkGenerator(), null);
+				imclin.log();
+			}
+			// The chunks are all that later phases need.
+			Abstr.release();
+			SemAn.release();
+			Memory.release();
+			ImcGen.release();
+			profiler.end();
+			if (profiler.enabled()) {
+				final LinkedHashMap<String, Long> numStmts = new LinkedHashMap<String, Long>();
+				for (final LinCodeChunk codeChunk : ImcLin.codeChunks())
+					numStmts.put(codeChunk.frame.label.name, (long) codeChunk.stmts().size());
+				profiler.count("imcStmts", numStmts);
+				profiler.count("memTemps", MemTemp.count());
+			}
+			if (cmdLineOptValue("--target-phase").equals("imclin")) {
+				interpret();
+				break;
+			}
 
-				// Assembly dump phase.
-				try (AsmDump dumper = new AsmDump(cmdLineOptValues.get("--dst-file-name"))) {
-					dumper.dump();
-				}
+			// Optimization of intermediate code.
+			profiler.begin("imcopt");
+			try (ImcOpt imcopt = new ImcOpt()) {
+				imcopt.optimize();
+				imcopt.log();
+				profiler.count("passNanos", imcopt.passManager.nanos());
+				profiler.count("stmtsRemoved", imcopt.passManager.stmtsRemoved());
+				profiler.count("tempsEliminated", imcopt.passManager.tempsEliminated());
+			}
+			profiler.end();
+			if (profiler.enabled()) {
+				final LinkedHashMap<String, Long> numStmts = new LinkedHashMap<String, Long>();
+				for (final LinCodeChunk codeChunk : ImcLin.codeChunks())
+					numStmts.put(codeChunk.frame.label.name, (long) codeChunk.stmts().size());
+				profiler.count("imcStmts", numStmts);
+				profiler.count("memTemps", MemTemp.count());
+			}
+			interpret();
+			if (cmdLineOptValue("--target-phase").equals("imcopt"))
+				break;
 
+			// Machine code generation.
+			profiler.begin("asmgen");
+			try (AsmGen asmgen = new AsmGen()) {
+				asmgen.genAsmCodes();
+				asmgen.log();
+			}
+			ImcLin.releaseCodeChunks();
+			profiler.end();
+			profiler.count("instrs", numInstrs());
+			profiler.count("memTemps", MemTemp.count());
+			if (cmdLineOptValue("--target-phase").equals("asmgen"))
 				break;
+
+			// Restore the allocated code of unchanged functions, so that only the
+			// remaining functions pass through liveness analysis and register
+			// allocation. Not done if either of these phases is logged.
+			int numRegs = cmdLineOptValue("--num-regs").equals("") ? 8 : Integer.parseInt(cmdLineOptValue("--num-regs"));
+			CodeCache codeCache = null;
+			if (cache != null && !lang24.phase.Phase.isLogged("livean") && !lang24.phase.Phase.isLogged("regall")
+					&& cmdLineOptValue("--target-phase").matches("all|asmdump")) {
+				codeCache = new CodeCache(cache, numRegs);
+				AsmGen.codes.set(codeCache.restore(AsmGen.codes.get()));
 			}
 
-			// Let's hope we ever come this far.
-			// But beware:
-			// 1. The generated translation of the source file might be erroneous :-o
-			// 2. The source file might not be what the programmer intended it to be ;-)
-			Report.info("Done.");
-		} catch (final Report.Error error) {
-			System.err.println(error.getMessage());
-			System.exit(1);
+			// Liveness analysis.
+			// By now you should know how to add another phase here ;-)
+			profiler.begin("livean");
+			try (LiveAn liveness = new LiveAn()) {
+				liveness.analysis();
+				liveness.log();
+			}
+			profiler.end();
+			if (cmdLineOptValue("--target-phase").equals("livean"))
+				break;
+
+			// Register allocation.
+			// By now you should know how to add another phase here ;-)
+			profiler.begin("regall");
+			try (RegAll regall = new RegAll(numRegs)) {
+				regall.allocate();
+				regall.log();
+				profiler.count("interferenceEdges", regall.numEdges());
+				profiler.count("spillRounds", regall.numSpillRounds());
+			}
+			profiler.end();
+			profiler.count("memTemps", MemTemp.count());
+			if (codeCache != null)
+				AsmGen.codes.set(codeCache.store());
+			if (cmdLineOptValue("--target-phase").equals("regall"))
+				break;
+
+			// Assembly dump phase.
+			profiler.begin("asmdump");
+			try (AsmDump dumper = new AsmDump(cmdLineOptValue("--dst-file-name"))) {
+				dumper.dump();
+			}
+			profiler.end();
+			profiler.count("instrs", numInstrs());
+
+			break;
 		}
+
+		if (profiler.enabled()) {
+			String profileFileName = cmdLineOptValue("--profile");
+			if (profileFileName.matches("--profile|"))
+				profileFileName = cmdLineOptValue("--dst-file-name") + "-profile.json";
+			profiler.write(profileFileName, cmdLineOptValue("--src-file-name"));
+		}
+	}
+
+	/**
+	 * Interprets the linearized intermediate code and prints out the exit code of
+	 * the program.
+	 */
+	private static void interpret() {
+		if (true) {
+			Interpreter interpreter = new Interpreter(ImcLin.dataChunks(), ImcLin.codeChunks());
+			System.out.println("EXIT CODE: " + interpreter.run("_main"));
+		}
+	}
+
+	/**
+	 * Returns the number of instructions (labels excluded) of all functions.
+	 * 
+	 * @return The number of instructions of all functions.
+	 */
+	private static long numInstrs() {
+		long numInstrs = 0;
+		for (final Code code : AsmGen.codes.get())
+			for (final AsmInstr instr : code.instrs)
+				if (!(instr instanceof AsmLABEL))
+					numInstrs++;
+		return numInstrs;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,192 @@
+package lang24;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Stack reserves for compiling deeply nested source files.
+ *
+ * The parser and all phases after it traverse trees recursively, so the depth
+ * of the stack a compilation needs grows with the nesting depth of the source
+ * file. Before a source file is compiled, a bound on its nesting depth is
+ * estimated from its characters (see {@link #depth(byte[])}). If the bound is
+ * small, the compilation runs in the current thread as it always has;
+ * otherwise it runs within the same compilation context in a new thread with a
+ * stack reserved in proportion to the bound (see {@link #run(long, Runnable)}).
+ * The stack is only reserved, not committed, so a large reserve costs address
+ * space rather than memory.
+ */
+public class StackReserve {
+
+	/** The nesting depth the stack of any thread is assumed to hold. */
+	private static final long SAFE_DEPTH = 256;
+
+	/** The number of bytes of stack reserved per level of nesting. */
+	private static final long LEVEL_SIZE = 2048;
+
+	/** The smallest stack reserved (in bytes). */
+	private static final long MIN_SIZE = 16L << 20;
+
+	/** The largest stack reserved (in bytes). */
+	private static final long MAX_SIZE = 4L << 30;
+
+	/**
+	 * The size of the stack reserved for the current compilation (or 0 if the
+	 * compilation runs in the thread it was started in).
+	 */
+	private static final Compilation.Local<Long> reserved = new Compilation.Local<Long>(() -> 0L);
+
+	/**
+	 * Returns a bound on the nesting depth of a source file.
+	 *
+	 * @param srcFileName The source file name.
+	 * @return The bound on the nesting depth (or 0 if the source file cannot be
+	 *         read; the lexical analyzer reports that).
+	 */
+	public static long depth(final String srcFileName) {
+		try {
+			return depth(Files.readAllBytes(Path.of(srcFileName)));
+		} catch (final IOException | InvalidPathException __) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns a bound on the nesting depth of a source, i.e., on the depth of its
+	 * parse tree and its abstract syntax tree (and, up to a constant factor, of its
+	 * intermediate code).
+	 *
+	 * The source is scanned as a sequence of tokens (names, constants and
+	 * operators; comments and literals are skipped). Within each pair of
+	 * brackets, every token may nest the following ones (as in chains of binary
+	 * operators or of {@code else if}s), so the tokens are counted until a
+	 * semicolon that is not followed by {@code else} closes all statements and
+	 * expressions the counted tokens might belong to. The bound is the largest sum
+	 * of counts over all open brackets.
+	 *
+	 * @param src The source.
+	 * @return The bound on the nesting depth.
+	 */
+	public static long depth(final byte[] src) {
+		long[] counts = new long[16];
+		int numOpen = 0;
+		long depth = 0;
+		long maxDepth = 0;
+		boolean closing = false;
+		int index = 0;
+		while (index < src.length) {
+			final char c = (char) (src[index] & 0xFF);
+			if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+				index++;
+				continue;
+			}
+			if (c == '#') {
+				while (index < src.length && src[index] != '\n')
+					index++;
+				continue;
+			}
+
+			// The next token.
+			final int start = index;
+			if (c == '\'' || c == '"') {
+				index++;
+				while (index < src.length && src[index] != c && src[index] != '\n')
+					index += src[index] == '\\' ? 2 : 1;
+				index++;
+			} else if (Character.isLetterOrDigit(c) || c == '_') {
+				while (index < src.length && (Character.isLetterOrDigit(src[index] & 0xFF) || src[index] == '_'))
+					index++;
+			} else
+				index++;
+
+			// A semicolon closes everything counted so far unless followed by else.
+			if (closing) {
+				closing = false;
+				if (!(index - start == 4 && new String(src, start, 4).equals("else"))) {
+					depth -= counts[numOpen];
+					counts[numOpen] = 0;
+				}
+			}
+
+			switch (c) {
+			case ';':
+				closing = true;
+				break;
+			case '(', '[', '{':
+				counts[numOpen]++;
+				if (++numOpen == counts.length)
+					counts = Arrays.copyOf(counts, 2 * counts.length);
+				counts[numOpen] = 1;
+				depth += 2;
+				break;
+			case ')', ']', '}':
+				if (numOpen > 0) {
+					depth -= counts[numOpen];
+					numOpen--;
+				}
+				break;
+			default:
+				counts[numOpen]++;
+				depth++;
+			}
+			maxDepth = Math.max(maxDepth, depth);
+		}
+		return maxDepth;
+	}
+
+	/**
+	 * Runs a compilation, in a new thread with a reserved stack if the source is
+	 * nested too deeply for the stack of the current thread. The new thread runs
+	 * within the compilation context of the current thread, which waits for it.
+	 *
+	 * @param depth       The bound on the nesting depth of the source (see
+	 *                    {@link #depth(byte[])}).
+	 * @param compilation The compilation.
+	 */
+	public static void run(final long depth, final Runnable compilation) {
+		if (depth <= SAFE_DEPTH || reserved.get() > 0) {
+			compilation.run();
+			return;
+		}
+		final long size = Math.min(MAX_SIZE, Math.max(MIN_SIZE, depth * LEVEL_SIZE));
+		final Compilation context = Compilation.current();
+		final Throwable[] failure = new Throwable[1];
+		final Thread thread = new Thread(null, () -> context.run(() -> {
+			try {
+				reserved.set(size);
+				compilation.run();
+			} catch (final RuntimeException | Error error) {
+				failure[0] = error;
+			}
+		}), Thread.currentThread().getName() + "-deep", size);
+		thread.start();
+		boolean interrupted = false;
+		while (true) {
+			try {
+				thread.join();
+				break;
+			} catch (final InterruptedException __) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure[0] instanceof RuntimeException runtimeException)
+			throw runtimeException;
+		if (failure[0] instanceof Error error)
+			throw error;
+	}
+
+	/**
+	 * Checks whether the current compilation runs in a thread with a reserved
+	 * stack (which threads helping with the compilation do not have).
+	 *
+	 * @return {@code true} if the stack has been reserved, {@code false}
+	 *         otherwise.
+	 */
+	public static boolean isReserved() {
+		return reserved.get() > 0;
+	}
+
+}
@@ -0,0 +1,430 @@
+package lang24.bench;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+import lang24.*;
+import lang24.Compiler;
+import lang24.common.report.*;
+import lang24.phase.abstr.*;
+import lang24.phase.asmdump.*;
+import lang24.phase.asmgen.*;
+import lang24.phase.imcgen.*;
+import lang24.phase.imclin.*;
+import lang24.phase.imcopt.*;
+import lang24.phase.lexan.*;
+import lang24.phase.livean.*;
+import lang24.phase.memory.*;
+import lang24.phase.regall.*;
+import lang24.phase.seman.*;
+import lang24.phase.synan.*;
+
+/**
+ * Per-phase benchmarks of the compiler.
+ *
+ * Each benchmark measures a single phase on a single source file. Every
+ * invocation runs within a fresh compilation context: all phases preceding the
+ * measured one are run first (not measured), then the measured phase is run
+ * and timed. Invocations are grouped into warmup iterations (discarded) and
+ * measurement iterations, and the mean time per invocation, its standard
+ * deviation and the minimum are reported together with the mean number of
+ * bytes allocated by the measured phase per invocation.
+ *
+ * Usage: {@code lang24.bench.Benchmark [options] source...} where each source is
+ * a LANG'24 source file or a directory containing them, and the options are
+ *
+ * <ul>
+ *
+ * <li><code>--phase=</code><i>phase-name</i>: The phase to measure (one of
+ * <code>lexan</code>, <code>synan</code>, <code>seman</code>,
+ * <code>memory</code>, <code>imcgen</code>, <code>imclin</code>,
+ * <code>imcopt</code>, <code>asmgen</code>, <code>livean</code>, <code>regall</code>,
+ * <code>asmdump</code>, or <code>all</code>, the default).</li>
+ *
+ * <li><code>--warmup=</code><i>number</i>: The number of warmup iterations
+ * (default 5).</li>
+ *
+ * <li><code>--iterations=</code><i>number</i>: The number of measurement
+ * iterations (default 10).</li>
+ *
+ * <li><code>--num-regs=</code><i>number</i>: The number of registers (default
+ * 8).</li>
+ *
+ * <li><code>--opt-level=</code><i>level</i>: The optimization level of
+ * intermediate code (default 0).</li>
+ *
+ * <li><code>--generated=</code><i>number</i>[<code>,</code><i>number</i>...]:
+ * Also benchmark programs produced by {@link Generator} with the specified
+ * numbers of top-level functions (and the default shape otherwise).</li>
+ *
+ * </ul>
+ */
+public class Benchmark {
+
+	/**
+	 * A single step of the pipeline.
+	 */
+	private static abstract class Step {
+
+		/** The name of the phase this step carries out. */
+		final String phaseName;
+
+		/**
+		 * Constructs a new step.
+		 *
+		 * @param phaseName The name of the phase this step carries out.
+		 */
+		Step(final String phaseName) {
+			this.phaseName = phaseName;
+		}
+
+		/**
+		 * Prepares the step (never measured).
+		 */
+		void prepare() {
+		}
+
+		/**
+		 * Runs the step (measured if this is the step being benchmarked).
+		 */
+		abstract void run();
+
+		/**
+		 * Releases whatever has been prepared (never measured).
+		 */
+		void release() {
+		}
+
+	}
+
+	/** The number of registers. */
+	private final int numRegs;
+
+	/** The optimization level of intermediate code. */
+	private final int optLevel;
+
+	/** The name of the file the assembly is dumped to. */
+	private final String dstFileName;
+
+	/** All steps that can be benchmarked. */
+	private final Vector<Step> steps = new Vector<Step>();
+
+	/** Thread allocation measurements. */
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * The cost of a single invocation of a benchmark.
+	 *
+	 * @param nanos The time of the measured phase in nanoseconds.
+	 * @param bytes The number of bytes allocated by the measured phase (or 0 if
+	 *              the JVM does not support this).
+	 */
+	private record Cost(long nanos, long bytes) {
+	}
+
+	/**
+	 * Constructs a new benchmark.
+	 *
+	 * @param numRegs     The number of registers.
+	 * @param optLevel    The optimization level of intermediate code.
+	 * @param dstFileName The name of the file the assembly is dumped to.
+	 */
+	private Benchmark(final int numRegs, final int optLevel, final String dstFileName) {
+		this.numRegs = numRegs;
+		this.optLevel = optLevel;
+		this.dstFileName = dstFileName;
+
+		// Lexical analysis (on its own, syntax analysis does its own lexing).
+		steps.add(new Step("lexan") {
+			@Override
+			void run() {
+				try (final LexAn lexan = new LexAn()) {
+					lexan.tokens.fill();
+				}
+			}
+		});
+
+		// Syntax analysis of an already lexed source file.
+		steps.add(new Step("synan") {
+			LexAn lexan;
+			SynAn synan;
+
+			@Override
+			void prepare() {
+				lexan = new LexAn();
+				synan = new SynAn(lexan);
+				lexan.tokens.fill();
+			}
+
+			@Override
+			void run() {
+				SynAn.tree.set(synan.parse());
+				Abstr.tree.set(SynAn.tree.get().ast);
+				SynAn.tree.set(null);
+			}
+
+			@Override
+			void release() {
+				synan.close();
+				lexan.close();
+				synan = null;
+				lexan = null;
+			}
+		});
+
+		steps.add(new Step("seman") {
+			@Override
+			void run() {
+				Abstr.tree.get().accept(new NameResolver(), null);
+				Abstr.tree.get().accept(new TypeResolver(), null);
+			}
+		});
+
+		steps.add(new Step("memory") {
+			@Override
+			void run() {
+				Abstr.tree.get().accept(optLevel >= 1 ? new MemEvaluator(EscapeAnalysis.tempVars(Abstr.tree.get()))
+						: new MemEvaluator(), null);
+			}
+		});
+
+		steps.add(new Step("imcgen") {
+			@Override
+			void run() {
+				Abstr.tree.get().accept(new ImcGenerator(), null);
+			}
+		});
+
+		steps.add(new Step("imclin") {
+			@Override
+			void run() {
+				Abstr.tree.get().accept(new ChunkGenerator(), null);
+			}
+		});
+
+		steps.add(new Step("imcopt") {
+			@Override
+			void run() {
+				try (final ImcOpt imcopt = new ImcOpt()) {
+					imcopt.optimize();
+				}
+			}
+		});
+
+		steps.add(new Step("asmgen") {
+			@Override
+			void run() {
+				try (final AsmGen asmgen = new AsmGen()) {
+					asmgen.genAsmCodes();
+				}
+			}
+		});
+
+		steps.add(new Step("livean") {
+			@Override
+			void run() {
+				try (final LiveAn liveness = new LiveAn()) {
+					liveness.analysis();
+				}
+			}
+		});
+
+		steps.add(new Step("regall") {
+			@Override
+			void run() {
+				try (final RegAll regall = new RegAll(Benchmark.this.numRegs)) {
+					regall.allocate();
+				}
+			}
+		});
+
+		steps.add(new Step("asmdump") {
+			@Override
+			void run() {
+				try (final AsmDump dumper = new AsmDump(Benchmark.this.dstFileName)) {
+					dumper.dump();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs a single invocation of a benchmark.
+	 *
+	 * @param phaseName   The name of the phase measured.
+	 * @param srcFileName The name of the source file.
+	 * @return The cost of the measured phase.
+	 */
+	private Cost invoke(final String phaseName, final String srcFileName) {
+		Compilation.begin();
+		try {
+			Compiler.configure(new String[] { "--num-regs=" + numRegs, "--opt-level=" + optLevel,
+					"--dst-file-name=" + dstFileName, srcFileName });
+			for (final Step step : steps) {
+				if (step.phaseName.equals("lexan") && !phaseName.equals("lexan"))
+					continue;
+				step.prepare();
+				try {
+					if (step.phaseName.equals(phaseName)) {
+						final long startBytes = allocatedBytes();
+						final long start = System.nanoTime();
+						step.run();
+						final long nanos = System.nanoTime() - start;
+						return new Cost(nanos, allocatedBytes() - startBytes);
+					}
+					step.run();
+				} finally {
+					step.release();
+				}
+			}
+			throw new Report.InternalError();
+		} finally {
+			Compilation.end();
+		}
+	}
+
+	/**
+	 * Runs a benchmark and prints its result.
+	 *
+	 * @param phaseName     The name of the phase measured.
+	 * @param srcFileName   The name of the source file.
+	 * @param numWarmups    The number of warmup iterations.
+	 * @param numIterations The number of measurement iterations.
+	 */
+	private void run(final String phaseName, final String srcFileName, final int numWarmups,
+			final int numIterations) {
+		for (int iteration = 0; iteration < numWarmups; iteration++)
+			invoke(phaseName, srcFileName);
+		final double[] millis = new double[numIterations];
+		final double[] kbytes = new double[numIterations];
+		for (int iteration = 0; iteration < numIterations; iteration++) {
+			final Cost cost = invoke(phaseName, srcFileName);
+			millis[iteration] = cost.nanos / 1e6;
+			kbytes[iteration] = cost.bytes / 1024.0;
+		}
+
+		final double mean = Arrays.stream(millis).average().orElse(0.0);
+		final double variance = Arrays.stream(millis).map(m -> (m - mean) * (m - mean)).sum()
+				/ Math.max(1, numIterations - 1);
+		final double min = Arrays.stream(millis).min().orElse(0.0);
+		final double alloc = Arrays.stream(kbytes).average().orElse(0.0);
+		System.out.println(String.format("%-8s %-56s %5d %12.3f %10.3f %12.3f %12.1f  ms/op, KB/op", phaseName,
+				srcFileName, numIterations, mean, Math.sqrt(variance), min, alloc));
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far (or 0 if
+	 * the JVM does not support this).
+	 *
+	 * @return The number of bytes allocated by the current thread so far.
+	 */
+	private long allocatedBytes() {
+		if (threadBean instanceof com.sun.management.ThreadMXBean sunThreadBean)
+			return sunThreadBean.getCurrentThreadAllocatedBytes();
+		return 0;
+	}
+
+	/**
+	 * Returns the names of all source files given as files or directories.
+	 *
+	 * @param srcNames The names of source files or directories.
+	 * @return The names of all source files.
+	 */
+	static Vector<String> srcFileNames(final Vector<String> srcNames) {
+		final Vector<String> srcFileNames = new Vector<String>();
+		for (final String srcName : srcNames) {
+			final Path path = Paths.get(srcName);
+			if (Files.isDirectory(path)) {
+				try (final Stream<Path> paths = Files.walk(path)) {
+					paths.filter(p -> p.toString().endsWith(".lang24")).map(Path::toString).sorted()
+							.forEach(srcFileNames::add);
+				} catch (final IOException ex) {
+					throw new Report.Error("Cannot read directory '" + srcName + "'.");
+				}
+			} else
+				srcFileNames.add(srcName);
+		}
+		return srcFileNames;
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args Command line arguments (see {@link Benchmark}).
+	 */
+	public static void main(final String[] args) {
+		try {
+			String phaseName = "all";
+			int numWarmups = 5;
+			int numIterations = 10;
+			int numRegs = 8;
+			int optLevel = 0;
+			final Vector<Integer> generatedSizes = new Vector<Integer>();
+			final Vector<String> srcNames = new Vector<String>();
+			for (final String arg : args) {
+				final String value = arg.replaceFirst("^[^=]*=", "");
+				try {
+					if (arg.startsWith("--phase="))
+						phaseName = value;
+					else if (arg.startsWith("--warmup="))
+						numWarmups = Integer.parseInt(value);
+					else if (arg.startsWith("--iterations="))
+						numIterations = Integer.parseInt(value);
+					else if (arg.startsWith("--num-regs="))
+						numRegs = Integer.parseInt(value);
+					else if (arg.startsWith("--opt-level="))
+						optLevel = Integer.parseInt(value);
+					else if (arg.startsWith("--generated="))
+						for (final String size : value.split(","))
+							generatedSizes.add(Integer.parseInt(size));
+					else if (arg.startsWith("--"))
+						Report.warning("Unknown command line option '" + arg + "'.");
+					else
+						srcNames.add(arg);
+				} catch (final NumberFormatException __) {
+					throw new Report.Error("Illegal number in '" + arg + "'.");
+				}
+			}
+			final Vector<String> srcFileNames = srcFileNames(srcNames);
+			final File genDir = Files.createTempDirectory("lang24-bench").toFile();
+			genDir.deleteOnExit();
+			for (final int numFunctions : generatedSizes) {
+				final File srcFile = new File(genDir, "generated-" + numFunctions + ".lang24");
+				srcFile.deleteOnExit();
+				try (final PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(srcFile)))) {
+					new Generator(numFunctions, 1, 3, 2, 4, 2024).generate(out);
+				}
+				srcFileNames.add(srcFile.getPath());
+			}
+			if (srcFileNames.isEmpty())
+				throw new Report.Error("No source files.");
+
+			final File dstFile = File.createTempFile("lang24-bench", "");
+			dstFile.deleteOnExit();
+			new File(dstFile.getPath() + ".mms").deleteOnExit();
+			final Benchmark benchmark = new Benchmark(numRegs, optLevel, dstFile.getPath());
+
+			final Vector<String> phaseNames = new Vector<String>();
+			for (final Step step : benchmark.steps)
+				if (phaseName.equals("all") || phaseName.equals(step.phaseName))
+					phaseNames.add(step.phaseName);
+			if (phaseNames.isEmpty())
+				throw new Report.Error("Unknown phase '" + phaseName + "'.");
+
+			System.out.println(String.format("%-8s %-56s %5s %12s %10s %12s %12s  %s", "Phase", "Source", "Cnt",
+					"Mean", "StdDev", "Min", "Alloc", "Units"));
+			for (final String benchmarkedPhaseName : phaseNames)
+				for (final String srcFileName : srcFileNames)
+					benchmark.run(benchmarkedPhaseName, srcFileName, numWarmups, numIterations);
+		} catch (final Report.Error error) {
+			System.err.println(error.getMessage());
+			System.exit(1);
+		} catch (final IOException ex) {
+			System.err.println("Cannot create temporary file: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
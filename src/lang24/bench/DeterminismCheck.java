@@ -0,0 +1,269 @@
+package lang24.bench;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import lang24.*;
+import lang24.Compiler;
+import lang24.common.report.*;
+
+/**
+ * A regression check that the generated code does not depend on how the
+ * compiler runs.
+ *
+ * Each source file is first compiled on its own. Then all source files are
+ * compiled together in batch mode (see {@link BatchCompiler}) several times,
+ * i.e., concurrently within the same JVM, and the check fails unless the code
+ * generated for each source file in each batch is identical to the code
+ * generated when it is compiled on its own. Likewise, each source file is
+ * compiled several times with its functions processed in parallel (see
+ * {@link lang24.phase.FunctionTasks}), on its own and in batch mode, and the
+ * check fails unless the code is the same every time. Each compilation runs in
+ * a separate process.
+ *
+ * Usage: {@code lang24.bench.DeterminismCheck [options] [compiler-options]
+ * source-files} where compiler options (e.g., {@code -O2}) are passed to each
+ * compilation (with {@code --num-regs=8} unless specified otherwise), and the
+ * options are
+ *
+ * <ul>
+ *
+ * <li><code>--runs=</code><i>number</i>: The number of times source files are
+ * compiled in each way (default 3).</li>
+ *
+ * <li><code>--threads=</code><i>number</i>: The number of threads each batch is
+ * compiled on and functions are processed on (default 2).</li>
+ *
+ * </ul>
+ */
+public class DeterminismCheck {
+
+	/** The directory the code is generated in. */
+	private final File genDir;
+
+	/** The options passed to each compilation. */
+	private final Vector<String> compilerOpts;
+
+	/**
+	 * Constructs a new determinism check.
+	 *
+	 * @param genDir       The directory the code is generated in.
+	 * @param compilerOpts The options passed to each compilation.
+	 */
+	private DeterminismCheck(final File genDir, final Vector<String> compilerOpts) {
+		this.genDir = genDir;
+		this.compilerOpts = compilerOpts;
+	}
+
+	/**
+	 * Runs the compiler in a separate process.
+	 *
+	 * @param opts The command line arguments (besides the options passed to each
+	 *             compilation).
+	 */
+	private void compile(final String... opts) {
+		final Vector<String> command = new Vector<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("--enable-preview");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Compiler.class.getName());
+		command.addAll(compilerOpts);
+		command.addAll(Arrays.asList(opts));
+		try {
+			final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			final String output = new String(process.getInputStream().readAllBytes());
+			if (process.waitFor() != 0)
+				throw new Report.Error("Running '" + String.join(" ", command) + "' failed:\n" + output);
+		} catch (final IOException | InterruptedException ex) {
+			throw new Report.Error("Cannot run the compiler: " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the generated code.
+	 *
+	 * @param mmsFile The file containing the generated code.
+	 * @return The generated code.
+	 */
+	private static byte[] code(final File mmsFile) {
+		try {
+			return Files.readAllBytes(mmsFile.toPath());
+		} catch (final IOException ex) {
+			throw new Report.Error("Cannot read code file '" + mmsFile.getPath() + "'.");
+		}
+	}
+
+	/**
+	 * Creates a directory within the directory the code is generated in.
+	 *
+	 * @param name The name of the directory.
+	 * @return The directory.
+	 */
+	private File subDir(final String name) {
+		final File dir = new File(genDir, name);
+		if (!dir.mkdir())
+			throw new Report.Error("Cannot create directory '" + dir.getPath() + "'.");
+		dir.deleteOnExit();
+		return dir;
+	}
+
+	/**
+	 * Compiles each source file on its own.
+	 *
+	 * @param srcFileNames The names of the source files.
+	 * @param dstDir       The directory the code is generated in.
+	 * @param opts         The options of the compilations (besides those passed to
+	 *                     each compilation).
+	 * @return The code generated for each source file indexed by the name of the
+	 *         source file without its extension.
+	 */
+	private TreeMap<String, byte[]> alone(final Vector<String> srcFileNames, final File dstDir, final String... opts) {
+		final TreeMap<String, byte[]> code = new TreeMap<String, byte[]>();
+		for (final String srcFileName : srcFileNames) {
+			final String name = Paths.get(srcFileName).getFileName().toString().replaceFirst("\\.lang24$", "");
+			if (code.containsKey(name))
+				throw new Report.Error("Source files named '" + name + "' given twice.");
+			final File mmsFile = new File(dstDir, name + ".mms");
+			mmsFile.deleteOnExit();
+			final Vector<String> args = new Vector<String>(Arrays.asList(opts));
+			args.add("--dst-file-name=" + new File(dstDir, name).getPath());
+			args.add(srcFileName);
+			compile(args.toArray(new String[0]));
+			code.put(name, code(mmsFile));
+		}
+		return code;
+	}
+
+	/**
+	 * Compiles all source files within a directory in batch mode.
+	 *
+	 * @param batchDir The directory containing the source files.
+	 * @param names    The names of the source files without their extensions.
+	 * @param opts     The options of the compilation (besides those passed to each
+	 *                 compilation).
+	 * @return The code generated for each source file indexed by the name of the
+	 *         source file without its extension.
+	 */
+	private TreeMap<String, byte[]> batch(final File batchDir, final Set<String> names, final String... opts) {
+		for (final String name : names)
+			new File(batchDir, name + ".mms").delete();
+		final Vector<String> args = new Vector<String>(Arrays.asList(opts));
+		args.add("--batch=" + batchDir.getPath());
+		compile(args.toArray(new String[0]));
+		final TreeMap<String, byte[]> code = new TreeMap<String, byte[]>();
+		for (final String name : names)
+			code.put(name, code(new File(batchDir, name + ".mms")));
+		return code;
+	}
+
+	/**
+	 * Prints the outcome of comparing the code generated for each source file with
+	 * the expected code.
+	 *
+	 * @param mode     The way the code has been generated.
+	 * @param code     The generated code indexed by the names of source files.
+	 * @param expected The expected code indexed by the names of source files.
+	 * @return The number of source files whose code is not as expected.
+	 */
+	private static int compare(final String mode, final TreeMap<String, byte[]> code,
+			final TreeMap<String, byte[]> expected) {
+		int numDiffering = 0;
+		for (final Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			final boolean identical = Arrays.equals(code.get(entry.getKey()), entry.getValue());
+			System.out.println(
+					String.format("%-40s %-16s %10s", entry.getKey(), mode, identical ? "ok" : "DIFFERS"));
+			if (!identical)
+				numDiffering++;
+		}
+		return numDiffering;
+	}
+
+	/**
+	 * Runs the check and prints its results.
+	 *
+	 * @param srcFileNames The names of the source files.
+	 * @param numRuns      The number of runs of each way of compiling.
+	 * @param numThreads   The number of threads each batch is compiled on and
+	 *                     functions are processed on.
+	 * @return The number of comparisons that fail.
+	 */
+	private int run(final Vector<String> srcFileNames, final int numRuns, final int numThreads) {
+		final File parallelDir = subDir("parallel");
+		final TreeMap<String, byte[]> aloneCode = alone(srcFileNames, subDir("alone"));
+		final TreeMap<String, byte[]> parallelCode = alone(srcFileNames, parallelDir, "--parallel=" + numThreads);
+
+		final File batchDir = subDir("batch");
+		for (final String srcFileName : srcFileNames) {
+			final File batchSrcFile = new File(batchDir, Paths.get(srcFileName).getFileName().toString());
+			batchSrcFile.deleteOnExit();
+			new File(batchSrcFile.getPath().replaceFirst("\\.lang24$", ".mms")).deleteOnExit();
+			try {
+				Files.copy(Paths.get(srcFileName), batchSrcFile.toPath());
+			} catch (final IOException ex) {
+				throw new Report.Error("Cannot copy source file '" + srcFileName + "'.");
+			}
+		}
+
+		int numFailed = 0;
+		for (int run = 1; run <= numRuns; run++) {
+			numFailed += compare("batch " + run, batch(batchDir, aloneCode.keySet(), "--threads=" + numThreads),
+					aloneCode);
+			if (run > 1)
+				numFailed += compare("parallel " + run,
+						alone(srcFileNames, parallelDir, "--parallel=" + numThreads), parallelCode);
+			numFailed += compare("parallel batch " + run, batch(batchDir, aloneCode.keySet(),
+					"--threads=" + numThreads, "--parallel=" + numThreads), parallelCode);
+		}
+		return numFailed;
+	}
+
+	/**
+	 * Runs the check.
+	 *
+	 * @param args Command line arguments (see {@link DeterminismCheck}).
+	 */
+	public static void main(final String[] args) {
+		try {
+			int numRuns = 3;
+			int numThreads = 2;
+			final Vector<String> compilerOpts = new Vector<String>();
+			final Vector<String> srcFileNames = new Vector<String>();
+			for (final String arg : args) {
+				final String value = arg.replaceFirst("^[^=]*=", "");
+				try {
+					if (arg.startsWith("--runs="))
+						numRuns = Integer.parseInt(value);
+					else if (arg.startsWith("--threads="))
+						numThreads = Integer.parseInt(value);
+					else if (arg.startsWith("-"))
+						compilerOpts.add(arg);
+					else
+						srcFileNames.add(arg);
+				} catch (final NumberFormatException __) {
+					throw new Report.Error("Illegal number in '" + arg + "'.");
+				}
+			}
+			if (srcFileNames.isEmpty())
+				throw new Report.Error("No source files.");
+			if (compilerOpts.stream().noneMatch(opt -> opt.startsWith("--num-regs")))
+				compilerOpts.add("--num-regs=8");
+
+			final File genDir = Files.createTempDirectory("lang24-determinism").toFile();
+			genDir.deleteOnExit();
+			final DeterminismCheck check = new DeterminismCheck(genDir, compilerOpts);
+
+			System.out.println(String.format("%-40s %-16s %10s", "Source", "Mode", "Check"));
+			final int numFailed = check.run(srcFileNames, numRuns, numThreads);
+			if (numFailed > 0)
+				throw new Report.Error("The code differs in " + numFailed + " cases.");
+		} catch (final Report.Error error) {
+			System.err.println(error.getMessage());
+			System.exit(1);
+		} catch (final IOException ex) {
+			System.err.println("Cannot create temporary directory: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
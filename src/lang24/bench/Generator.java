@@ -0,0 +1,258 @@
+package lang24.bench;
+
+import java.io.*;
+import java.util.*;
+import lang24.common.report.*;
+
+/**
+ * A generator of synthetic LANG'24 programs of tunable shape.
+ *
+ * A generated program consists of a number of top-level functions, each with a
+ * chain of nested local functions, and the main function calling each of the
+ * top-level functions once. Every function declares a number of integer
+ * variables that are all live from the start of the function's body until its
+ * end, runs a number of short loops assigning expressions of a given depth to
+ * them, and calls its local function (if any). Nested functions also refer to
+ * the variables of the enclosing function. Generated programs are valid and
+ * terminate quickly, so they pass through all phases including the
+ * interpreter.
+ *
+ * Usage: {@code lang24.bench.Generator [options] [file-name]} where the program
+ * is written to the specified file (or to the standard output), and the options
+ * are
+ *
+ * <ul>
+ *
+ * <li><code>--functions=</code><i>number</i>: The number of top-level functions
+ * (default 10).</li>
+ *
+ * <li><code>--depth=</code><i>number</i>: The nesting depth of local functions
+ * (default 1).</li>
+ *
+ * <li><code>--expr-depth=</code><i>number</i>: The depth of expressions
+ * (default 3).</li>
+ *
+ * <li><code>--loops=</code><i>number</i>: The number of loops per function
+ * (default 2).</li>
+ *
+ * <li><code>--live=</code><i>number</i>: The number of simultaneously live
+ * variables per function (default 4).</li>
+ *
+ * <li><code>--seed=</code><i>number</i>: The seed of the random generator
+ * (default 2024).</li>
+ *
+ * </ul>
+ */
+public class Generator {
+
+	/** The number of top-level functions. */
+	private final int numFunctions;
+
+	/** The nesting depth of local functions. */
+	private final int depth;
+
+	/** The depth of expressions. */
+	private final int exprDepth;
+
+	/** The number of loops per function. */
+	private final int numLoops;
+
+	/** The number of simultaneously live variables per function. */
+	private final int numLive;
+
+	/** The random generator. */
+	private final Random random;
+
+	/** The program being generated. */
+	private PrintWriter out;
+
+	/**
+	 * Constructs a new generator.
+	 *
+	 * @param numFunctions The number of top-level functions.
+	 * @param depth        The nesting depth of local functions.
+	 * @param exprDepth    The depth of expressions.
+	 * @param numLoops     The number of loops per function.
+	 * @param numLive      The number of simultaneously live variables per
+	 *                     function.
+	 * @param seed         The seed of the random generator.
+	 */
+	public Generator(final int numFunctions, final int depth, final int exprDepth, final int numLoops,
+			final int numLive, final long seed) {
+		if (numFunctions < 0 || depth < 0 || exprDepth < 0 || numLoops < 0 || numLive < 1)
+			throw new Report.Error("Illegal shape of a generated program.");
+		this.numFunctions = numFunctions;
+		this.depth = depth;
+		this.exprDepth = exprDepth;
+		this.numLoops = numLoops;
+		this.numLive = numLive;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generates a program.
+	 *
+	 * @param out The writer the program is written to.
+	 */
+	public void generate(final PrintWriter out) {
+		this.out = out;
+		for (int f = 0; f < numFunctions; f++) {
+			function("f" + f, 0, "", 0);
+			out.println();
+		}
+		out.println("main():int=");
+		out.println("\t{");
+		out.println("\t\ts=0;");
+		for (int f = 0; f < numFunctions; f++)
+			out.println("\t\ts=(s+f" + f + "(" + f + "))%1000;");
+		out.println("\t\treturn s;");
+		out.println("\t}");
+		out.println("\t{s:int}");
+		out.flush();
+	}
+
+	/**
+	 * Generates a function and its nested local functions.
+	 *
+	 * @param name   The name of the function.
+	 * @param level  The nesting level of the function (0 for top-level ones).
+	 * @param outer  The prefix of the variables of the enclosing function (or an
+	 *               empty string for top-level functions).
+	 * @param indent The indentation level.
+	 */
+	private void function(final String name, final int level, final String outer, final int indent) {
+		final String tabs = "\t".repeat(indent);
+		final String vars = "v" + level + "_";
+		final String par = "p" + level;
+		final String cnt = "i" + level;
+
+		out.println(tabs + name + "(" + par + ":int):int=");
+		out.println(tabs + "\t{");
+
+		// Make all variables live.
+		for (int v = 0; v < numLive; v++)
+			out.println(tabs + "\t\t" + vars + v + "=" + par + "+" + v + ";");
+
+		// Loops assigning expressions to variables.
+		for (int l = 0; l < numLoops; l++) {
+			out.println(tabs + "\t\t" + cnt + "=0;");
+			out.println(tabs + "\t\twhile " + cnt + "<" + (2 + random.nextInt(3)) + ":{");
+			final int numStmts = 1 + random.nextInt(3);
+			for (int s = 0; s < numStmts; s++) {
+				final String expr = expr(exprDepth, vars, par, level > 0 ? outer : null);
+				out.println(tabs + "\t\t\t" + vars + random.nextInt(numLive) + "=(" + expr + ")%1000;");
+			}
+			out.println(tabs + "\t\t\t" + cnt + "=" + cnt + "+1;");
+			out.println(tabs + "\t\t}");
+		}
+
+		// Call the local function.
+		if (level < depth)
+			out.println(tabs + "\t\t" + vars + "0=" + vars + "0+" + name + "_" + (level + 1) + "(" + vars + "0);");
+
+		// Use all variables, i.e., keep them live until here.
+		final StringBuilder sum = new StringBuilder();
+		for (int v = 0; v < numLive; v++)
+			sum.append(v == 0 ? "" : "+").append(vars).append(v);
+		out.println(tabs + "\t\treturn (" + sum + ")%1000;");
+		out.println(tabs + "\t}");
+
+		// Definitions.
+		out.println(tabs + "\t{");
+		final StringBuilder defns = new StringBuilder(tabs + "\t\t" + cnt + ":int");
+		for (int v = 0; v < numLive; v++)
+			defns.append(" ").append(vars).append(v).append(":int");
+		out.println(defns);
+		if (level < depth)
+			function(name + "_" + (level + 1), level + 1, vars, indent + 2);
+		out.println(tabs + "\t}");
+	}
+
+	/**
+	 * Returns a random integer expression of the specified depth.
+	 *
+	 * @param depth The depth of the expression.
+	 * @param vars  The prefix of the variables of the function.
+	 * @param par   The name of the parameter of the function.
+	 * @param outer The prefix of the variables of the enclosing function (or
+	 *              {@code null} if there is none).
+	 * @return The expression.
+	 */
+	private String expr(final int depth, final String vars, final String par, final String outer) {
+		if (depth == 0) {
+			switch (random.nextInt(outer == null ? 4 : 5)) {
+			case 0:
+				return Integer.toString(random.nextInt(100));
+			case 1:
+				return par;
+			case 4:
+				return outer + random.nextInt(numLive);
+			default:
+				return vars + random.nextInt(numLive);
+			}
+		}
+		final String left = expr(depth - 1, vars, par, outer);
+		final String right = expr(depth - 1, vars, par, outer);
+		switch (random.nextInt(4)) {
+		case 0:
+			return "(" + left + "-" + right + ")";
+		case 1:
+			return "(" + left + "*" + right + ")%97";
+		default:
+			return "(" + left + "+" + right + ")";
+		}
+	}
+
+	/**
+	 * Generates a program.
+	 *
+	 * @param args Command line arguments (see {@link Generator}).
+	 */
+	public static void main(final String[] args) {
+		try {
+			int numFunctions = 10;
+			int depth = 1;
+			int exprDepth = 3;
+			int numLoops = 2;
+			int numLive = 4;
+			long seed = 2024;
+			String fileName = null;
+			for (final String arg : args) {
+				final String value = arg.replaceFirst("^[^=]*=", "");
+				try {
+					if (arg.startsWith("--functions="))
+						numFunctions = Integer.parseInt(value);
+					else if (arg.startsWith("--depth="))
+						depth = Integer.parseInt(value);
+					else if (arg.startsWith("--expr-depth="))
+						exprDepth = Integer.parseInt(value);
+					else if (arg.startsWith("--loops="))
+						numLoops = Integer.parseInt(value);
+					else if (arg.startsWith("--live="))
+						numLive = Integer.parseInt(value);
+					else if (arg.startsWith("--seed="))
+						seed = Long.parseLong(value);
+					else if (arg.startsWith("--"))
+						Report.warning("Unknown command line option '" + arg + "'.");
+					else
+						fileName = arg;
+				} catch (final NumberFormatException __) {
+					throw new Report.Error("Illegal number in '" + arg + "'.");
+				}
+			}
+			final Generator generator = new Generator(numFunctions, depth, exprDepth, numLoops, numLive, seed);
+			if (fileName == null)
+				generator.generate(new PrintWriter(new OutputStreamWriter(System.out)));
+			else
+				try (final PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)))) {
+					generator.generate(out);
+				} catch (final IOException ex) {
+					throw new Report.Error("Cannot write file '" + fileName + "'.");
+				}
+		} catch (final Report.Error error) {
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
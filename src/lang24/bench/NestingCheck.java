@@ -0,0 +1,267 @@
+package lang24.bench;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.regex.*;
+import javax.xml.stream.*;
+import lang24.*;
+import lang24.Compiler;
+import lang24.common.report.*;
+
+/**
+ * A regression check of compiling deeply nested source files (see
+ * {@link StackReserve}).
+ *
+ * For each shape of nesting (else-if chains, nested ifs and loops, nested
+ * parentheses, blocks and calls, long chains of binary operators, runs of
+ * prefix operators), a program is generated twice, at a moderate and at a large
+ * nesting depth. The moderately nested program is compiled with the abstract
+ * syntax tree and the linearized intermediate code logged, and the check fails
+ * unless the depth of the abstract syntax tree is at most the bound computed by
+ * {@link StackReserve#depth(byte[])} and the depth of the intermediate code is
+ * at most {@link #IMC_LEVELS} times that bound. The deeply nested program is
+ * compiled through all phases including the interpreter, with the default stack
+ * of the compiler's main thread, and the check fails unless the program exits
+ * with the expected exit code, i.e., unless the stack reserved in proportion to
+ * the bound suffices for every phase. Each compilation runs in a separate
+ * process.
+ *
+ * Usage: {@code lang24.bench.NestingCheck [options] [compiler-options]} where
+ * compiler options (e.g., {@code -O2}) are passed to each compilation (with
+ * {@code --num-regs=8} unless specified otherwise), and the options are
+ *
+ * <ul>
+ *
+ * <li><code>--depth=</code><i>number</i>: The nesting depth of the programs
+ * compiled through all phases (default 10000).</li>
+ *
+ * <li><code>--log-depth=</code><i>number</i>: The nesting depth of the programs
+ * whose trees are measured (default 1000).</li>
+ *
+ * </ul>
+ */
+public class NestingCheck {
+
+	/**
+	 * The number of levels of intermediate code a single level of nesting of the
+	 * source may translate to.
+	 */
+	private static final long IMC_LEVELS = 2;
+
+	/**
+	 * A shape of nesting.
+	 *
+	 * @param name     The name of the shape.
+	 * @param body     The statements of the main function nested to the given
+	 *                 depth; they run with {@code x} equal to 1 and set {@code r}
+	 *                 to the exit code.
+	 * @param exitCode The exit code of the program nested to the given depth.
+	 */
+	private record Shape(String name, IntFunction<String> body, IntUnaryOperator exitCode) {
+	}
+
+	/** The shapes of nesting. */
+	private static final Shape[] shapes = {
+			new Shape("else-if", n -> "if x == 0 then r = 0; " + "else if x == 0 then r = 0; ".repeat(n) + "else r = 7;",
+					n -> 7),
+			new Shape("nested-if", n -> "if x > 0 then ".repeat(n) + "r = 7;" + " else r = 0;".repeat(n), n -> 7),
+			new Shape("nested-while", n -> "while x > 1 : ".repeat(n) + "x = 0; r = 7;", n -> 7),
+			new Shape("parentheses", n -> "r = " + "(".repeat(n) + "x" + " + x)".repeat(n) + ";", n -> n + 1),
+			new Shape("blocks", n -> "{ ".repeat(n) + "r = 7;" + " }".repeat(n), n -> 7),
+			new Shape("calls", n -> "r = " + "f(".repeat(n) + "x" + ")".repeat(n) + ";", n -> n + 1),
+			new Shape("sum-chain", n -> "r = x" + " + x".repeat(n) + ";", n -> n + 1),
+			new Shape("and-chain", n -> "b = x > 0" + " and x > 0".repeat(n) + "; if b then r = 7; else r = 0;",
+					n -> 7),
+			new Shape("or-chain", n -> "b = x < 0" + " or x < 0".repeat(n) + "; if b then r = 0; else r = 7;",
+					n -> 7),
+			new Shape("prefix-run", n -> "r = " + "- ".repeat(2 * n) + "x;", n -> 1), };
+
+	/** The directory the programs are generated in. */
+	private final File genDir;
+
+	/** The options passed to each compilation. */
+	private final Vector<String> compilerOpts;
+
+	/**
+	 * Constructs a new nesting check.
+	 *
+	 * @param genDir       The directory the programs are generated in.
+	 * @param compilerOpts The options passed to each compilation.
+	 */
+	private NestingCheck(final File genDir, final Vector<String> compilerOpts) {
+		this.genDir = genDir;
+		this.compilerOpts = compilerOpts;
+	}
+
+	/**
+	 * Generates a program.
+	 *
+	 * @param shape The shape of nesting.
+	 * @param depth The nesting depth.
+	 * @return The name of the source file.
+	 */
+	private String generate(final Shape shape, final int depth) {
+		final File srcFile = new File(genDir, shape.name + "-" + depth + ".lang24");
+		srcFile.deleteOnExit();
+		try (final PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(srcFile)))) {
+			out.println("f(a:int):int = return a + 1;");
+			out.println("main():int = {");
+			out.println("x = 1; r = 0;");
+			out.println(shape.body.apply(depth));
+			out.println("return r;");
+			out.println("} { x:int r:int b:bool }");
+		} catch (final IOException ex) {
+			throw new Report.Error("Cannot write source file '" + srcFile.getPath() + "'.");
+		}
+		return srcFile.getPath();
+	}
+
+	/**
+	 * Compiles a source file in a separate process.
+	 *
+	 * @param srcFileName The name of the source file.
+	 * @param opts        The options of the compilation (besides those passed to
+	 *                    each compilation).
+	 * @return The output of the compiler.
+	 */
+	private String compile(final String srcFileName, final String... opts) {
+		final Vector<String> command = new Vector<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.add("--enable-preview");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Compiler.class.getName());
+		command.addAll(compilerOpts);
+		command.addAll(Arrays.asList(opts));
+		command.add("--dst-file-name=" + srcFileName.replaceFirst("\\.lang24$", ""));
+		command.add(srcFileName);
+		try {
+			final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			final String output = new String(process.getInputStream().readAllBytes());
+			if (process.waitFor() != 0)
+				throw new Report.Error("Compiling '" + srcFileName + "' failed:\n" + output);
+			return output;
+		} catch (final IOException | InterruptedException ex) {
+			throw new Report.Error("Cannot run the compiler: " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the depth of the nesting of elements of a given name in a log.
+	 *
+	 * @param xmlFileName The name of the log file.
+	 * @param name        The name of the elements.
+	 * @return The largest number of nested elements of the given name.
+	 */
+	private static long logDepth(final String xmlFileName, final String name) {
+		try (final InputStream in = new BufferedInputStream(new FileInputStream(xmlFileName))) {
+			final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+			long depth = 0;
+			long maxDepth = 0;
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					if (reader.getLocalName().equals(name))
+						maxDepth = Math.max(maxDepth, ++depth);
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (reader.getLocalName().equals(name))
+						depth--;
+					break;
+				default:
+					break;
+				}
+			}
+			reader.close();
+			return maxDepth;
+		} catch (final IOException | XMLStreamException ex) {
+			throw new Report.Error("Cannot read log file '" + xmlFileName + "'.");
+		}
+	}
+
+	/**
+	 * Runs the check on a single shape of nesting and prints its result.
+	 *
+	 * @param shape    The shape of nesting.
+	 * @param depth    The nesting depth of the program compiled through all
+	 *                 phases.
+	 * @param logDepth The nesting depth of the program whose trees are measured.
+	 * @return {@code true} if the check passes, {@code false} otherwise.
+	 */
+	private boolean run(final Shape shape, final int depth, final int logDepth) {
+		final String logSrcFileName = generate(shape, logDepth);
+		final long logBound;
+		try {
+			logBound = StackReserve.depth(Files.readAllBytes(Paths.get(logSrcFileName)));
+		} catch (final IOException ex) {
+			throw new Report.Error("Cannot read source file '" + logSrcFileName + "'.");
+		}
+		final String xmlFileName = logSrcFileName.replaceFirst("\\.lang24$", ".xml");
+		new File(xmlFileName).deleteOnExit();
+		compile(logSrcFileName, "--logged-phase=abstr", "--target-phase=abstr", "--xml=" + xmlFileName);
+		final long astDepth = logDepth(xmlFileName, "node");
+		compile(logSrcFileName, "--logged-phase=imclin", "--target-phase=imclin", "--xml=" + xmlFileName);
+		final long imcDepth = logDepth(xmlFileName, "imc");
+
+		final String srcFileName = generate(shape, depth);
+		new File(srcFileName.replaceFirst("\\.lang24$", ".mms")).deleteOnExit();
+		final Matcher exitCode = Pattern.compile("EXIT CODE: (-?[0-9]+)").matcher(compile(srcFileName));
+		final String expected = Integer.toString(shape.exitCode.applyAsInt(depth));
+		final boolean compiled = exitCode.find() && exitCode.group(1).equals(expected);
+
+		final boolean passed = astDepth <= logBound && imcDepth <= IMC_LEVELS * logBound && compiled;
+		System.out.println(String.format("%-14s %10d %10d %10d %10.2f %10s %5s", shape.name, logBound, astDepth, imcDepth,
+				(double) imcDepth / logBound, compiled ? "ok" : "FAILED", passed ? "ok" : "FAIL"));
+		return passed;
+	}
+
+	/**
+	 * Runs the check.
+	 *
+	 * @param args Command line arguments (see {@link NestingCheck}).
+	 */
+	public static void main(final String[] args) {
+		try {
+			int depth = 10000;
+			int logDepth = 1000;
+			final Vector<String> compilerOpts = new Vector<String>();
+			for (final String arg : args) {
+				final String value = arg.replaceFirst("^[^=]*=", "");
+				try {
+					if (arg.startsWith("--depth="))
+						depth = Integer.parseInt(value);
+					else if (arg.startsWith("--log-depth="))
+						logDepth = Integer.parseInt(value);
+					else
+						compilerOpts.add(arg);
+				} catch (final NumberFormatException __) {
+					throw new Report.Error("Illegal number in '" + arg + "'.");
+				}
+			}
+			if (compilerOpts.stream().noneMatch(opt -> opt.startsWith("--num-regs")))
+				compilerOpts.add("--num-regs=8");
+
+			final File genDir = Files.createTempDirectory("lang24-nesting").toFile();
+			genDir.deleteOnExit();
+			final NestingCheck check = new NestingCheck(genDir, compilerOpts);
+
+			System.out.println(String.format("%-14s %10s %10s %10s %10s %10s %5s", "Shape", "Bound", "AST", "IMC",
+					"IMC/Bound", "Deep", "Check"));
+			int numFailed = 0;
+			for (final Shape shape : shapes)
+				if (!check.run(shape, depth, logDepth))
+					numFailed++;
+			if (numFailed > 0)
+				throw new Report.Error("The check fails for " + numFailed + " shapes of nesting.");
+		} catch (final Report.Error error) {
+			System.err.println(error.getMessage());
+			System.exit(1);
+		} catch (final IOException ex) {
+			System.err.println("Cannot create temporary directory: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
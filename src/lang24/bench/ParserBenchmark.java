@@ -0,0 +1,228 @@
+package lang24.bench;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import lang24.*;
+import lang24.Compiler;
+import lang24.common.logger.*;
+import lang24.common.report.*;
+import lang24.phase.abstr.*;
+import lang24.phase.lexan.*;
+import lang24.phase.synan.*;
+
+/**
+ * A benchmark of two-stage (SLL first, LL if SLL fails) parsing against
+ * parsing with LL prediction only.
+ *
+ * For each source file, the time of parsing an already lexed source file is
+ * measured using both strategies (as in {@link Benchmark}, each invocation runs
+ * within a fresh compilation context), and the speedup of two-stage parsing is
+ * reported together with whether it had to fall back to LL prediction. Finally,
+ * the abstract syntax trees produced by both strategies are logged and compared,
+ * and the benchmark fails if they differ.
+ *
+ * Usage: {@code lang24.bench.ParserBenchmark [options] source...} where each
+ * source is a LANG'24 source file or a directory containing them, and the
+ * options are
+ *
+ * <ul>
+ *
+ * <li><code>--warmup=</code><i>number</i>: The number of warmup iterations
+ * (default 3).</li>
+ *
+ * <li><code>--iterations=</code><i>number</i>: The number of measurement
+ * iterations (default 5).</li>
+ *
+ * <li><code>--generated=</code><i>number</i>[<code>,</code><i>number</i>...]:
+ * Also benchmark programs produced by {@link Generator} with the specified
+ * numbers of top-level functions (and the default shape otherwise).</li>
+ *
+ * </ul>
+ *
+ * As the parser is recursive, the benchmark runs on a thread with a large stack.
+ */
+public class ParserBenchmark {
+
+	/** The size of the stack of the benchmarking thread. */
+	private static final long STACK_SIZE = 1L << 30;
+
+	/** The name of a temporary file the abstract syntax trees are logged to. */
+	private final String xmlFileName;
+
+	/**
+	 * Constructs a new parser benchmark.
+	 *
+	 * @param xmlFileName The name of a temporary file the abstract syntax trees
+	 *                    are logged to.
+	 */
+	private ParserBenchmark(final String xmlFileName) {
+		this.xmlFileName = xmlFileName;
+	}
+
+	/**
+	 * The outcome of a single parse.
+	 *
+	 * @param nanos      The time of parsing in nanoseconds.
+	 * @param fallenBack Whether two-stage parsing has fallen back to LL
+	 *                   prediction.
+	 * @param ast        The logged abstract syntax tree (or {@code null} if not
+	 *                   requested).
+	 */
+	private record Parse(long nanos, boolean fallenBack, byte[] ast) {
+	}
+
+	/**
+	 * Parses a source file within a new compilation context.
+	 *
+	 * @param srcFileName The name of the source file.
+	 * @param twoStage    Whether two-stage parsing is used.
+	 * @param logAst      Whether the abstract syntax tree is logged.
+	 * @return The outcome of the parse.
+	 */
+	private Parse parse(final String srcFileName, final boolean twoStage, final boolean logAst) {
+		Compilation.begin();
+		try {
+			Compiler.configure(new String[] { srcFileName });
+			try (final LexAn lexan = new LexAn(); final SynAn synan = new SynAn(lexan)) {
+				lexan.tokens.fill();
+				final long start = System.nanoTime();
+				final Lang24Parser.SourceContext tree = synan.parse(twoStage);
+				final long nanos = System.nanoTime() - start;
+				if (!logAst)
+					return new Parse(nanos, synan.fallenBack(), null);
+				try (final Logger logger = new Logger("abstr", xmlFileName, "abstr.xsl")) {
+					tree.ast.accept(new AbstrLogger(logger), "AstDefn");
+				}
+				return new Parse(nanos, synan.fallenBack(), Files.readAllBytes(Paths.get(xmlFileName)));
+			} catch (final IOException ex) {
+				throw new Report.Error("Cannot read log file '" + xmlFileName + "'.");
+			}
+		} finally {
+			Compilation.end();
+		}
+	}
+
+	/**
+	 * Returns the mean time of parsing a source file.
+	 *
+	 * @param srcFileName   The name of the source file.
+	 * @param twoStage      Whether two-stage parsing is used.
+	 * @param numWarmups    The number of warmup iterations.
+	 * @param numIterations The number of measurement iterations.
+	 * @return The mean time of parsing in milliseconds.
+	 */
+	private double meanMillis(final String srcFileName, final boolean twoStage, final int numWarmups,
+			final int numIterations) {
+		for (int iteration = 0; iteration < numWarmups; iteration++)
+			parse(srcFileName, twoStage, false);
+		long nanos = 0;
+		for (int iteration = 0; iteration < numIterations; iteration++)
+			nanos += parse(srcFileName, twoStage, false).nanos;
+		return nanos / 1e6 / Math.max(1, numIterations);
+	}
+
+	/**
+	 * Runs the benchmark on a single source file and prints its result.
+	 *
+	 * @param srcFileName   The name of the source file.
+	 * @param numWarmups    The number of warmup iterations.
+	 * @param numIterations The number of measurement iterations.
+	 * @return {@code true} if both strategies produce the same abstract syntax
+	 *         tree, {@code false} otherwise.
+	 */
+	private boolean run(final String srcFileName, final int numWarmups, final int numIterations) {
+		final double llMillis = meanMillis(srcFileName, false, numWarmups, numIterations);
+		final double twoStageMillis = meanMillis(srcFileName, true, numWarmups, numIterations);
+		final Parse ll = parse(srcFileName, false, true);
+		final Parse twoStage = parse(srcFileName, true, true);
+		final boolean same = Arrays.equals(ll.ast, twoStage.ast);
+		System.out.println(String.format("%-56s %12.3f %12.3f %8.2f %9s %5s", srcFileName, llMillis, twoStageMillis,
+				llMillis / twoStageMillis, twoStage.fallenBack ? "yes" : "no", same ? "same" : "DIFF"));
+		return same;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args Command line arguments (see {@link ParserBenchmark}).
+	 */
+	public static void main(final String[] args) {
+		final int[] status = { 0 };
+		final Thread thread = new Thread(null, () -> status[0] = benchmark(args), "parser-benchmark", STACK_SIZE);
+		thread.start();
+		try {
+			thread.join();
+		} catch (final InterruptedException __) {
+			status[0] = 1;
+		}
+		System.exit(status[0]);
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args Command line arguments (see {@link ParserBenchmark}).
+	 * @return The exit status.
+	 */
+	private static int benchmark(final String[] args) {
+		try {
+			int numWarmups = 3;
+			int numIterations = 5;
+			final Vector<Integer> generatedSizes = new Vector<Integer>();
+			final Vector<String> srcNames = new Vector<String>();
+			for (final String arg : args) {
+				final String value = arg.replaceFirst("^[^=]*=", "");
+				try {
+					if (arg.startsWith("--warmup="))
+						numWarmups = Integer.parseInt(value);
+					else if (arg.startsWith("--iterations="))
+						numIterations = Integer.parseInt(value);
+					else if (arg.startsWith("--generated="))
+						for (final String size : value.split(","))
+							generatedSizes.add(Integer.parseInt(size));
+					else if (arg.startsWith("--"))
+						Report.warning("Unknown command line option '" + arg + "'.");
+					else
+						srcNames.add(arg);
+				} catch (final NumberFormatException __) {
+					throw new Report.Error("Illegal number in '" + arg + "'.");
+				}
+			}
+			final Vector<String> srcFileNames = Benchmark.srcFileNames(srcNames);
+			final File genDir = Files.createTempDirectory("lang24-bench").toFile();
+			genDir.deleteOnExit();
+			for (final int numFunctions : generatedSizes) {
+				final File srcFile = new File(genDir, "generated-" + numFunctions + ".lang24");
+				srcFile.deleteOnExit();
+				try (final PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(srcFile)))) {
+					new Generator(numFunctions, 1, 3, 2, 4, 2024).generate(out);
+				}
+				srcFileNames.add(srcFile.getPath());
+			}
+			if (srcFileNames.isEmpty())
+				throw new Report.Error("No source files.");
+
+			final File xmlFile = File.createTempFile("lang24-bench", ".xml");
+			xmlFile.deleteOnExit();
+			final ParserBenchmark benchmark = new ParserBenchmark(xmlFile.getPath());
+
+			System.out.println(String.format("%-56s %12s %12s %8s %9s %5s", "Source", "LL ms/op", "SLL+LL ms/op", "Speedup",
+					"Fallback", "AST"));
+			int numDiffs = 0;
+			for (final String srcFileName : srcFileNames)
+				if (!benchmark.run(srcFileName, numWarmups, numIterations))
+					numDiffs++;
+			if (numDiffs > 0)
+				throw new Report.Error("Abstract syntax trees differ for " + numDiffs + " source files.");
+			return 0;
+		} catch (final Report.Error error) {
+			System.err.println(error.getMessage());
+			return 1;
+		} catch (final IOException ex) {
+			System.err.println("Cannot create temporary file: " + ex.getMessage());
+			return 1;
+		}
+	}
+
+}
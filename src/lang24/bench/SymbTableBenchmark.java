@@ -0,0 +1,212 @@
+package lang24.bench;
+
+import java.lang.management.*;
+import java.util.*;
+import lang24.*;
+import lang24.common.report.*;
+import lang24.data.ast.tree.defn.*;
+import lang24.phase.seman.*;
+
+/**
+ * A microbenchmark of the symbol table (see {@link SymbTable}).
+ *
+ * The benchmark mimics name resolution of a deeply nested program: a number of
+ * names are defined in the global scope of a symbol table once, then each
+ * invocation nests scopes to the specified depth, within each scope defines
+ * some names (hiding the outer definitions of the same names) and looks up many
+ * names, and finally destroys all nested scopes again. The mean time and the
+ * mean number of bytes allocated per symbol table operation (an insertion, a
+ * lookup or the construction or destruction of a scope) are reported.
+ *
+ * Usage: {@code lang24.bench.SymbTableBenchmark [options]} where the options
+ * are
+ *
+ * <ul>
+ *
+ * <li><code>--names=</code><i>number</i>: The number of distinct names (default
+ * 1000).</li>
+ *
+ * <li><code>--depth=</code><i>number</i>: The depth of nesting of scopes
+ * (default 64).</li>
+ *
+ * <li><code>--defns=</code><i>number</i>: The number of names defined within
+ * each nested scope (default 8).</li>
+ *
+ * <li><code>--lookups=</code><i>number</i>: The number of names looked up
+ * within each nested scope (default 1000).</li>
+ *
+ * <li><code>--warmup=</code><i>number</i>: The number of warmup iterations
+ * (default 5).</li>
+ *
+ * <li><code>--iterations=</code><i>number</i>: The number of measurement
+ * iterations (default 10).</li>
+ *
+ * </ul>
+ */
+public class SymbTableBenchmark {
+
+	/** The definitions of all names. */
+	private final AstDefn[] defns;
+
+	/** The symbol table. */
+	private final SymbTable symbTable = new SymbTable();
+
+	/** The depth of nesting of scopes. */
+	private final int depth;
+
+	/** The names defined within each nested scope (as indices into defns). */
+	private final int[][] scopeDefns;
+
+	/** The names looked up within each nested scope (as indices into defns). */
+	private final int[][] scopeLookups;
+
+	/** Thread allocation measurements. */
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Constructs a new symbol table benchmark.
+	 *
+	 * @param numNames   The number of distinct names.
+	 * @param depth      The depth of nesting of scopes.
+	 * @param numDefns   The number of names defined within each nested scope.
+	 * @param numLookups The number of names looked up within each nested scope.
+	 */
+	private SymbTableBenchmark(final int numNames, final int depth, final int numDefns, final int numLookups) {
+		this.depth = depth;
+		defns = new AstDefn[numNames];
+		for (int index = 0; index < numNames; index++)
+			defns[index] = new AstVarDefn(new Location(0, 0), "name" + index, null);
+		final Random random = new Random(2024);
+		scopeDefns = new int[depth][];
+		scopeLookups = new int[depth][];
+		for (int scope = 0; scope < depth; scope++) {
+			// Distinct names within each scope.
+			final int first = random.nextInt(numNames);
+			scopeDefns[scope] = new int[Math.min(numDefns, numNames)];
+			for (int index = 0; index < scopeDefns[scope].length; index++)
+				scopeDefns[scope][index] = (first + index) % numNames;
+			scopeLookups[scope] = new int[numLookups];
+			for (int index = 0; index < numLookups; index++)
+				scopeLookups[scope][index] = random.nextInt(numNames);
+		}
+		try {
+			for (final AstDefn defn : defns)
+				symbTable.ins(defn.name, defn);
+		} catch (final SymbTable.CannotInsNameException __) {
+			throw new Report.InternalError();
+		}
+	}
+
+	/**
+	 * Runs a single invocation.
+	 *
+	 * @return The number of symbol table operations performed.
+	 */
+	private long invoke() {
+		long numOps = 0;
+		try {
+			for (int scope = 0; scope < depth; scope++) {
+				symbTable.newScope();
+				for (final int index : scopeDefns[scope])
+					symbTable.ins(defns[index].name, defns[index]);
+				for (final int index : scopeLookups[scope])
+					if (symbTable.fnd(defns[index].name) == null)
+						throw new Report.InternalError();
+				numOps += 1 + scopeDefns[scope].length + scopeLookups[scope].length;
+			}
+			for (int scope = 0; scope < depth; scope++)
+				symbTable.oldScope();
+			numOps += depth;
+		} catch (final SymbTable.CannotInsNameException | SymbTable.CannotFndNameException __) {
+			throw new Report.InternalError();
+		}
+		return numOps;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far (or 0 if
+	 * the JVM does not support this).
+	 *
+	 * @return The number of bytes allocated by the current thread so far.
+	 */
+	private long allocatedBytes() {
+		if (threadBean instanceof com.sun.management.ThreadMXBean sunThreadBean)
+			return sunThreadBean.getCurrentThreadAllocatedBytes();
+		return 0;
+	}
+
+	/**
+	 * Runs the benchmark and prints its result.
+	 *
+	 * @param numWarmups    The number of warmup iterations.
+	 * @param numIterations The number of measurement iterations.
+	 */
+	private void run(final int numWarmups, final int numIterations) {
+		for (int iteration = 0; iteration < numWarmups; iteration++)
+			invoke();
+		long nanos = 0;
+		long bytes = 0;
+		long numOps = 0;
+		for (int iteration = 0; iteration < numIterations; iteration++) {
+			final long startBytes = allocatedBytes();
+			final long start = System.nanoTime();
+			numOps += invoke();
+			nanos += System.nanoTime() - start;
+			bytes += allocatedBytes() - startBytes;
+		}
+		numOps = Math.max(1, numOps);
+		System.out.println(String.format("%12s %12s %12s", "Ops", "ns/op", "B/op"));
+		System.out.println(String.format("%12d %12.2f %12.2f", numOps / Math.max(1, numIterations),
+				(double) nanos / numOps, (double) bytes / numOps));
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args Command line arguments (see {@link SymbTableBenchmark}).
+	 */
+	public static void main(final String[] args) {
+		try {
+			int numNames = 1000;
+			int depth = 64;
+			int numDefns = 8;
+			int numLookups = 1000;
+			int numWarmups = 5;
+			int numIterations = 10;
+			for (final String arg : args) {
+				final String value = arg.replaceFirst("^[^=]*=", "");
+				try {
+					if (arg.startsWith("--names="))
+						numNames = Integer.parseInt(value);
+					else if (arg.startsWith("--depth="))
+						depth = Integer.parseInt(value);
+					else if (arg.startsWith("--defns="))
+						numDefns = Integer.parseInt(value);
+					else if (arg.startsWith("--lookups="))
+						numLookups = Integer.parseInt(value);
+					else if (arg.startsWith("--warmup="))
+						numWarmups = Integer.parseInt(value);
+					else if (arg.startsWith("--iterations="))
+						numIterations = Integer.parseInt(value);
+					else
+						Report.warning("Unknown command line option '" + arg + "'.");
+				} catch (final NumberFormatException __) {
+					throw new Report.Error("Illegal number in '" + arg + "'.");
+				}
+			}
+			if (numNames < 1 || depth < 0 || numDefns < 0 || numLookups < 0)
+				throw new Report.Error("Illegal benchmark shape.");
+
+			Compilation.begin();
+			try {
+				new SymbTableBenchmark(numNames, depth, numDefns, numLookups).run(numWarmups, numIterations);
+			} finally {
+				Compilation.end();
+			}
+		} catch (final Report.Error error) {
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Benchmarks of the compiler phases.
+ */
+package lang24.bench;
@@ -0,0 +1,365 @@
+package lang24.common.profile;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import lang24.*;
+import lang24.common.report.*;
+
+/**
+ * A profiler recording the cost of each phase of a compilation.
+ *
+ * For each phase the profiler records the wall time, the CPU time and the
+ * number of bytes allocated by the compiling thread, the peak size of the heap
+ * during the phase, and the size of the live heap once the phase is over.
+ * Phases can add their own counters. The profile is written out as a JSON
+ * file.
+ *
+ * A disabled profiler (the default one in each compilation) ignores everything
+ * it is told.
+ *
+ * Independently of recording, a profiler can enforce a heap budget: once each
+ * phase is over, its peak heap and the live heap are reported, and the
+ * compilation fails before the next phase begins if the live heap exceeds the
+ * budget. The heap is that of the whole process, so with several compilations
+ * running concurrently it is shared by all of them.
+ */
+public class Profiler {
+
+	/** The profiler of each compilation. */
+	private static final Compilation.Local<Profiler> profiler = new Compilation.Local<Profiler>(
+			() -> new Profiler(false, 0));
+
+	/** Whether this profiler records anything. */
+	private final boolean enabled;
+
+	/** Thread CPU time and allocation measurements. */
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	/** Heap measurements. */
+	private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+
+	/** Peak heap measurements (one per memory pool of the heap). */
+	private final Vector<MemoryPoolMXBean> heapPoolBeans = new Vector<MemoryPoolMXBean>();
+
+	/**
+	 * The largest live heap allowed after any phase (in bytes, or 0 if
+	 * unlimited).
+	 */
+	private final long heapBudget;
+
+	/**
+	 * The profile of a single phase.
+	 */
+	private static class PhaseProfile {
+
+		/** The name of the phase. */
+		final String phaseName;
+
+		/** The wall time in nanoseconds. */
+		long wallNanos;
+
+		/** The CPU time in nanoseconds. */
+		long cpuNanos;
+
+		/** The number of bytes allocated. */
+		long allocatedBytes;
+
+		/** The size of the live heap after the phase. */
+		long heapBytes;
+
+		/** The peak size of the heap (garbage included) during the phase. */
+		long peakHeapBytes;
+
+		/** Phase-specific counters (either numbers or maps of names to numbers). */
+		final LinkedHashMap<String, Object> counters = new LinkedHashMap<String, Object>();
+
+		/**
+		 * Constructs a new profile of a phase.
+		 *
+		 * @param phaseName The name of the phase.
+		 */
+		PhaseProfile(final String phaseName) {
+			this.phaseName = phaseName;
+		}
+
+	}
+
+	/** The profiles of all phases that have begun so far. */
+	private final Vector<PhaseProfile> phases = new Vector<PhaseProfile>();
+
+	/** The profile of the phase currently running (or {@code null}). */
+	private PhaseProfile phase = null;
+
+	/** The wall time at the beginning of the current phase. */
+	private long startWallNanos;
+
+	/** The CPU time at the beginning of the current phase. */
+	private long startCpuNanos;
+
+	/** The number of allocated bytes at the beginning of the current phase. */
+	private long startAllocatedBytes;
+
+	/**
+	 * Constructs a new profiler.
+	 *
+	 * @param enabled    Whether the profiler records anything.
+	 * @param heapBudget The largest live heap allowed after any phase (in bytes,
+	 *                   or 0 if unlimited).
+	 */
+	public Profiler(final boolean enabled, final long heapBudget) {
+		this.enabled = enabled;
+		this.heapBudget = heapBudget;
+		if (enabled || heapBudget > 0)
+			for (final MemoryPoolMXBean poolBean : ManagementFactory.getMemoryPoolMXBeans())
+				if (poolBean.getType() == MemoryType.HEAP)
+					heapPoolBeans.add(poolBean);
+	}
+
+	/**
+	 * Returns the profiler of the current compilation.
+	 *
+	 * @return The profiler of the current compilation.
+	 */
+	public static Profiler profiler() {
+		return profiler.get();
+	}
+
+	/**
+	 * Replaces the profiler of the current compilation with a new one.
+	 *
+	 * @param enabled    Whether the new profiler records anything.
+	 * @param heapBudget The largest live heap allowed after any phase (in bytes,
+	 *                   or 0 if unlimited).
+	 * @return The new profiler.
+	 */
+	public static Profiler start(final boolean enabled, final long heapBudget) {
+		final Profiler newProfiler = new Profiler(enabled, heapBudget);
+		profiler.set(newProfiler);
+		return newProfiler;
+	}
+
+	/**
+	 * Returns whether this profiler records anything.
+	 *
+	 * @return {@code true} if this profiler records anything, {@code false}
+	 *         otherwise.
+	 */
+	public boolean enabled() {
+		return enabled;
+	}
+
+	/**
+	 * Marks the beginning of a phase.
+	 *
+	 * @param phaseName The name of the phase.
+	 */
+	public void begin(final String phaseName) {
+		if (!enabled && heapBudget == 0)
+			return;
+		if (phase != null)
+			throw new Report.InternalError();
+		phase = new PhaseProfile(phaseName);
+		phases.add(phase);
+		for (final MemoryPoolMXBean poolBean : heapPoolBeans)
+			poolBean.resetPeakUsage();
+		startAllocatedBytes = allocatedBytes();
+		startCpuNanos = threadBean.getCurrentThreadCpuTime();
+		startWallNanos = System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of the current phase.
+	 */
+	public void end() {
+		if (!enabled && heapBudget == 0)
+			return;
+		if (phase == null)
+			throw new Report.InternalError();
+		phase.wallNanos = System.nanoTime() - startWallNanos;
+		phase.cpuNanos = threadBean.getCurrentThreadCpuTime() - startCpuNanos;
+		phase.allocatedBytes = allocatedBytes() - startAllocatedBytes;
+		for (final MemoryPoolMXBean poolBean : heapPoolBeans)
+			phase.peakHeapBytes += poolBean.getPeakUsage().getUsed();
+		// Only reachable objects are of interest, the collection itself is not
+		// included in the time of the phase.
+		System.gc();
+		phase.heapBytes = memoryBean.getHeapMemoryUsage().getUsed();
+		final PhaseProfile phase = this.phase;
+		this.phase = null;
+
+		if (heapBudget > 0) {
+			Report.info("Phase " + phase.phaseName + ": peak heap " + (phase.peakHeapBytes >> 20) + " MB, live heap "
+					+ (phase.heapBytes >> 20) + " MB.");
+			if (phase.heapBytes > heapBudget)
+				throw new Report.Error("Heap budget of " + (heapBudget >> 20) + " MB exceeded after phase "
+						+ phase.phaseName + " (" + (phase.heapBytes >> 20) + " MB live).");
+		}
+	}
+
+	/**
+	 * Sets a counter of the current (or, if no phase is running, the last) phase.
+	 *
+	 * @param counterName The name of the counter.
+	 * @param value       The value of the counter.
+	 */
+	public void count(final String counterName, final long value) {
+		if (!enabled)
+			return;
+		lastPhase().counters.put(counterName, value);
+	}
+
+	/**
+	 * Adds to a counter of the current (or, if no phase is running, the last)
+	 * phase.
+	 *
+	 * @param counterName The name of the counter.
+	 * @param value       The value added to the counter.
+	 */
+	public void add(final String counterName, final long value) {
+		if (!enabled)
+			return;
+		lastPhase().counters.merge(counterName, value, (oldValue, newValue) -> (Long) oldValue + (Long) newValue);
+	}
+
+	/**
+	 * Sets a counter of the current (or, if no phase is running, the last) phase
+	 * that consists of named values.
+	 *
+	 * @param counterName The name of the counter.
+	 * @param values      The values of the counter.
+	 */
+	public void count(final String counterName, final Map<String, Long> values) {
+		if (!enabled)
+			return;
+		lastPhase().counters.put(counterName, new LinkedHashMap<String, Long>(values));
+	}
+
+	/**
+	 * Writes the profile to a JSON file.
+	 *
+	 * @param fileName    The name of the JSON file.
+	 * @param srcFileName The name of the source file compiled.
+	 */
+	public void write(final String fileName, final String srcFileName) {
+		if (!enabled)
+			return;
+		long wallNanos = 0;
+		long cpuNanos = 0;
+		long allocatedBytes = 0;
+		long heapBytes = 0;
+		long peakHeapBytes = 0;
+		try (final PrintWriter json = new PrintWriter(new FileWriter(fileName))) {
+			json.println("{");
+			json.println("  \"source\": " + string(srcFileName) + ",");
+			json.println("  \"phases\": [");
+			for (int p = 0; p < phases.size(); p++) {
+				final PhaseProfile phase = phases.get(p);
+				json.println("    {");
+				json.println("      \"phase\": " + string(phase.phaseName) + ",");
+				json.println("      \"wallNanos\": " + phase.wallNanos + ",");
+				json.println("      \"cpuNanos\": " + phase.cpuNanos + ",");
+				json.println("      \"allocatedBytes\": " + phase.allocatedBytes + ",");
+				json.println("      \"heapBytes\": " + phase.heapBytes + ",");
+				json.print("      \"peakHeapBytes\": " + phase.peakHeapBytes);
+				if (!phase.counters.isEmpty()) {
+					json.println(",");
+					json.print("      \"counters\": " + object(phase.counters, "      "));
+				}
+				json.println();
+				json.println("    }" + (p < phases.size() - 1 ? "," : ""));
+				wallNanos += phase.wallNanos;
+				cpuNanos += phase.cpuNanos;
+				allocatedBytes += phase.allocatedBytes;
+				heapBytes = Math.max(heapBytes, phase.heapBytes);
+				peakHeapBytes = Math.max(peakHeapBytes, phase.peakHeapBytes);
+			}
+			json.println("  ],");
+			json.println("  \"total\": {");
+			json.println("    \"wallNanos\": " + wallNanos + ",");
+			json.println("    \"cpuNanos\": " + cpuNanos + ",");
+			json.println("    \"allocatedBytes\": " + allocatedBytes + ",");
+			json.println("    \"maxHeapBytes\": " + heapBytes + ",");
+			json.println("    \"maxPeakHeapBytes\": " + peakHeapBytes);
+			json.println("  }");
+			json.println("}");
+		} catch (final IOException ex) {
+			throw new Report.Error("Cannot write profile to '" + fileName + "'.");
+		}
+	}
+
+	/**
+	 * Returns the profile of the current (or, if no phase is running, the last)
+	 * phase.
+	 *
+	 * @return The profile of the current or the last phase.
+	 */
+	private PhaseProfile lastPhase() {
+		if (phases.isEmpty())
+			throw new Report.InternalError();
+		return phase != null ? phase : phases.lastElement();
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far (or 0 if
+	 * the JVM does not support this).
+	 *
+	 * @return The number of bytes allocated by the current thread so far.
+	 */
+	private long allocatedBytes() {
+		if (threadBean instanceof com.sun.management.ThreadMXBean sunThreadBean)
+			return sunThreadBean.getCurrentThreadAllocatedBytes();
+		return 0;
+	}
+
+	/**
+	 * Returns a JSON object.
+	 *
+	 * @param fields The fields of the object (either numbers or maps of names to
+	 *               numbers).
+	 * @param indent The indentation of the line the object starts in.
+	 * @return The JSON object.
+	 */
+	private static String object(final Map<String, ?> fields, final String indent) {
+		final StringBuilder object = new StringBuilder("{");
+		boolean first = true;
+		for (final Map.Entry<String, ?> field : fields.entrySet()) {
+			object.append(first ? "\n" : ",\n").append(indent).append("  ").append(string(field.getKey()))
+					.append(": ");
+			if (field.getValue() instanceof Map<?, ?> map) {
+				@SuppressWarnings("unchecked")
+				final Map<String, ?> subfields = (Map<String, ?>) map;
+				object.append(object(subfields, indent + "  "));
+			} else
+				object.append(field.getValue());
+			first = false;
+		}
+		return object.append(first ? "}" : "\n" + indent + "}").toString();
+	}
+
+	/**
+	 * Returns a JSON string.
+	 *
+	 * @param value The value of the string.
+	 * @return The JSON string.
+	 */
+	private static String string(final String value) {
+		final StringBuilder string = new StringBuilder("\"");
+		for (final char c : value.toCharArray()) {
+			switch (c) {
+			case '"' -> string.append("\\\"");
+			case '\\' -> string.append("\\\\");
+			case '\n' -> string.append("\\n");
+			case '\t' -> string.append("\\t");
+			default -> {
+				if (c < 0x20)
+					string.append(String.format("\\u%04x", (int) c));
+				else
+					string.append(c);
+			}
+			}
+		}
+		return string.append('"').toString();
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Infrastructure for profiling compilations.
+ */
+package lang24.common.profile;
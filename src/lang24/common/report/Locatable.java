@@ -14,6 +14,16 @@ public interface Locatable {
 	 */
 	public Location location();
 
+	/**
+	 * Returns the location of a part of the source file packed into a single
+	 * {@code long} value (see {@link Location#pack(int, int, int, int)}).
+	 * 
+	 * @return The packed location of a part of the source file.
+	 */
+	public default long packedLocation() {
+		return location().pack();
+	}
+
 	/**
 	 * Modifies the existing location.
 	 * 
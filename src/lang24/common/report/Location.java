@@ -1,5 +1,7 @@
 package lang24.common.report;
 
+import java.util.*;
+import lang24.*;
 import lang24.common.logger.*;
 
 /**
@@ -90,11 +92,122 @@ public class Location implements Locatable, Loggable {
 				end == null ? 0 : end.location().endLine, end == null ? 0 : end.location().endColumn);
 	}
 
+	/** The number of bits the first line occupies within a packed location. */
+	private static final int LINE_BITS = 23;
+
+	/** The number of bits a column occupies within a packed location. */
+	private static final int COLUMN_BITS = 14;
+
+	/**
+	 * The number of bits the number of lines between the first and the last line
+	 * occupies within a packed location (the sign bit is never used).
+	 */
+	private static final int SPAN_BITS = 63 - LINE_BITS - 2 * COLUMN_BITS;
+
+	/**
+	 * Locations that cannot be packed, stored within the current compilation and
+	 * referred to by negative packed locations.
+	 */
+	private static final Compilation.Local<Vector<Location>> unpackable = new Compilation.Local<Vector<Location>>(
+			Vector::new);
+
+	/**
+	 * Returns a location packed into a single {@code long} value (see
+	 * {@link #unpack(long)}) without constructing it. The first line and column,
+	 * the number of lines between the first and the last line, and the last
+	 * column are packed into a nonnegative value. If any of them is too large, the
+	 * location is constructed and stored within the current compilation, and a
+	 * negative value referring to it is returned.
+	 * 
+	 * @param begLine   The line number of the first character of the specified part
+	 *                  of the source file.
+	 * @param begColumn The column number of the first character of the specified
+	 *                  part of the source file.
+	 * @param endLine   The line number of the last character of the specified part
+	 *                  of the source file.
+	 * @param endColumn The column number of the last character of the specified
+	 *                  part of the source file.
+	 * @return The packed location.
+	 */
+	public static long pack(int begLine, int begColumn, int endLine, int endColumn) {
+		// As in the constructor.
+		if (begLine == 0)
+			begLine = endLine;
+		else if (endLine == 0)
+			endLine = begLine;
+		if (begColumn == 0)
+			begColumn = endColumn;
+		else if (endColumn == 0)
+			endColumn = begColumn;
+		final int span = endLine - begLine;
+		if ((begLine >>> LINE_BITS) != 0 || (begColumn >>> COLUMN_BITS) != 0 || (span >>> SPAN_BITS) != 0
+				|| (endColumn >>> COLUMN_BITS) != 0) {
+			final Vector<Location> unpackable = Location.unpackable.get();
+			unpackable.add(new Location(begLine, begColumn, endLine, endColumn));
+			return -unpackable.size();
+		}
+		return ((long) begLine << (COLUMN_BITS + SPAN_BITS + COLUMN_BITS))
+				| ((long) begColumn << (SPAN_BITS + COLUMN_BITS)) | ((long) span << COLUMN_BITS) | endColumn;
+	}
+
+	/**
+	 * Returns the location spanning from the beginning of one part of a source
+	 * file to the end of another, packed into a single {@code long} value (see
+	 * {@link #pack(int, int, int, int)}).
+	 * 
+	 * @param beg An object relating to the beginning of part of a source file.
+	 * @param end An object relating to the end of part of a source file.
+	 * @return The packed location.
+	 */
+	public static long pack(final Locatable beg, final Locatable end) {
+		final long packedBeg = beg == null ? 0 : beg.packedLocation();
+		final long packedEnd = end == null ? 0 : end.packedLocation();
+		if (packedBeg < 0 || packedEnd < 0)
+			return new Location(beg, end).pack();
+		final int endLine = (int) (packedEnd >>> (COLUMN_BITS + SPAN_BITS + COLUMN_BITS))
+				+ ((int) (packedEnd >>> COLUMN_BITS) & ((1 << SPAN_BITS) - 1));
+		return pack((int) (packedBeg >>> (COLUMN_BITS + SPAN_BITS + COLUMN_BITS)),
+				(int) (packedBeg >>> (SPAN_BITS + COLUMN_BITS)) & ((1 << COLUMN_BITS) - 1), endLine,
+				(int) packedEnd & ((1 << COLUMN_BITS) - 1));
+	}
+
+	/**
+	 * Returns this location packed into a single {@code long} value (see
+	 * {@link #pack(int, int, int, int)}).
+	 *
+	 * @return This location packed into a single {@code long} value.
+	 */
+	public long pack() {
+		return pack(begLine, begColumn, endLine, endColumn);
+	}
+
+	/**
+	 * Returns the location packed into a single {@code long} value by
+	 * {@link #pack(int, int, int, int)}.
+	 *
+	 * @param packed The packed location.
+	 * @return The location.
+	 */
+	public static Location unpack(final long packed) {
+		if (packed < 0)
+			return unpackable.get().get((int) (-packed - 1));
+		final int begLine = (int) (packed >>> (COLUMN_BITS + SPAN_BITS + COLUMN_BITS));
+		final int begColumn = (int) (packed >>> (SPAN_BITS + COLUMN_BITS)) & ((1 << COLUMN_BITS) - 1);
+		final int span = (int) (packed >>> COLUMN_BITS) & ((1 << SPAN_BITS) - 1);
+		final int endColumn = (int) packed & ((1 << COLUMN_BITS) - 1);
+		return new Location(begLine, begColumn, begLine + span, endColumn);
+	}
+
 	@Override
 	public Location location() {
 		return this;
 	}
 
+	@Override
+	public long packedLocation() {
+		return pack();
+	}
+
 	@Override
 	public void log(final Logger logger) {
 		if (logger == null)
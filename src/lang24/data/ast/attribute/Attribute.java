@@ -1,10 +1,18 @@
 package lang24.data.ast.attribute;
 
 import java.util.*;
+import lang24.*;
 import lang24.data.ast.tree.*;
 
 /**
  * An attribute of the abstract syntax tree node.
+ * 
+ * Values are kept in an array indexed by ids of nodes. The array is allocated
+ * when the first value is associated with a node and is large enough to hold
+ * values of all nodes constructed so far. If nodes are constructed later on, it
+ * grows geometrically. Only the growth of the array is synchronized: values of
+ * distinct nodes can be put concurrently (e.g., while the bodies of functions
+ * are processed in parallel) as long as no nodes are constructed meanwhile.
  *
  * @param <Node>  Nodes that values are associated with.
  * @param <Value> Values associated with nodes.
@@ -13,14 +21,14 @@ import lang24.data.ast.tree.*;
  */
 public class Attribute<Node extends AstNode, Value> {
 
-	/** Mapping of nodes to values. */
-	private final Vector<Value> mapping;
+	/** Mapping of nodes to values (within each compilation). */
+	private final Compilation.Local<Object[]> mapping;
 
 	/**
 	 * Constructs a new attribute.
 	 */
 	public Attribute() {
-		this.mapping = new Vector<Value>();
+		this.mapping = new Compilation.Local<Object[]>(() -> null);
 	}
 
 	/**
@@ -31,24 +39,53 @@ public class Attribute<Node extends AstNode, Value> {
 	 * @return The value.
 	 */
 	public Value put(final Node node, final Value value) {
-		int id = node.id();
-		while (id >= mapping.size())
-			mapping.setSize(id + 1000);
-		mapping.set(id, value);
+		Object[] mapping = this.mapping.get();
+		final int id = node.id();
+		if (mapping == null || id >= mapping.length)
+			mapping = grow(id);
+		mapping[id] = value;
 		return value;
 	}
 
+	/**
+	 * Grows the array of values so that it can hold the value of the node with the
+	 * specified id.
+	 * 
+	 * @param id The id of the node.
+	 * @return The array of values.
+	 */
+	private synchronized Object[] grow(final int id) {
+		Object[] mapping = this.mapping.get();
+		if (mapping == null || id >= mapping.length) {
+			final int length = mapping == null ? 0 : mapping.length;
+			mapping = Arrays.copyOf(mapping == null ? new Object[0] : mapping,
+					Math.max(Math.max(id + 1, AstNode.numNodes()), 2 * length));
+			this.mapping.set(mapping);
+		}
+		return mapping;
+	}
+
 	/**
 	 * Returns a value associated with the specified abstract syntax tree node.
 	 * 
 	 * @param node The specified abstract syntax tree node.
 	 * @return The value (or {@code null} if the value is not found).
 	 */
+	@SuppressWarnings("unchecked")
 	public Value get(final Node node) {
-		int id = node.id();
-		while (id >= mapping.size())
+		final Object[] mapping = this.mapping.get();
+		final int id = node.id();
+		if (mapping == null || id >= mapping.length)
 			return null;
-		return mapping.get(id);
+		return (Value) mapping[id];
+	}
+
+	/**
+	 * Releases the values of all nodes (within the current compilation) once no
+	 * phase needs them any more.
+	 */
+	public void release() {
+		mapping.release();
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package lang24.data.ast.attribute;
+
+import java.util.*;
+import lang24.*;
+import lang24.data.ast.tree.*;
+
+/**
+ * A boolean attribute of the abstract syntax tree node.
+ * 
+ * Values are kept in a bitset indexed by ids of nodes (see {@link Attribute}),
+ * where nodes without a value are taken to be associated with {@code false}.
+ *
+ * @param <Node> Nodes that values are associated with.
+ */
+public class BooleanAttribute<Node extends AstNode> {
+
+	/** Mapping of nodes to values (within each compilation). */
+	private final Compilation.Local<long[]> mapping;
+
+	/**
+	 * Constructs a new boolean attribute.
+	 */
+	public BooleanAttribute() {
+		this.mapping = new Compilation.Local<long[]>(() -> null);
+	}
+
+	/**
+	 * Associates a value with the specified abstract syntax tree node.
+	 * 
+	 * @param node  The specified abstract syntax tree node.
+	 * @param value The value.
+	 * @return The value.
+	 */
+	public boolean put(final Node node, final boolean value) {
+		long[] mapping = this.mapping.get();
+		final int id = node.id();
+		if (mapping == null || (id >> 6) >= mapping.length) {
+			final int length = mapping == null ? 0 : mapping.length;
+			mapping = Arrays.copyOf(mapping == null ? new long[0] : mapping,
+					Math.max(Math.max((id >> 6) + 1, (AstNode.numNodes() + 63) >> 6), 2 * length));
+			this.mapping.set(mapping);
+		}
+		if (value)
+			mapping[id >> 6] |= 1L << id;
+		else
+			mapping[id >> 6] &= ~(1L << id);
+		return value;
+	}
+
+	/**
+	 * Returns a value associated with the specified abstract syntax tree node.
+	 * 
+	 * @param node The specified abstract syntax tree node.
+	 * @return The value (or {@code false} if the value is not found).
+	 */
+	public boolean get(final Node node) {
+		final long[] mapping = this.mapping.get();
+		final int id = node.id();
+		if (mapping == null || (id >> 6) >= mapping.length)
+			return false;
+		return (mapping[id >> 6] & (1L << id)) != 0;
+	}
+
+	/**
+	 * Releases the values of all nodes (within the current compilation) once no
+	 * phase needs them any more.
+	 */
+	public void release() {
+		mapping.release();
+	}
+
+}
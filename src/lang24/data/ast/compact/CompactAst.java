@@ -0,0 +1,640 @@
+package lang24.data.ast.compact;
+
+import java.util.*;
+import lang24.common.report.*;
+import lang24.data.ast.tree.*;
+import lang24.data.ast.tree.defn.*;
+import lang24.data.ast.tree.expr.*;
+import lang24.data.ast.tree.stmt.*;
+import lang24.data.ast.tree.type.*;
+import lang24.data.ast.visitor.*;
+
+/**
+ * An abstract syntax tree stored in parallel arrays of primitive values.
+ *
+ * Each node is described by its kind, its tag (an operator or the type of an
+ * atom), its value (a name or the value of a constant, both stored in a pool of
+ * strings), the ids of its children and its location packed into a single
+ * {@code long} (see {@link Location#pack(int, int, int, int)}). All arrays are indexed by node
+ * ids, so attributes of nodes (see {@link lang24.data.ast.attribute.Attribute})
+ * remain valid for the compact tree.
+ *
+ * The nodes of the tree can be materialized (see {@link #node(int)}) so that
+ * the existing visitors can run on it (see {@link #accept(AstVisitor, Object)}).
+ * A materialized node gets the id it had when the tree was packed and each node
+ * is materialized at most once.
+ */
+public class CompactAst {
+
+	/** Kinds of nodes together with their numbers of children. */
+	public enum Kind {
+		/** A sequence of nodes (see {@link AstNodes}), with any number of children. */
+		NODES(-1),
+		/** A type definition: the type. */
+		TYP_DEFN(1),
+		/** A variable definition: the type. */
+		VAR_DEFN(1),
+		/** A function definition: the parameters, the type, the code, the local definitions. */
+		FUN_DEFN(4),
+		/** A call-by-reference parameter definition: the type. */
+		REF_PAR_DEFN(1),
+		/** A call-by-value parameter definition: the type. */
+		VAL_PAR_DEFN(1),
+		/** A component definition: the type. */
+		CMP_DEFN(1),
+		/** An array access: the array, the index. */
+		ARR_EXPR(2),
+		/** A constant. */
+		ATOM_EXPR(0),
+		/** A binary expression: the first and the second subexpression. */
+		BIN_EXPR(2),
+		/** A function call: the arguments. */
+		CALL_EXPR(1),
+		/** A cast: the type, the expression. */
+		CAST_EXPR(2),
+		/** A component access: the expression. */
+		CMP_EXPR(1),
+		/** A name. */
+		NAME_EXPR(0),
+		/** A prefix expression: the subexpression. */
+		PFX_EXPR(1),
+		/** A suffix expression: the subexpression. */
+		SFX_EXPR(1),
+		/** A sizeof expression: the type. */
+		SIZEOF_EXPR(1),
+		/** An assignment: the destination, the source. */
+		ASSIGN_STMT(2),
+		/** A block: the statements. */
+		BLOCK_STMT(1),
+		/** An expression statement: the expression. */
+		EXPR_STMT(1),
+		/** A conditional statement: the condition, the then and the else branch. */
+		IF_STMT(3),
+		/** A return statement: the expression. */
+		RETURN_STMT(1),
+		/** A loop: the condition, the body. */
+		WHILE_STMT(2),
+		/** An array type: the element type, the size. */
+		ARR_TYPE(2),
+		/** An atom type. */
+		ATOM_TYPE(0),
+		/** A type name. */
+		NAME_TYPE(0),
+		/** A pointer type: the base type. */
+		PTR_TYPE(1),
+		/** A structure type: the components. */
+		STR_TYPE(1),
+		/** A union type: the components. */
+		UNI_TYPE(1);
+
+		/** The number of children (or -1 if not fixed). */
+		public final int arity;
+
+		/**
+		 * Constructs a kind of nodes.
+		 *
+		 * @param arity The number of children (or -1 if not fixed).
+		 */
+		private Kind(final int arity) {
+			this.arity = arity;
+		}
+	}
+
+	/** All kinds of nodes. */
+	private static final Kind[] kindValues = Kind.values();
+
+	/** The kind of a node that is not part of the tree. */
+	private static final byte ABSENT = -1;
+
+	/** The kinds of nodes (as ordinals). */
+	private final byte[] kinds;
+
+	/** The tags of nodes (as ordinals of operators or types of atoms). */
+	private final byte[] tags;
+
+	/**
+	 * The values of nodes (as indices into the pool of strings) or, for sequences
+	 * of nodes, their numbers of children.
+	 */
+	private final int[] values;
+
+	/** The indices of the first children of nodes within {@link #edges}. */
+	private final int[] firstEdges;
+
+	/** The packed locations of nodes. */
+	private final long[] locations;
+
+	/** The ids of children of all nodes (-1 for a missing child). */
+	private int[] edges;
+
+	/** The number of used elements of {@link #edges}. */
+	private int numEdges = 0;
+
+	/** The pool of strings. */
+	private String[] strings = new String[64];
+
+	/** The number of strings in the pool. */
+	private int numStrings = 0;
+
+	/** The id of the root. */
+	private final int root;
+
+	/** Materialized nodes (or {@code null} if none yet). */
+	private AstNode[] nodes = null;
+
+	/**
+	 * Packs an abstract syntax tree.
+	 *
+	 * @param root The root of the abstract syntax tree.
+	 */
+	public CompactAst(final AstNode root) {
+		final int capacity = AstNode.numNodes();
+		kinds = new byte[capacity];
+		Arrays.fill(kinds, ABSENT);
+		tags = new byte[capacity];
+		values = new int[capacity];
+		firstEdges = new int[capacity];
+		locations = new long[capacity];
+		edges = new int[capacity];
+		this.root = root.id;
+		root.accept(new Packer(), null);
+		edges = Arrays.copyOf(edges, numEdges);
+		strings = Arrays.copyOf(strings, numStrings);
+	}
+
+	/**
+	 * Returns the id of the root.
+	 *
+	 * @return The id of the root.
+	 */
+	public int root() {
+		return root;
+	}
+
+	/**
+	 * Returns the kind of a node.
+	 *
+	 * @param id The id of the node.
+	 * @return The kind of the node (or {@code null} if the node is not part of
+	 *         the tree).
+	 */
+	public Kind kind(final int id) {
+		return kinds[id] == ABSENT ? null : kindValues[kinds[id]];
+	}
+
+	/**
+	 * Returns the number of children of a node.
+	 *
+	 * @param id The id of the node.
+	 * @return The number of children of the node.
+	 */
+	public int numChildren(final int id) {
+		final Kind kind = kind(id);
+		return kind.arity < 0 ? values[id] : kind.arity;
+	}
+
+	/**
+	 * Returns the id of a child of a node.
+	 *
+	 * @param id    The id of the node.
+	 * @param index The index of the child.
+	 * @return The id of the child (or -1 if the child is missing).
+	 */
+	public int child(final int id, final int index) {
+		if (index < 0 || index >= numChildren(id))
+			throw new Report.InternalError();
+		return edges[firstEdges[id] + index];
+	}
+
+	/**
+	 * Returns the tag of a node, i.e., the ordinal of its operator or of its type
+	 * of an atom.
+	 *
+	 * @param id The id of the node.
+	 * @return The tag of the node.
+	 */
+	public int tag(final int id) {
+		return tags[id];
+	}
+
+	/**
+	 * Returns the value of a node, i.e., its name or the value of a constant.
+	 *
+	 * @param id The id of the node.
+	 * @return The value of the node (or {@code null} if it has none).
+	 */
+	public String value(final int id) {
+		return kinds[id] == Kind.NODES.ordinal() || values[id] < 0 ? null : strings[values[id]];
+	}
+
+	/**
+	 * Returns the location of a node.
+	 *
+	 * @param id The id of the node.
+	 * @return The location of the node.
+	 */
+	public Location location(final int id) {
+		return Location.unpack(locations[id]);
+	}
+
+	/**
+	 * Returns the approximate number of bytes occupied by this tree (without
+	 * materialized nodes).
+	 *
+	 * @return The approximate number of bytes occupied by this tree.
+	 */
+	public long footprint() {
+		long bytes = kinds.length + tags.length + 4L * values.length + 4L * firstEdges.length
+				+ 8L * locations.length + 4L * edges.length + 4L * strings.length;
+		for (int index = 0; index < numStrings; index++)
+			bytes += 40 + strings[index].length();
+		return bytes;
+	}
+
+	/**
+	 * The acceptor method: materializes the tree and lets the visitor visit its
+	 * root.
+	 *
+	 * @param <Result>   The result type.
+	 * @param <Argument> The argument type.
+	 * @param visitor    The visitor accepted by this acceptor.
+	 * @param arg        The argument.
+	 * @return The result.
+	 */
+	public <Result, Argument> Result accept(final AstVisitor<Result, Argument> visitor, final Argument arg) {
+		return node(root).accept(visitor, arg);
+	}
+
+	// PACKING
+
+	/**
+	 * A visitor that records all nodes of a tree.
+	 */
+	private class Packer implements AstFullVisitor<Object, Object> {
+
+		/** The indices of strings in the pool. */
+		private final HashMap<String, Integer> stringIndices = new HashMap<String, Integer>();
+
+		/**
+		 * Appends a string to the pool of strings unless it is already there.
+		 *
+		 * @param string The string.
+		 * @return The index of the string within the pool.
+		 */
+		private int intern(final String string) {
+			if (string == null)
+				return -1;
+			final Integer index = stringIndices.get(string);
+			if (index != null)
+				return index;
+			if (numStrings == strings.length)
+				strings = Arrays.copyOf(strings, 2 * numStrings);
+			strings[numStrings] = string;
+			stringIndices.put(string, numStrings);
+			return numStrings++;
+		}
+
+		/**
+		 * Records a node.
+		 *
+		 * @param node     The node.
+		 * @param kind     The kind of the node.
+		 * @param tag      The tag of the node.
+		 * @param value    The value of the node (or {@code null}).
+		 * @param children The children of the node (any of them can be
+		 *                 {@code null}).
+		 */
+		private void record(final AstNode node, final Kind kind, final Enum<?> tag, final String value,
+				final AstNode... children) {
+			final int id = node.id;
+			kinds[id] = (byte) kind.ordinal();
+			tags[id] = tag == null ? 0 : (byte) tag.ordinal();
+			values[id] = kind == Kind.NODES ? children.length : intern(value);
+			locations[id] = node.packedLocation();
+			if (numEdges + children.length > edges.length)
+				edges = Arrays.copyOf(edges, Math.max(2 * edges.length, numEdges + children.length));
+			firstEdges[id] = numEdges;
+			for (final AstNode child : children)
+				edges[numEdges++] = child == null ? -1 : child.id;
+		}
+
+		@Override
+		public Object visit(final AstNodes<? extends AstNode> nodes, final Object arg) {
+			final AstNode[] children = new AstNode[nodes.size()];
+			for (int index = 0; index < nodes.size(); index++)
+				children[index] = nodes.get(index);
+			record(nodes, Kind.NODES, null, null, children);
+			return AstFullVisitor.super.visit(nodes, arg);
+		}
+
+		@Override
+		public Object visit(final AstTypDefn typDefn, final Object arg) {
+			record(typDefn, Kind.TYP_DEFN, null, typDefn.name, typDefn.type);
+			return AstFullVisitor.super.visit(typDefn, arg);
+		}
+
+		@Override
+		public Object visit(final AstVarDefn varDefn, final Object arg) {
+			record(varDefn, Kind.VAR_DEFN, null, varDefn.name, varDefn.type);
+			return AstFullVisitor.super.visit(varDefn, arg);
+		}
+
+		@Override
+		public Object visit(final AstFunDefn funDefn, final Object arg) {
+			record(funDefn, Kind.FUN_DEFN, null, funDefn.name, funDefn.pars, funDefn.type, funDefn.stmt,
+					funDefn.defns);
+			return AstFullVisitor.super.visit(funDefn, arg);
+		}
+
+		@Override
+		public Object visit(final AstFunDefn.AstRefParDefn refParDefn, final Object arg) {
+			record(refParDefn, Kind.REF_PAR_DEFN, null, refParDefn.name, refParDefn.type);
+			return AstFullVisitor.super.visit(refParDefn, arg);
+		}
+
+		@Override
+		public Object visit(final AstFunDefn.AstValParDefn valParDefn, final Object arg) {
+			record(valParDefn, Kind.VAL_PAR_DEFN, null, valParDefn.name, valParDefn.type);
+			return AstFullVisitor.super.visit(valParDefn, arg);
+		}
+
+		@Override
+		public Object visit(final AstRecType.AstCmpDefn cmpDefn, final Object arg) {
+			record(cmpDefn, Kind.CMP_DEFN, null, cmpDefn.name, cmpDefn.type);
+			return AstFullVisitor.super.visit(cmpDefn, arg);
+		}
+
+		@Override
+		public Object visit(final AstArrExpr arrExpr, final Object arg) {
+			record(arrExpr, Kind.ARR_EXPR, null, null, arrExpr.arr, arrExpr.idx);
+			return AstFullVisitor.super.visit(arrExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstAtomExpr atomExpr, final Object arg) {
+			record(atomExpr, Kind.ATOM_EXPR, atomExpr.type, atomExpr.value);
+			return AstFullVisitor.super.visit(atomExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstBinExpr binExpr, final Object arg) {
+			record(binExpr, Kind.BIN_EXPR, binExpr.oper, null, binExpr.fstExpr, binExpr.sndExpr);
+			return AstFullVisitor.super.visit(binExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstCallExpr callExpr, final Object arg) {
+			record(callExpr, Kind.CALL_EXPR, null, callExpr.name, callExpr.args);
+			return AstFullVisitor.super.visit(callExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstCastExpr castExpr, final Object arg) {
+			record(castExpr, Kind.CAST_EXPR, null, null, castExpr.type, castExpr.expr);
+			return AstFullVisitor.super.visit(castExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstCmpExpr cmpExpr, final Object arg) {
+			record(cmpExpr, Kind.CMP_EXPR, null, cmpExpr.name, cmpExpr.expr);
+			return AstFullVisitor.super.visit(cmpExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstNameExpr nameExpr, final Object arg) {
+			record(nameExpr, Kind.NAME_EXPR, null, nameExpr.name);
+			return AstFullVisitor.super.visit(nameExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstPfxExpr pfxExpr, final Object arg) {
+			record(pfxExpr, Kind.PFX_EXPR, pfxExpr.oper, null, pfxExpr.expr);
+			return AstFullVisitor.super.visit(pfxExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstSfxExpr sfxExpr, final Object arg) {
+			record(sfxExpr, Kind.SFX_EXPR, sfxExpr.oper, null, sfxExpr.expr);
+			return AstFullVisitor.super.visit(sfxExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstSizeofExpr sizeofExpr, final Object arg) {
+			record(sizeofExpr, Kind.SIZEOF_EXPR, null, null, sizeofExpr.type);
+			return AstFullVisitor.super.visit(sizeofExpr, arg);
+		}
+
+		@Override
+		public Object visit(final AstAssignStmt assignStmt, final Object arg) {
+			record(assignStmt, Kind.ASSIGN_STMT, null, null, assignStmt.dst, assignStmt.src);
+			return AstFullVisitor.super.visit(assignStmt, arg);
+		}
+
+		@Override
+		public Object visit(final AstBlockStmt blockStmt, final Object arg) {
+			record(blockStmt, Kind.BLOCK_STMT, null, null, blockStmt.stmts);
+			return AstFullVisitor.super.visit(blockStmt, arg);
+		}
+
+		@Override
+		public Object visit(final AstExprStmt exprStmt, final Object arg) {
+			record(exprStmt, Kind.EXPR_STMT, null, null, exprStmt.expr);
+			return AstFullVisitor.super.visit(exprStmt, arg);
+		}
+
+		@Override
+		public Object visit(final AstIfStmt ifStmt, final Object arg) {
+			record(ifStmt, Kind.IF_STMT, null, null, ifStmt.cond, ifStmt.thenStmt, ifStmt.elseStmt);
+			return AstFullVisitor.super.visit(ifStmt, arg);
+		}
+
+		@Override
+		public Object visit(final AstReturnStmt retStmt, final Object arg) {
+			record(retStmt, Kind.RETURN_STMT, null, null, retStmt.expr);
+			return AstFullVisitor.super.visit(retStmt, arg);
+		}
+
+		@Override
+		public Object visit(final AstWhileStmt whileStmt, final Object arg) {
+			record(whileStmt, Kind.WHILE_STMT, null, null, whileStmt.cond, whileStmt.stmt);
+			return AstFullVisitor.super.visit(whileStmt, arg);
+		}
+
+		@Override
+		public Object visit(final AstArrType arrType, final Object arg) {
+			record(arrType, Kind.ARR_TYPE, null, null, arrType.elemType, arrType.size);
+			return AstFullVisitor.super.visit(arrType, arg);
+		}
+
+		@Override
+		public Object visit(final AstAtomType atomType, final Object arg) {
+			record(atomType, Kind.ATOM_TYPE, atomType.type, null);
+			return AstFullVisitor.super.visit(atomType, arg);
+		}
+
+		@Override
+		public Object visit(final AstNameType nameType, final Object arg) {
+			record(nameType, Kind.NAME_TYPE, null, nameType.name);
+			return AstFullVisitor.super.visit(nameType, arg);
+		}
+
+		@Override
+		public Object visit(final AstPtrType ptrType, final Object arg) {
+			record(ptrType, Kind.PTR_TYPE, null, null, ptrType.baseType);
+			return AstFullVisitor.super.visit(ptrType, arg);
+		}
+
+		@Override
+		public Object visit(final AstStrType strType, final Object arg) {
+			record(strType, Kind.STR_TYPE, null, null, strType.cmps);
+			return AstFullVisitor.super.visit(strType, arg);
+		}
+
+		@Override
+		public Object visit(final AstUniType uniType, final Object arg) {
+			record(uniType, Kind.UNI_TYPE, null, null, uniType.cmps);
+			return AstFullVisitor.super.visit(uniType, arg);
+		}
+
+	}
+
+	// MATERIALIZATION
+
+	/**
+	 * Returns the materialized node, materializing it and its subtree if
+	 * necessary.
+	 *
+	 * @param id The id of the node (or -1).
+	 * @return The materialized node (or {@code null} if the id is -1).
+	 */
+	public AstNode node(final int id) {
+		if (id < 0)
+			return null;
+		if (nodes == null)
+			nodes = new AstNode[kinds.length];
+		if (nodes[id] == null) {
+			final AstNode node = AstNode.reconstruct(id, () -> materialize(id));
+			nodes[id] = node;
+		}
+		return nodes[id];
+	}
+
+	/**
+	 * Returns the materialized child of a node.
+	 *
+	 * @param <Node>    The type of the child.
+	 * @param id        The id of the node.
+	 * @param index     The index of the child.
+	 * @param nodeClass The class of the child.
+	 * @return The materialized child (or {@code null} if the child is missing).
+	 */
+	@SuppressWarnings("unchecked")
+	private <Node extends AstNode> Node child(final int id, final int index, final Class<Node> nodeClass) {
+		return (Node) node(child(id, index));
+	}
+
+	/**
+	 * Returns the materialized elements of a sequence of nodes.
+	 *
+	 * @param <Node> The type of the elements.
+	 * @param id     The id of the sequence.
+	 * @return The materialized elements.
+	 */
+	@SuppressWarnings("unchecked")
+	private <Node extends AstNode> Vector<Node> elements(final int id) {
+		final Vector<Node> elements = new Vector<Node>(values[id]);
+		for (int index = 0; index < values[id]; index++)
+			elements.add((Node) node(child(id, index)));
+		return elements;
+	}
+
+	/**
+	 * Constructs a node from its description, materializing its children first.
+	 * As the node is constructed last, it gets the id the node is reconstructed
+	 * with (see {@link #node(int)}).
+	 *
+	 * @param id The id of the node.
+	 * @return The node.
+	 */
+	@SuppressWarnings("unchecked")
+	private AstNode materialize(final int id) {
+		final Location location = location(id);
+		final String value = value(id);
+		switch (kind(id)) {
+		case NODES:
+			return new AstNodes<AstNode>(location, elements(id));
+		case TYP_DEFN:
+			return new AstTypDefn(location, value, child(id, 0, AstType.class));
+		case VAR_DEFN:
+			return new AstVarDefn(location, value, child(id, 0, AstType.class));
+		case FUN_DEFN:
+			return new AstFunDefn(location, value, (AstNodes<AstFunDefn.AstParDefn>) node(child(id, 0)),
+					child(id, 1, AstType.class), child(id, 2, AstStmt.class),
+					(AstNodes<AstDefn>) node(child(id, 3)));
+		case REF_PAR_DEFN:
+			return new AstFunDefn.AstRefParDefn(location, value, child(id, 0, AstType.class));
+		case VAL_PAR_DEFN:
+			return new AstFunDefn.AstValParDefn(location, value, child(id, 0, AstType.class));
+		case CMP_DEFN:
+			return new AstRecType.AstCmpDefn(location, value, child(id, 0, AstType.class));
+		case ARR_EXPR:
+			return new AstArrExpr(location, child(id, 0, AstExpr.class), child(id, 1, AstExpr.class));
+		case ATOM_EXPR:
+			return new AstAtomExpr(location, AstAtomExpr.Type.values()[tags[id]], value);
+		case BIN_EXPR:
+			return new AstBinExpr(location, AstBinExpr.Oper.values()[tags[id]], child(id, 0, AstExpr.class),
+					child(id, 1, AstExpr.class));
+		case CALL_EXPR:
+			return new AstCallExpr(location, value, (AstNodes<AstExpr>) node(child(id, 0)));
+		case CAST_EXPR:
+			return new AstCastExpr(location, child(id, 0, AstType.class), child(id, 1, AstExpr.class));
+		case CMP_EXPR:
+			return new AstCmpExpr(location, child(id, 0, AstExpr.class), value);
+		case NAME_EXPR:
+			return new AstNameExpr(location, value);
+		case PFX_EXPR:
+			return new AstPfxExpr(location, AstPfxExpr.Oper.values()[tags[id]], child(id, 0, AstExpr.class));
+		case SFX_EXPR:
+			return new AstSfxExpr(location, AstSfxExpr.Oper.values()[tags[id]], child(id, 0, AstExpr.class));
+		case SIZEOF_EXPR:
+			return new AstSizeofExpr(location, child(id, 0, AstType.class));
+		case ASSIGN_STMT:
+			return new AstAssignStmt(location, child(id, 0, AstExpr.class), child(id, 1, AstExpr.class));
+		case BLOCK_STMT: {
+			// The block constructs the sequence of its statements itself (with the
+			// id following the id of the block).
+			final int stmtsId = child(id, 0);
+			final AstBlockStmt blockStmt = new AstBlockStmt(location, elements(stmtsId));
+			if (blockStmt.stmts.id != stmtsId)
+				throw new Report.InternalError();
+			blockStmt.stmts.relocate(location(stmtsId));
+			nodes[stmtsId] = blockStmt.stmts;
+			return blockStmt;
+		}
+		case EXPR_STMT:
+			return new AstExprStmt(location, child(id, 0, AstExpr.class));
+		case IF_STMT:
+			return new AstIfStmt(location, child(id, 0, AstExpr.class), child(id, 1, AstStmt.class),
+					child(id, 2, AstStmt.class));
+		case RETURN_STMT:
+			return new AstReturnStmt(location, child(id, 0, AstExpr.class));
+		case WHILE_STMT:
+			return new AstWhileStmt(location, child(id, 0, AstExpr.class), child(id, 1, AstStmt.class));
+		case ARR_TYPE:
+			return new AstArrType(location, child(id, 0, AstType.class), child(id, 1, AstExpr.class));
+		case ATOM_TYPE:
+			return new AstAtomType(location, AstAtomType.Type.values()[tags[id]]);
+		case NAME_TYPE:
+			return new AstNameType(location, value);
+		case PTR_TYPE:
+			return new AstPtrType(location, child(id, 0, AstType.class));
+		case STR_TYPE:
+			return new AstStrType(location, (AstNodes<AstRecType.AstCmpDefn>) node(child(id, 0)));
+		case UNI_TYPE:
+			return new AstUniType(location, (AstNodes<AstRecType.AstCmpDefn>) node(child(id, 0)));
+		default:
+			throw new Report.InternalError();
+		}
+	}
+
+}
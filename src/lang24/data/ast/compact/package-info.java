@@ -0,0 +1,4 @@
+/**
+ * Compact representation of abstract syntax trees.
+ */
+package lang24.data.ast.compact;
@@ -1,5 +1,8 @@
 package lang24.data.ast.tree;
 
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import lang24.*;
 import lang24.common.report.*;
 import lang24.data.ast.visitor.*;
 
@@ -10,14 +13,18 @@ import lang24.data.ast.visitor.*;
  */
 public abstract class AstNode implements Locatable {
 
-	/** The number of nodes constructed so far. */
-	private static int numNodes = 0;
+	/** The number of nodes constructed so far (within each compilation). */
+	private static final Compilation.Local<AtomicInteger> numNodes = new Compilation.Local<AtomicInteger>(
+			AtomicInteger::new);
 
 	/** The unique id of this node. */
 	public final int id;
 
-	/** The location of this node. */
-	private Location location;
+	/**
+	 * The location of this node, packed (see
+	 * {@link Location#pack(int, int, int, int)}) and unpacked only when asked for.
+	 */
+	private long location;
 
 	/**
 	 * Constructs a node of an abstract syntax tree.
@@ -25,8 +32,61 @@ public abstract class AstNode implements Locatable {
 	 * @param location The location.
 	 */
 	public AstNode(final Locatable location) {
-		id = numNodes++;
-		this.location = location.location();
+		this(location.packedLocation());
+	}
+
+	/**
+	 * Constructs a node of an abstract syntax tree.
+	 * 
+	 * @param location The packed location.
+	 */
+	protected AstNode(final long location) {
+		id = numNodes.get().getAndIncrement();
+		this.location = location;
+	}
+
+	/**
+	 * Returns the number of nodes constructed so far (within the current
+	 * compilation).
+	 * 
+	 * @return The number of nodes constructed so far.
+	 */
+	public static int numNodes() {
+		return numNodes.get().get();
+	}
+
+	/**
+	 * Abandons all nodes constructed after the specified number of nodes had been
+	 * constructed, i.e., the next node constructed gets the specified number as
+	 * its id.
+	 * 
+	 * @param numNodes The number of nodes that are kept.
+	 */
+	public static void abandonNodes(final int numNodes) {
+		AstNode.numNodes.get().set(numNodes);
+	}
+
+	/**
+	 * Reconstructs a node that has already been constructed (and abandoned) so
+	 * that it gets the same id it had originally. Any node constructed by the
+	 * constructor of the reconstructed node gets the subsequent ids. Afterwards,
+	 * the number of nodes constructed so far is restored, so reconstructions can
+	 * be nested.
+	 *
+	 * @param <Node>      The type of the node.
+	 * @param id          The original id of the node.
+	 * @param constructor The constructor of the node.
+	 * @return The reconstructed node.
+	 */
+	public static <Node extends AstNode> Node reconstruct(final int id, final Supplier<Node> constructor) {
+		final AtomicInteger numNodes = AstNode.numNodes.get();
+		final int numConstructed = numNodes.get();
+		numNodes.set(id);
+		try {
+			return constructor.get();
+		} finally {
+			numNodes.set(numConstructed);
+		}
 	}
 
 	/**
@@ -40,11 +100,16 @@ public abstract class AstNode implements Locatable {
 
 	@Override
 	public final void relocate(final Locatable location) {
-		this.location = location.location();
+		this.location = location.packedLocation();
 	}
 
 	@Override
 	public final Location location() {
+		return Location.unpack(location);
+	}
+
+	@Override
+	public final long packedLocation() {
 		return location;
 	}
 
@@ -31,15 +31,11 @@ public class AstNodes<Node extends AstNode> extends AstNode implements Iterable<
 	 */
 	@SuppressWarnings("unchecked")
 	public AstNodes(final List<Node> nodes) {
-		super(nodes.isEmpty() ? new Location(0, 0) : new Location(nodes.getFirst(), nodes.getLast()));
+		super(nodes.isEmpty() ? Location.pack(0, 0, 0, 0) : Location.pack(nodes.getFirst(), nodes.getLast()));
 		this.nodes = (Node[]) (new AstNode[nodes.size()]);
 		int index = 0;
 		for (final Node n : nodes)
 			this.nodes[index++] = n;
-		if (this.nodes.length == 0)
-			relocate(new Location(0, 0));
-		else
-			relocate(new Location(this.nodes[0], this.nodes[this.nodes.length - 1]));
 	}
 
 	/**
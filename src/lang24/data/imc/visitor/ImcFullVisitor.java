@@ -0,0 +1,103 @@
+package lang24.data.imc.visitor;
+
+import lang24.data.imc.code.expr.*;
+import lang24.data.imc.code.stmt.*;
+
+/**
+ * An intermediate code visitor that traverses the entire intermediate code
+ * tree.
+ *
+ * @param <Result> The result type.
+ * @param <Arg>    The argument type.
+ */
+public interface ImcFullVisitor<Result, Arg> extends ImcVisitor<Result, Arg> {
+
+	// lang24.data.imc.code.expr:
+
+	@Override
+	public default Result visit(ImcBINOP binOp, Arg visArg) {
+		binOp.fstExpr.accept(this, visArg);
+		binOp.sndExpr.accept(this, visArg);
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcCALL call, Arg visArg) {
+		for (final ImcExpr arg : call.args)
+			arg.accept(this, visArg);
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcCONST constant, Arg visArg) {
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcMEM mem, Arg visArg) {
+		mem.addr.accept(this, visArg);
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcNAME name, Arg visArg) {
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcSEXPR sExpr, Arg visArg) {
+		sExpr.stmt.accept(this, visArg);
+		sExpr.expr.accept(this, visArg);
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcTEMP temp, Arg visArg) {
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcUNOP unOp, Arg visArg) {
+		unOp.subExpr.accept(this, visArg);
+		return null;
+	}
+
+	// lang24.data.imc.code.stmt:
+
+	@Override
+	public default Result visit(ImcCJUMP cjump, Arg visArg) {
+		cjump.cond.accept(this, visArg);
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcESTMT eStmt, Arg visArg) {
+		eStmt.expr.accept(this, visArg);
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcJUMP jump, Arg visArg) {
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcLABEL label, Arg visArg) {
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcMOVE move, Arg visArg) {
+		move.dst.accept(this, visArg);
+		move.src.accept(this, visArg);
+		return null;
+	}
+
+	@Override
+	public default Result visit(ImcSTMTS stmts, Arg visArg) {
+		for (final ImcStmt stmt : stmts.stmts)
+			stmt.accept(this, visArg);
+		return null;
+	}
+
+}
@@ -1,5 +1,9 @@
 package lang24.data.mem;
 
+import java.util.concurrent.atomic.*;
+import lang24.*;
+import lang24.common.report.*;
+
 /**
  * A label.
  * 
@@ -10,13 +14,56 @@ public class MemLabel {
 	/** The name of a label. */
 	public final String name;
 
-	/** Counter of anonymous labels. */
-	private static long count = 0;
+	/** Counter of anonymous labels (within each compilation). */
+	private static final Compilation.Local<AtomicLong> count = new Compilation.Local<AtomicLong>(AtomicLong::new);
+
+	/**
+	 * The block of numbers of anonymous labels the current thread is restricted to
+	 * (the next number and the first number past the block) or {@code null} if
+	 * numbers are taken from the counter.
+	 */
+	private static final ThreadLocal<long[]> block = new ThreadLocal<long[]>();
 
 	/** Creates a new anonymous label. */
 	public MemLabel() {
-		this.name = "L" + count;
-		count++;
+		final long[] block = MemLabel.block.get();
+		if (block == null)
+			this.name = "L" + count.get().getAndIncrement();
+		else {
+			if (block[0] == block[1])
+				throw new Report.InternalError();
+			this.name = "L" + block[0]++;
+		}
+	}
+
+	/**
+	 * Reserves a block of consecutive numbers of anonymous labels.
+	 * 
+	 * @param size The number of numbers reserved.
+	 * @return The first number of the block.
+	 */
+	public static long reserve(final long size) {
+		return count.get().getAndAdd(size);
+	}
+
+	/**
+	 * Runs an action within which anonymous labels created by the current thread
+	 * are numbered within a reserved block (see {@link #reserve(long)}). Thus the
+	 * names of labels do not depend on the order in which several threads create
+	 * them.
+	 * 
+	 * @param first  The first number of the block.
+	 * @param size   The number of numbers within the block.
+	 * @param action The action.
+	 */
+	public static void numbered(final long first, final long size, final Runnable action) {
+		final long[] previous = block.get();
+		block.set(new long[] { first, first + size });
+		try {
+			action.run();
+		} finally {
+			block.set(previous);
+		}
 	}
 
 	/**
@@ -28,4 +75,11 @@ public class MemLabel {
 		this.name = "_" + name;
 	}
 
+	@Override
+	public int hashCode() {
+		// Independent of the identity hash code so that the order of basic blocks
+		// is the same no matter where (and in which thread) the compilation runs.
+		return name.hashCode();
+	}
+
 }
\ No newline at end of file
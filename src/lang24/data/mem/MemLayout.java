@@ -0,0 +1,51 @@
+package lang24.data.mem;
+
+/**
+ * The memory layout of a type.
+ *
+ * All values and all components of records are aligned to octabytes, so only
+ * sizes and offsets of components are described.
+ */
+public class MemLayout {
+
+	/** The size of a value of the type. */
+	public final long size;
+
+	/**
+	 * The offsets of components if the type is a record (or {@code null} if it is
+	 * not).
+	 */
+	private final long[] offsets;
+
+	/**
+	 * Constructs a new layout of a type that is not a record.
+	 *
+	 * @param size The size of a value of the type.
+	 */
+	public MemLayout(final long size) {
+		this.size = size;
+		this.offsets = null;
+	}
+
+	/**
+	 * Constructs a new layout of a record type.
+	 *
+	 * @param size    The size of a value of the type.
+	 * @param offsets The offsets of components.
+	 */
+	public MemLayout(final long size, final long[] offsets) {
+		this.size = size;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Returns the offset of a component.
+	 *
+	 * @param index The index of the component.
+	 * @return The offset of the component.
+	 */
+	public long offset(final int index) {
+		return offsets[index];
+	}
+
+}
@@ -1,5 +1,9 @@
 package lang24.data.mem;
 
+import java.util.concurrent.atomic.*;
+import lang24.*;
+import lang24.common.report.*;
+
 /**
  * A temporary variable.
  *
@@ -10,13 +14,73 @@ public class MemTemp {
 	/** The name of a temporary variable. */
 	public final long temp;
 
-	/** Counter of temporary variables. */
-	private static long count = 0;
+	/** Counter of temporary variables (within each compilation). */
+	private static final Compilation.Local<AtomicLong> count = new Compilation.Local<AtomicLong>(AtomicLong::new);
+
+	/**
+	 * The block of numbers of temporary variables the current thread is
+	 * restricted to (the next number and the first number past the block) or
+	 * {@code null} if numbers are taken from the counter.
+	 */
+	private static final ThreadLocal<long[]> block = new ThreadLocal<long[]>();
 
 	/** Creates a new temporary variable. */
 	public MemTemp() {
-		this.temp = count;
-		count++;
+		final long[] block = MemTemp.block.get();
+		if (block == null)
+			this.temp = count.get().getAndIncrement();
+		else {
+			if (block[0] == block[1])
+				throw new Report.InternalError();
+			this.temp = block[0]++;
+		}
+	}
+
+	/**
+	 * Reserves a block of consecutive numbers of temporary variables.
+	 * 
+	 * @param size The number of numbers reserved.
+	 * @return The first number of the block.
+	 */
+	public static long reserve(final long size) {
+		return count.get().getAndAdd(size);
+	}
+
+	/**
+	 * Runs an action within which temporary variables created by the current
+	 * thread are numbered within a reserved block (see {@link #reserve(long)}).
+	 * Thus the names of temporary variables do not depend on the order in which
+	 * several threads create them.
+	 * 
+	 * @param first  The first number of the block.
+	 * @param size   The number of numbers within the block.
+	 * @param action The action.
+	 */
+	public static void numbered(final long first, final long size, final Runnable action) {
+		final long[] previous = block.get();
+		block.set(new long[] { first, first + size });
+		try {
+			action.run();
+		} finally {
+			block.set(previous);
+		}
+	}
+
+	/**
+	 * Returns the number of temporary variables created so far (within the
+	 * current compilation, including the numbers reserved in blocks).
+	 *
+	 * @return The number of temporary variables created so far.
+	 */
+	public static long count() {
+		return count.get().get();
+	}
+
+	@Override
+	public int hashCode() {
+		// Independent of the identity hash code so that the register allocation is
+		// the same no matter where (and in which thread) the compilation runs.
+		return Long.hashCode(temp);
 	}
 
 	@Override
@@ -0,0 +1,37 @@
+package lang24.data.mem;
+
+import lang24.common.logger.*;
+
+/**
+ * An access to a local variable kept in a temporary variable instead of in the
+ * frame.
+ * 
+ * (Used only for scalar variables whose address is never needed.)
+ */
+public class MemTempAccess extends MemAccess {
+
+	/** The temporary variable holding the variable. */
+	public final MemTemp temp;
+
+	/**
+	 * Constructs a new access to a variable kept in a temporary variable.
+	 * 
+	 * @param size The size of the variable.
+	 * @param temp The temporary variable holding the variable.
+	 */
+	public MemTempAccess(long size, MemTemp temp) {
+		super(size);
+		this.temp = temp;
+	}
+
+	@Override
+	public void log(Logger logger) {
+		if (logger == null)
+			return;
+		logger.begElement("access");
+		logger.addAttribute("size", Long.toString(size));
+		logger.addAttribute("temp", temp.toString());
+		logger.endElement();
+	}
+
+}
@@ -16,8 +16,11 @@ import lang24.phase.lexan.*;
 @SuppressWarnings("serial")
 public class LocLogToken extends CommonToken implements Locatable, Loggable {
 
-	/** The location of this token. */
-	private final Location location;
+	/**
+	 * The location of this token, packed (see
+	 * {@link Location#pack(int, int, int, int)}) and unpacked only when asked for.
+	 */
+	private final long location;
 
 	/**
 	 * Never used outside {@link Lang24Lexer} (see
@@ -28,7 +31,7 @@ public class LocLogToken extends CommonToken implements Locatable, Loggable {
 		super(type, text);
 		setLine(0);
 		setCharPositionInLine(0);
-		location = new Location(getLine(), getCharPositionInLine(), getLine(),
+		location = Location.pack(getLine(), getCharPositionInLine(), getLine(),
 				getCharPositionInLine() + getText().length() - 1);
 	}
 
@@ -41,12 +44,38 @@ public class LocLogToken extends CommonToken implements Locatable, Loggable {
 			final int stop) {
 		super(source, type, channel, start, stop);
 		setCharPositionInLine(getCharPositionInLine() - getText().length() + 1);
-		location = new Location(getLine(), getCharPositionInLine(), getLine(),
+		location = Location.pack(getLine(), getCharPositionInLine(), getLine(),
 				getCharPositionInLine() + getText().length() - 1);
 	}
 
+	/**
+	 * Constructs a new token of a packed token stream (see
+	 * {@link PackedTokenStream}).
+	 * 
+	 * @param source  The lexer and the source file of the token.
+	 * @param type    The type of the token.
+	 * @param channel The channel of the token.
+	 * @param start   The index of the first character of the token.
+	 * @param stop    The index of the last character of the token.
+	 * @param line    The line of the token.
+	 * @param column  The column of the first character of the token.
+	 */
+	public LocLogToken(final Pair<TokenSource, CharStream> source, final int type, final int channel, final int start,
+			final int stop, final int line, final int column) {
+		super(source, type, channel, start, stop);
+		setLine(line);
+		setCharPositionInLine(column);
+		final int length = type == EOF ? getText().length() : stop - start + 1;
+		location = Location.pack(line, column, line, column + length - 1);
+	}
+
 	@Override
 	public Location location() {
+		return Location.unpack(location);
+	}
+
+	@Override
+	public long packedLocation() {
 		return location;
 	}
 
@@ -61,7 +90,7 @@ public class LocLogToken extends CommonToken implements Locatable, Loggable {
 		} else {
 			logger.addAttribute("kind", Lang24Lexer.VOCABULARY.getSymbolicName(getType()));
 			logger.addAttribute("lexeme", getText());
-			location.log(logger);
+			location().log(logger);
 		}
 		logger.endElement();
 	}
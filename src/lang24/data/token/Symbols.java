@@ -0,0 +1,144 @@
+package lang24.data.token;
+
+import java.util.*;
+import lang24.*;
+
+/**
+ * Symbols, i.e., names interned into consecutive integer ids (within each
+ * compilation).
+ *
+ * Names of identifiers are interned as they are lexed, so all occurrences of
+ * the same name share the same string and the same id. The names and their ids
+ * are kept in an open-addressed hash table with linear probing.
+ */
+public class Symbols {
+
+	/** The symbols of the current compilation. */
+	private static final Compilation.Local<Symbols> symbols = new Compilation.Local<Symbols>(Symbols::new);
+
+	/** The names of symbols indexed by their ids. */
+	private String[] names = new String[256];
+
+	/** The hash codes of names of symbols indexed by their ids. */
+	private int[] hashes = new int[256];
+
+	/** The number of symbols. */
+	private int size = 0;
+
+	/** The hash table: ids of symbols incremented by 1 (0 for an empty slot). */
+	private int[] slots = new int[512];
+
+	/**
+	 * Constructs a new empty set of symbols.
+	 */
+	private Symbols() {
+	}
+
+	/**
+	 * Returns the symbols of the current compilation.
+	 *
+	 * @return The symbols of the current compilation.
+	 */
+	public static Symbols current() {
+		return symbols.get();
+	}
+
+	/**
+	 * Returns the id of a name, interning the name if it has not been interned yet.
+	 *
+	 * @param name The name.
+	 * @return The id of the name.
+	 */
+	public int intern(final String name) {
+		final int hash = name.hashCode();
+		final int slot = find(name, hash);
+		if (slots[slot] != 0)
+			return slots[slot] - 1;
+		if (size == names.length) {
+			names = Arrays.copyOf(names, 2 * size);
+			hashes = Arrays.copyOf(hashes, 2 * size);
+		}
+		final int id = size++;
+		names[id] = name;
+		hashes[id] = hash;
+		slots[slot] = id + 1;
+		if (2 * size > slots.length)
+			rehash();
+		return id;
+	}
+
+	/**
+	 * Returns the id of a name.
+	 *
+	 * @param name The name.
+	 * @return The id of the name or -1 if the name has not been interned.
+	 */
+	public int id(final String name) {
+		return slots[find(name, name.hashCode())] - 1;
+	}
+
+	/**
+	 * Returns the name of a symbol.
+	 *
+	 * @param id The id of the symbol.
+	 * @return The name of the symbol.
+	 */
+	public String name(final int id) {
+		return names[id];
+	}
+
+	/**
+	 * Returns the number of symbols interned so far.
+	 *
+	 * @return The number of symbols.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the slot of the hash table that contains the specified name or, if
+	 * the name is not there, the empty slot where the probe ends.
+	 *
+	 * @param name The name.
+	 * @param hash The hash code of the name.
+	 * @return The slot.
+	 */
+	private int find(final String name, final int hash) {
+		final int mask = slots.length - 1;
+		int slot = mix(hash) & mask;
+		while (slots[slot] != 0) {
+			final int id = slots[slot] - 1;
+			if (names[id] == name || (hashes[id] == hash && names[id].equals(name)))
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the hash table.
+	 */
+	private void rehash() {
+		slots = new int[2 * slots.length];
+		final int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = mix(hashes[id]) & mask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * Spreads the bits of a hash code so that similar names do not cluster.
+	 *
+	 * @param hash The hash code.
+	 * @return The spread hash code.
+	 */
+	private static int mix(final int hash) {
+		final int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -48,6 +48,15 @@ public class SemNameType extends SemType {
 		return type;
 	}
 
+	/**
+	 * Checks whether the type this named type represents has been defined.
+	 * 
+	 * @return {@code true} if the type has been defined, {@code false} otherwise.
+	 */
+	public boolean isDefined() {
+		return type != null;
+	}
+
 	@Override
 	public SemType actualType() {
 		final HashSet<SemNameType> types = new HashSet<SemNameType>();
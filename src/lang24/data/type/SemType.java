@@ -1,6 +1,7 @@
 package lang24.data.type;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 import lang24.data.type.visitor.*;
 
 /**
@@ -11,14 +12,20 @@ import lang24.data.type.visitor.*;
 public abstract class SemType {
 
 	/** The number of nodes constructed so far. */
-	private static int numNodes = 0;
+	private static final AtomicInteger numNodes = new AtomicInteger(0);
 
 	/** The unique id of this node. */
 	public final int id;
 
+	/**
+	 * The canonical id of this type (see {@link SemTypeInterner}) together with
+	 * the stamp of the compilation it is valid in.
+	 */
+	volatile long canon = 0;
+
 	/** Constructs a new type. */
 	public SemType() {
-		id = numNodes++;
+		id = numNodes.getAndIncrement();
 	}
 
 	/**
@@ -0,0 +1,360 @@
+package lang24.data.type;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import lang24.*;
+import lang24.common.report.*;
+
+/**
+ * Canonical representatives of types (within each compilation).
+ *
+ * Types are hash-consed modulo structural equivalence: each type is given a
+ * canonical id, and two types get the same canonical id if and only if their
+ * (possibly infinite due to recursive type names) unfoldings are the same. Type
+ * names are transparent, i.e., a type name gets the canonical id of the type it
+ * represents. Pointers to {@code void} are treated like any other pointers
+ * here; whether a pointer to {@code void} is reachable from a type is recorded
+ * separately (see {@link #reachesVoidPointer(int)}).
+ *
+ * Canonical ids are cached within types, so once a type has got its canonical
+ * id, obtaining it again costs a single field access. When a type without a
+ * canonical id is encountered, all types reachable from it that have no
+ * canonical id yet are hashed by their unfoldings up to a fixed depth, and each
+ * of them is compared with the representatives with the same hash only.
+ *
+ * Types can be interned by several threads of the same compilation at once:
+ * interning is synchronized, while canonical ids are published (after the
+ * representatives) so that cached canonical ids can be read without locking.
+ */
+public class SemTypeInterner {
+
+	/** The canonical representatives of types of the current compilation. */
+	private static final Compilation.Local<SemTypeInterner> interner = new Compilation.Local<SemTypeInterner>(
+			SemTypeInterner::new);
+
+	/** The depth up to which the unfoldings of types are hashed. */
+	private static final int HASH_DEPTH = 6;
+
+	/** Kinds of types. */
+	private static final int VOID = 0, BOOL = 1, CHAR = 2, INT = 3, ARR = 4, PTR = 5, STR = 6, UNI = 7;
+
+	/** The representatives indexed by canonical ids. */
+	private SemType[] reps = new SemType[64];
+
+	/** The hashes of unfoldings of representatives up to each depth. */
+	private int[][] hashes = new int[64][];
+
+	/** Whether a pointer to {@code void} is reachable from a representative. */
+	private boolean[] voidPointers = new boolean[64];
+
+	/** The number of representatives. */
+	private int size = 0;
+
+	/** The representatives with the same hash of their unfoldings. */
+	private final HashMap<Integer, Vector<SemType>> buckets = new HashMap<Integer, Vector<SemType>>();
+
+	/** The number of sets of representatives constructed so far. */
+	private static final AtomicInteger numInterners = new AtomicInteger(0);
+
+	/**
+	 * The stamp of this set of representatives in the upper half of canonical ids
+	 * cached within types (as types like {@link SemIntType#type} are shared by all
+	 * compilations).
+	 */
+	private final long stamp = (long) numInterners.incrementAndGet() << 32;
+
+	/**
+	 * Constructs a new set of representatives.
+	 */
+	private SemTypeInterner() {
+	}
+
+	/**
+	 * Returns the representatives of types of the current compilation.
+	 *
+	 * @return The representatives of types of the current compilation.
+	 */
+	public static SemTypeInterner current() {
+		return interner.get();
+	}
+
+	/**
+	 * Releases the representatives of types of the current compilation once no
+	 * phase needs them any more. Types interned later on get canonical ids of a
+	 * new set of representatives.
+	 */
+	public static void release() {
+		interner.release();
+	}
+
+	/**
+	 * Returns the canonical id of a type, interning the type if needed.
+	 *
+	 * @param type The type.
+	 * @return The canonical id of the type or -1 if some type name reachable from
+	 *         the type has not been defined yet.
+	 */
+	public int canon(final SemType type) {
+		final int canon = cached(type);
+		if (canon >= 0)
+			return canon;
+		final SemType actual = resolve(type);
+		if (actual == null)
+			return -1;
+		if (cached(actual) < 0 && !intern(actual))
+			return -1;
+		type.canon = actual.canon;
+		return cached(type);
+	}
+
+	/**
+	 * Returns the representative with the specified canonical id.
+	 *
+	 * @param canon The canonical id.
+	 * @return The representative.
+	 */
+	public SemType rep(final int canon) {
+		return reps[canon];
+	}
+
+	/**
+	 * Checks whether a pointer to {@code void} is reachable from the types with
+	 * the specified canonical id.
+	 *
+	 * @param canon The canonical id.
+	 * @return {@code true} if a pointer to {@code void} is reachable, {@code false}
+	 *         otherwise.
+	 */
+	public boolean reachesVoidPointer(final int canon) {
+		return voidPointers[canon];
+	}
+
+	/**
+	 * Interns all types reachable from the specified type that have not been
+	 * interned yet.
+	 *
+	 * @param type The type (not a type name).
+	 * @return {@code true} if the types have been interned or {@code false} if
+	 *         some type name reachable from the type has not been defined yet.
+	 */
+	private synchronized boolean intern(final SemType type) {
+		if (cached(type) >= 0) // Interned by another thread meanwhile.
+			return true;
+
+		// Collect the types without canonical ids (and their immediate successors).
+		final HashMap<SemType, Integer> indices = new HashMap<SemType, Integer>();
+		final Vector<SemType> nodes = new Vector<SemType>();
+		final Vector<int[]> succs = new Vector<int[]>();
+		indices.put(type, 0);
+		nodes.add(type);
+		for (int index = 0; index < nodes.size(); index++) {
+			final SemType node = nodes.get(index);
+			final SemType[] children = cached(node) >= 0 ? new SemType[0] : children(node);
+			final int[] succ = new int[children.length];
+			for (int child = 0; child < children.length; child++) {
+				final SemType actual = resolve(children[child]);
+				if (actual == null)
+					return false;
+				Integer succIndex = indices.get(actual);
+				if (succIndex == null) {
+					succIndex = nodes.size();
+					indices.put(actual, succIndex);
+					nodes.add(actual);
+				}
+				succ[child] = succIndex;
+			}
+			succs.add(succ);
+		}
+		final int numNodes = nodes.size();
+
+		// Hash the unfoldings.
+		final int[][] nodeHashes = new int[numNodes][HASH_DEPTH + 1];
+		for (int index = 0; index < numNodes; index++) {
+			final SemType node = nodes.get(index);
+			final int canon = cached(node);
+			nodeHashes[index][0] = canon >= 0 ? hashes[canon][0]
+					: Objects.hash(kind(node), node instanceof SemArrayType arrType ? arrType.size : 0,
+							succs.get(index).length);
+		}
+		for (int depth = 1; depth <= HASH_DEPTH; depth++)
+			for (int index = 0; index < numNodes; index++) {
+				final int canon = cached(nodes.get(index));
+				if (canon >= 0) {
+					nodeHashes[index][depth] = hashes[canon][depth];
+					continue;
+				}
+				int hash = nodeHashes[index][0];
+				for (final int succ : succs.get(index))
+					hash = 31 * hash + nodeHashes[succ][depth - 1];
+				nodeHashes[index][depth] = hash;
+			}
+
+		// Find the types from which pointers to void are reachable.
+		final boolean[] nodeVoidPointers = new boolean[numNodes];
+		for (int index = 0; index < numNodes; index++) {
+			final SemType node = nodes.get(index);
+			final int canon = cached(node);
+			nodeVoidPointers[index] = canon >= 0 ? voidPointers[canon]
+					: (node instanceof SemPointerType) && (nodes.get(succs.get(index)[0]) instanceof SemVoidType);
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int index = 0; index < numNodes; index++)
+				if (!nodeVoidPointers[index])
+					for (final int succ : succs.get(index))
+						if (nodeVoidPointers[succ]) {
+							nodeVoidPointers[index] = true;
+							changed = true;
+							break;
+						}
+		}
+
+		// Give each type either the canonical id of an equivalent representative or a
+		// new one.
+		for (int index = 0; index < numNodes; index++) {
+			final SemType node = nodes.get(index);
+			if (cached(node) >= 0)
+				continue;
+			final Vector<SemType> bucket = buckets.computeIfAbsent(nodeHashes[index][HASH_DEPTH],
+					hash -> new Vector<SemType>());
+			for (final SemType rep : bucket)
+				if (same(node, rep)) {
+					node.canon = rep.canon;
+					break;
+				}
+			if (cached(node) >= 0)
+				continue;
+			if (size == reps.length) {
+				reps = Arrays.copyOf(reps, 2 * size);
+				hashes = Arrays.copyOf(hashes, 2 * size);
+				voidPointers = Arrays.copyOf(voidPointers, 2 * size);
+			}
+			reps[size] = node;
+			hashes[size] = nodeHashes[index];
+			voidPointers[size] = nodeVoidPointers[index];
+			node.canon = stamp | size;
+			size++;
+			bucket.add(node);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the unfoldings of two types are the same. The check is
+	 * coinductive, i.e., a pair of types encountered again is assumed to have the
+	 * same unfoldings.
+	 *
+	 * @param type1 The first type.
+	 * @param type2 The second type.
+	 * @return {@code true} if the unfoldings are the same, {@code false} otherwise.
+	 */
+	private boolean same(final SemType type1, final SemType type2) {
+		final HashSet<Long> assumed = new HashSet<Long>();
+		final ArrayDeque<SemType> pending = new ArrayDeque<SemType>();
+		pending.push(type1);
+		pending.push(type2);
+		while (!pending.isEmpty()) {
+			final SemType actual2 = resolve(pending.pop());
+			final SemType actual1 = resolve(pending.pop());
+			if (actual1 == actual2)
+				continue;
+			final int canon1 = cached(actual1);
+			final int canon2 = cached(actual2);
+			if (canon1 >= 0 && canon2 >= 0) {
+				if (canon1 != canon2)
+					return false;
+				continue;
+			}
+			if (kind(actual1) != kind(actual2))
+				return false;
+			if ((actual1 instanceof SemArrayType arrType1) && arrType1.size != ((SemArrayType) actual2).size)
+				return false;
+			final SemType[] children1 = children(actual1);
+			final SemType[] children2 = children(actual2);
+			if (children1.length != children2.length)
+				return false;
+			if (!assumed.add(((long) actual1.id << 32) | (actual2.id & 0xFFFFFFFFL)))
+				continue;
+			for (int child = 0; child < children1.length; child++) {
+				pending.push(children1[child]);
+				pending.push(children2[child]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the canonical id of a type cached within the type.
+	 *
+	 * @param type The type.
+	 * @return The canonical id of the type or -1 if the type has not been interned
+	 *         within this compilation.
+	 */
+	private int cached(final SemType type) {
+		return (type.canon & 0xFFFFFFFF00000000L) == stamp ? (int) type.canon : -1;
+	}
+
+	/**
+	 * Returns the type a type name represents (following chains of type names).
+	 *
+	 * @param type The type.
+	 * @return The type itself if it is not a type name, the type the type name
+	 *         represents, or {@code null} if a type name has not been defined yet.
+	 */
+	private static SemType resolve(SemType type) {
+		while (type instanceof SemNameType nameType) {
+			if (!nameType.isDefined())
+				return null;
+			type = nameType.type();
+		}
+		return type;
+	}
+
+	/**
+	 * Returns the kind of a type.
+	 *
+	 * @param type The type (not a type name).
+	 * @return The kind of the type.
+	 */
+	private static int kind(final SemType type) {
+		if (type instanceof SemVoidType)
+			return VOID;
+		if (type instanceof SemBoolType)
+			return BOOL;
+		if (type instanceof SemCharType)
+			return CHAR;
+		if (type instanceof SemIntType)
+			return INT;
+		if (type instanceof SemArrayType)
+			return ARR;
+		if (type instanceof SemPointerType)
+			return PTR;
+		if (type instanceof SemStructType)
+			return STR;
+		if (type instanceof SemUnionType)
+			return UNI;
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Returns the immediate subtypes of a type.
+	 *
+	 * @param type The type (not a type name).
+	 * @return The immediate subtypes of the type.
+	 */
+	private static SemType[] children(final SemType type) {
+		if (type instanceof SemArrayType arrType)
+			return new SemType[] { arrType.elemType };
+		if (type instanceof SemPointerType ptrType)
+			return new SemType[] { ptrType.baseType };
+		if (type instanceof SemRecordType recType) {
+			final SemType[] children = new SemType[recType.cmpTypes.size()];
+			for (int cmp = 0; cmp < children.length; cmp++)
+				children[cmp] = recType.cmpTypes.get(cmp);
+			return children;
+		}
+		return new SemType[0];
+	}
+
+}
@@ -0,0 +1,90 @@
+package lang24.phase;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import lang24.*;
+import lang24.data.ast.tree.defn.*;
+import lang24.data.mem.*;
+
+/**
+ * Processing of functions in parallel.
+ *
+ * Once all top-level names and types have been resolved, the bodies of
+ * top-level functions can be processed independently of one another. Each
+ * function is processed by its own task of a fork-join pool, running within the
+ * compilation context of the thread that forks the tasks. The result does not
+ * depend on the schedule of tasks:
+ *
+ * <ul>
+ *
+ * <li>If labels and temporary variables are created, each function is given
+ * its own block of numbers of anonymous labels and its own block of numbers of
+ * temporary variables, both reserved in the order of functions (see
+ * {@link MemLabel#numbered(long, long, Runnable)} and
+ * {@link MemTemp#numbered(long, long, Runnable)}). As labels and temporary
+ * variables are hashed by their names and numbers, later phases iterate over
+ * them in the same order no matter which thread has created them.</li>
+ *
+ * <li>If processing of several functions fails, the failure of the first of
+ * them is reported.</li>
+ *
+ * </ul>
+ */
+public class FunctionTasks {
+
+	/** The number of numbers of anonymous labels reserved for each function. */
+	public static final long LABEL_BLOCK = 1L << 20;
+
+	/** The number of numbers of temporary variables reserved for each function. */
+	public static final long TEMP_BLOCK = 1L << 20;
+
+	/**
+	 * Processes functions in parallel and waits until all of them are processed.
+	 *
+	 * @param pool         The pool of threads.
+	 * @param funDefns     The functions.
+	 * @param createNames  Whether anonymous labels and temporary variables are
+	 *                     created while functions are processed.
+	 * @param action       Processes a single function.
+	 */
+	public static void run(final ForkJoinPool pool, final List<AstFunDefn> funDefns, final boolean createNames,
+			final Consumer<AstFunDefn> action) {
+		final Compilation compilation = Compilation.current();
+		final long[] firstLabels = new long[funDefns.size()];
+		final long[] firstTemps = new long[funDefns.size()];
+		if (createNames)
+			for (int index = 0; index < funDefns.size(); index++) {
+				firstLabels[index] = MemLabel.reserve(LABEL_BLOCK);
+				firstTemps[index] = MemTemp.reserve(TEMP_BLOCK);
+			}
+
+		final Throwable[] failures = new Throwable[funDefns.size()];
+		final Vector<ForkJoinTask<?>> tasks = new Vector<ForkJoinTask<?>>();
+		for (int index = 0; index < funDefns.size(); index++) {
+			final int funIndex = index;
+			final Runnable task = () -> action.accept(funDefns.get(funIndex));
+			tasks.add(pool.submit(() -> compilation.run(() -> {
+				try {
+					if (createNames)
+						MemLabel.numbered(firstLabels[funIndex], LABEL_BLOCK,
+								() -> MemTemp.numbered(firstTemps[funIndex], TEMP_BLOCK, task));
+					else
+						task.run();
+				} catch (final RuntimeException | Error failure) {
+					failures[funIndex] = failure;
+				}
+			})));
+		}
+		for (final ForkJoinTask<?> task : tasks)
+			task.join();
+
+		for (final Throwable failure : failures) {
+			if (failure instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			if (failure instanceof Error error)
+				throw error;
+		}
+	}
+
+}
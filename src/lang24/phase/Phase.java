@@ -20,14 +20,9 @@ public abstract class Phase implements AutoCloseable {
 	 * @param phaseName The phase name.
 	 */
 	protected Phase(final String phaseName) {
-		final String loggedPhase = lang24.Compiler.cmdLineOptValue("--logged-phase");
-		if (loggedPhase.matches(phaseName + "|all")) {
+		if (isLogged(phaseName)) {
 			// Prepare the name of the xml file.
-			String xmlFileName = lang24.Compiler.cmdLineOptValue("--xml");
-			if (xmlFileName == null) {
-				xmlFileName = lang24.Compiler.cmdLineOptValue("--src-file-name").replaceFirst("\\.[^./]*$", "") + "-"
-						+ phaseName + ".xml";
-			}
+			final String xmlFileName = xmlFileName(phaseName);
 
 			// Prepare the name of the supporting xsl file.
 			String xslDirName = lang24.Compiler.cmdLineOptValue("--xsl");
@@ -41,6 +36,32 @@ public abstract class Phase implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Returns whether logging of a phase has been requested.
+	 * 
+	 * @param phaseName The phase name.
+	 * @return {@code true} if logging of the phase has been requested,
+	 *         {@code false} otherwise.
+	 */
+	public static boolean isLogged(final String phaseName) {
+		return lang24.Compiler.cmdLineOptValue("--logged-phase").matches(phaseName + "|all");
+	}
+
+	/**
+	 * Returns the name of the XML file the log of a phase is written to.
+	 * 
+	 * @param phaseName The phase name.
+	 * @return The name of the XML file.
+	 */
+	public static String xmlFileName(final String phaseName) {
+		String xmlFileName = lang24.Compiler.cmdLineOptValue("--xml");
+		if (xmlFileName == null) {
+			xmlFileName = lang24.Compiler.cmdLineOptValue("--src-file-name").replaceFirst("\\.[^./]*$", "") + "-"
+					+ phaseName + ".xml";
+		}
+		return xmlFileName;
+	}
+
 	@Override
 	public void close() {
 		if (logger != null)
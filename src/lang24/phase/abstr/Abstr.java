@@ -1,5 +1,6 @@
 package lang24.phase.abstr;
 
+import lang24.*;
 import lang24.data.ast.tree.*;
 import lang24.phase.*;
 
@@ -11,7 +12,7 @@ import lang24.phase.*;
 public class Abstr extends Phase {
 
 	/** The abstract syntax tree. */
-	public static AstNode tree;
+	public static final Compilation.Local<AstNode> tree = new Compilation.Local<AstNode>(() -> null);
 
 	/**
 	 * Phase construction.
@@ -20,4 +21,11 @@ public class Abstr extends Phase {
 		super("abstr");
 	}
 
+	/**
+	 * Releases the abstract syntax tree once no phase needs it any more.
+	 */
+	public static void release() {
+		tree.release();
+	}
+
 }
\ No newline at end of file
@@ -225,14 +225,14 @@ public class AsmDump extends Phase {
 	private void writeFunctions(FileWriter fileWriter) {
 		try {
 			fileWriter.write(CODE_SEGMENT);
-			for (Code code : AsmGen.codes) {
+			for (Code code : AsmGen.codes.get()) {
 				fileWriter.write("\n");
 				String funLabel = code.frame.label.name.equals("_main") ? "Main" : code.frame.label.name;
 				long FPOffset = code.frame.locsSize + 8;
 				long RAOffset = code.frame.locsSize + 16;
 				String entryLabel = code.entryLabel.name;
 				String exitLabel = code.exitLabel.name;
-				String returnValueReg = "$" + RegAll.tempToReg.get(code.frame.RV);
+				String returnValueReg = "$" + RegAll.tempToReg.get().get(code.frame.RV);
 				long frameSize = code.frame.size + code.tempSize;
 
 				String myPrologue = String.format(PROLOGUE, funLabel, FPOffset, frameSize, entryLabel);
@@ -243,11 +243,11 @@ public class AsmDump extends Phase {
 					AsmInstr asm = code.instrs.get(i);
 					if (asm instanceof AsmLABEL) {
 						if (code.instrs.get(i + 1) instanceof AsmLABEL)
-							fileWriter.write(asm.toString(RegAll.tempToReg) + "			ADD $1,$1,0\n");
+							fileWriter.write(asm.toString(RegAll.tempToReg.get()) + "			ADD $1,$1,0\n");
 						else
-							fileWriter.write(asm.toString(RegAll.tempToReg));
+							fileWriter.write(asm.toString(RegAll.tempToReg.get()));
 					} else {
-						fileWriter.write("			" + asm.toString(RegAll.tempToReg) + "\n");
+						fileWriter.write("			" + asm.toString(RegAll.tempToReg.get()) + "\n");
 					}
 				}
 
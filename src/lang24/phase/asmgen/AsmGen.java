@@ -2,6 +2,7 @@ package lang24.phase.asmgen;
 
 import java.util.*;
 
+import lang24.*;
 import lang24.data.imc.code.stmt.*;
 import lang24.data.lin.*;
 import lang24.data.mem.MemLabel;
@@ -17,7 +18,7 @@ import lang24.phase.asmgen.AsmGenerator;
  */
 public class AsmGen extends Phase {
 
-	public static Vector<Code> codes = new Vector<Code>();
+	public static final Compilation.Local<Vector<Code>> codes = new Compilation.Local<Vector<Code>>(Vector::new);
 
 	public AsmGen() {
 		super("asmgen");
@@ -26,7 +27,7 @@ public class AsmGen extends Phase {
 	public void genAsmCodes() {
 		for (LinCodeChunk codeChunk : ImcLin.codeChunks()) {
 		    Code code = generateCode(codeChunk);
-			codes.add(code);
+			codes.get().add(code);
 		}
 	}
 
@@ -44,7 +45,7 @@ public class AsmGen extends Phase {
 	public void log() {
 		if (logger == null)
 			return;
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			logger.begElement("code");
 			logger.addAttribute("prologue", code.entryLabel.name);
 			logger.addAttribute("body", code.entryLabel.name);
@@ -224,6 +224,14 @@ public class AsmGenerator implements ImcVisitor<MemTemp, Object> {
                     return dstRegOpt;
                 }
                 break;
+            case ImcBINOP.Oper.EQU, ImcBINOP.Oper.NEQ, ImcBINOP.Oper.LTH, ImcBINOP.Oper.GTH, ImcBINOP.Oper.LEQ, ImcBINOP.Oper.GEQ: // Comparisons against small constants
+                if (binOp.sndExpr instanceof ImcCONST && ((ImcCONST) binOp.sndExpr).value >= 0 && ((ImcCONST) binOp.sndExpr).value <= 255) {
+                    MemTemp dstRegOpt = new MemTemp();
+                    addInstruction("CMP `d0,`s0," + ((ImcCONST) binOp.sndExpr).value, dstRegOpt, srcReg1, null, null, null, false);
+                    addInstruction(zeroSetInstr(binOp.oper) + " `d0,`s0,1", dstRegOpt, dstRegOpt, null, null, null, false);
+                    return dstRegOpt;
+                }
+                break;
             default:
                 break;
         }
@@ -289,6 +297,26 @@ public class AsmGenerator implements ImcVisitor<MemTemp, Object> {
         return dstReg;
     }
 
+    // The ZS instruction that sets a register to 1 if the result of CMP satisfies the comparison
+    private static String zeroSetInstr(ImcBINOP.Oper oper) {
+        switch (oper) {
+            case ImcBINOP.Oper.EQU:
+                return "ZSZ";
+            case ImcBINOP.Oper.NEQ:
+                return "ZSNZ";
+            case ImcBINOP.Oper.LTH:
+                return "ZSN";
+            case ImcBINOP.Oper.GTH:
+                return "ZSP";
+            case ImcBINOP.Oper.LEQ:
+                return "ZSNP";
+            case ImcBINOP.Oper.GEQ:
+                return "ZSNN";
+            default:
+                throw new Report.InternalError();
+        }
+    }
+
     public MemTemp visit(ImcCJUMP cjump, Object arg) {
         MemTemp srcReg = cjump.cond.accept(this, arg);
         addInstruction("BNZ `s0," + cjump.posLabel.name, null, srcReg, null, cjump.posLabel, cjump.negLabel, false);
@@ -312,7 +340,7 @@ public class AsmGenerator implements ImcVisitor<MemTemp, Object> {
     }
 
     public MemTemp visit(ImcMEM mem, Object arg) {
-        if (mem.addr instanceof ImcBINOP && ((ImcBINOP) mem.addr).sndExpr instanceof ImcCONST &&
+        if (mem.addr instanceof ImcBINOP && ((ImcBINOP) mem.addr).oper == ImcBINOP.Oper.ADD && ((ImcBINOP) mem.addr).sndExpr instanceof ImcCONST &&
             ((ImcCONST) ((ImcBINOP) mem.addr).sndExpr).value >= -255 && ((ImcCONST) ((ImcBINOP) mem.addr).sndExpr).value <= 255) {
             MemTemp base = ((ImcBINOP) mem.addr).fstExpr.accept(this, arg);
             ImcCONST constant = (ImcCONST) ((ImcBINOP) mem.addr).sndExpr;
@@ -35,4 +35,15 @@ public class ImcGen extends Phase {
 		super("imcgen");
 	}
 
+	/**
+	 * Releases all attributes of this phase, i.e., the intermediate code trees,
+	 * once no phase needs them any more.
+	 */
+	public static void release() {
+		entryLabel.release();
+		exitLabel.release();
+		stmtImc.release();
+		exprImc.release();
+	}
+
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package lang24.phase.imcgen;
 
 import java.util.*;
+import java.util.concurrent.*;
 import lang24.common.report.*;
 import lang24.data.ast.tree.*;
 import lang24.data.ast.tree.defn.*;
@@ -16,6 +17,7 @@ import lang24.data.imc.code.stmt.*;
 import lang24.data.mem.*;
 import lang24.data.type.*;
 import lang24.data.type.visitor.*;
+import lang24.phase.*;
 import lang24.phase.memory.MemEvaluator;
 import lang24.phase.memory.Memory;
 import lang24.phase.seman.SemAn;
@@ -31,6 +33,52 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
     Stack<MemFrame> framePointers = new Stack<>();
     Stack<MemLabel> exitPoints = new Stack<>();
 
+    // and/or and not expressions that are only translated as parts of a jump chain (see condition), so
+    // computing their values through jumps of their own would be wasted (and quadratic in long chains)
+    HashSet<AstExpr> conditionOnly = new HashSet<>();
+
+    /**
+     * The pool of threads the top-level functions are translated by (or
+     * {@code null} if they are translated one after another).
+     */
+    private ForkJoinPool pool = null;
+
+    /**
+     * Constructs a new intermediate code generator.
+     */
+    public ImcGenerator() {
+    }
+
+    /**
+     * Constructs a new intermediate code generator that translates top-level
+     * functions in parallel, each by its own generator (see {@link FunctionTasks}).
+     *
+     * @param pool The pool of threads (or {@code null} if functions are
+     *             translated one after another).
+     */
+    public ImcGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public Object visit(AstNodes<? extends AstNode> nodes, Object arg) {
+        // Only the functions of the outermost sequence of definitions are translated in parallel.
+        ForkJoinPool pool = this.pool;
+        this.pool = null;
+        if (pool == null)
+            return AstFullVisitor.super.visit(nodes, arg);
+
+        Vector<AstFunDefn> funDefns = new Vector<>();
+        for (AstNode node : nodes) {
+            if (node instanceof AstFunDefn funDefn && funDefn.stmt != null)
+                funDefns.add(funDefn);
+            else
+                node.accept(this, arg);
+        }
+        FunctionTasks.run(pool, funDefns, true, funDefn -> funDefn.accept(new ImcGenerator(), null));
+        return null;
+    }
+
     @Override
 	public Object visit(AstFunDefn funDefn, Object arg) {
         if (funDefn.stmt == null) { // If it is a prototype of a function, so no body, dont do anything
@@ -187,6 +235,8 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
     @Override
 	public Object visit(AstPfxExpr pfxExpr, Object arg) {
         boolean returnAddress = AstPfxExpr.Oper.PTR == pfxExpr.oper;
+        if (conditionOnly.contains(pfxExpr))
+            markConditionOnly(pfxExpr.expr);
 		pfxExpr.expr.accept(this, returnAddress);
         ImcExpr subExpr = ImcGen.exprImc.get(pfxExpr.expr);
         ImcExpr unOp = null;
@@ -199,6 +249,8 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
                 ImcGen.exprImc.put(pfxExpr, unOp);
                 break;
             case AstPfxExpr.Oper.NOT:
+                if (subExpr == null) // the operand is only translated as a condition, so is this
+                    break;
                 unOp = new ImcUNOP(ImcUNOP.Oper.NOT, subExpr);
                 ImcGen.exprImc.put(pfxExpr, unOp);
                 break;
@@ -214,6 +266,10 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
 
     @Override
 	public Object visit(AstBinExpr binExpr, Object arg) {
+        if (binExpr.oper == AstBinExpr.Oper.AND || binExpr.oper == AstBinExpr.Oper.OR) {
+            markConditionOnly(binExpr.fstExpr);
+            markConditionOnly(binExpr.sndExpr);
+        }
 		binExpr.fstExpr.accept(this, arg);
 		binExpr.sndExpr.accept(this, arg);
         ImcExpr fstExpr = ImcGen.exprImc.get(binExpr.fstExpr);
@@ -221,12 +277,20 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
         ImcExpr binOp = null;
         switch (binExpr.oper) {
             case AstBinExpr.Oper.OR:
-                binOp = new ImcBINOP(ImcBINOP.Oper.OR, fstExpr, sndExpr);
-                ImcGen.exprImc.put(binExpr, binOp);
+                if (fstExpr != null && isTrivial(sndExpr))
+                    binOp = new ImcBINOP(ImcBINOP.Oper.OR, fstExpr, sndExpr);
+                else if (!conditionOnly.contains(binExpr))
+                    binOp = shortCircuit(binExpr);
+                if (binOp != null)
+                    ImcGen.exprImc.put(binExpr, binOp);
                 break;
             case AstBinExpr.Oper.AND:
-                binOp = new ImcBINOP(ImcBINOP.Oper.AND, fstExpr, sndExpr);
-                ImcGen.exprImc.put(binExpr, binOp);
+                if (fstExpr != null && isTrivial(sndExpr))
+                    binOp = new ImcBINOP(ImcBINOP.Oper.AND, fstExpr, sndExpr);
+                else if (!conditionOnly.contains(binExpr))
+                    binOp = shortCircuit(binExpr);
+                if (binOp != null)
+                    ImcGen.exprImc.put(binExpr, binOp);
                 break;
             case AstBinExpr.Oper.EQU:
                 binOp = new ImcBINOP(ImcBINOP.Oper.EQU, fstExpr, sndExpr);
@@ -280,11 +344,68 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
 		return null;
 	}
 
+    // Checks whether evaluating an expression even if it is not needed cannot be noticed; only constants
+    // and temporaries are trivial, anything else might read memory, call a function or trap (e.g., x / 0)
+    private static boolean isTrivial(ImcExpr expr) {
+        return expr instanceof ImcCONST || expr instanceof ImcTEMP;
+    }
+
+    // Marks an operand of a jump chain whose value is not needed if it is translated by condition itself
+    private void markConditionOnly(AstExpr expr) {
+        if (expr instanceof AstBinExpr binExpr && (binExpr.oper == AstBinExpr.Oper.AND || binExpr.oper == AstBinExpr.Oper.OR))
+            conditionOnly.add(expr);
+        if (expr instanceof AstPfxExpr pfxExpr && pfxExpr.oper == AstPfxExpr.Oper.NOT)
+            conditionOnly.add(expr);
+    }
+
+    // Translates a condition into a chain of conditional jumps, the right operand of and/or is only
+    // evaluated if the left one does not already decide where to jump
+    private ImcStmt condition(AstExpr cond, MemLabel posLabel, MemLabel negLabel) {
+        if (cond instanceof AstBinExpr binExpr && (binExpr.oper == AstBinExpr.Oper.AND || binExpr.oper == AstBinExpr.Oper.OR)) {
+            MemLabel sndLabel = new MemLabel();
+            Vector<ImcStmt> stmts = new Vector<>();
+            if (binExpr.oper == AstBinExpr.Oper.AND)
+                stmts.add(condition(binExpr.fstExpr, sndLabel, negLabel));
+            else
+                stmts.add(condition(binExpr.fstExpr, posLabel, sndLabel));
+            stmts.add(new ImcLABEL(sndLabel));
+            stmts.add(condition(binExpr.sndExpr, posLabel, negLabel));
+            return new ImcSTMTS(stmts);
+        }
+        if (cond instanceof AstPfxExpr pfxExpr && pfxExpr.oper == AstPfxExpr.Oper.NOT)
+            return condition(pfxExpr.expr, negLabel, posLabel);
+        return new ImcCJUMP(ImcGen.exprImc.get(cond), posLabel, negLabel);
+    }
+
+    // Computes the value of and/or through jumps: SEXPR(conditional jumps + moves of 1 or 0, TEMP)
+    // (when functions are translated in parallel, the TEMP is numbered within its function's block, see FunctionTasks)
+    private ImcExpr shortCircuit(AstBinExpr binExpr) {
+        ImcTEMP result = new ImcTEMP(new MemTemp());
+        MemLabel trueLabel = new MemLabel();
+        MemLabel falseLabel = new MemLabel();
+        MemLabel endLabel = new MemLabel();
+
+        Vector<ImcStmt> stmts = new Vector<>();
+        stmts.add(condition(binExpr, trueLabel, falseLabel));
+        stmts.add(new ImcLABEL(trueLabel));
+        stmts.add(new ImcMOVE(result, new ImcCONST(1)));
+        stmts.add(new ImcJUMP(endLabel));
+        stmts.add(new ImcLABEL(falseLabel));
+        stmts.add(new ImcMOVE(result, new ImcCONST(0)));
+        stmts.add(new ImcLABEL(endLabel));
+        return new ImcSEXPR(new ImcSTMTS(stmts), result);
+    }
+
     @Override
 	public Object visit(AstNameExpr nameExpr, Object arg) {
         AstDefn defn = SemAn.definedAt.get(nameExpr);
         MemAccess access = (defn instanceof AstVarDefn) ? (Memory.varAccesses.get((AstVarDefn) defn)) : (Memory.parAccesses.get((AstParDefn) defn));
 
+        if (access instanceof MemTempAccess) { // Kept in a temporary, so it has no address
+            ImcGen.exprImc.put(nameExpr, new ImcTEMP(((MemTempAccess) access).temp));
+            return null;
+        }
+
         ImcExpr result = null;
 
         if (access instanceof MemAbsAccess) {
@@ -470,11 +591,17 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
 	public Object visit(AstAssignStmt assignStmt, Object arg) {
 		assignStmt.dst.accept(this, arg);
 		assignStmt.src.accept(this, arg);
-        ImcExpr expr1 = ((ImcMEM) ImcGen.exprImc.get(assignStmt.dst)).addr;
+        ImcExpr dst = ImcGen.exprImc.get(assignStmt.dst);
         ImcExpr expr2 = ImcGen.exprImc.get(assignStmt.src);
 
-        ImcExpr memWrite = new ImcMEM(expr1);
-        ImcStmt move = new ImcMOVE(memWrite, expr2);
+        ImcStmt move = null;
+        if (dst instanceof ImcTEMP) // Variable kept in a temporary
+            move = new ImcMOVE(dst, expr2);
+        else {
+            ImcExpr expr1 = ((ImcMEM) dst).addr;
+            ImcExpr memWrite = new ImcMEM(expr1);
+            move = new ImcMOVE(memWrite, expr2);
+        }
 
         ImcGen.stmtImc.put(assignStmt, move);
 		return null;
@@ -498,8 +625,8 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
 
 	@Override
 	public Object visit(AstIfStmt ifStmt, Object arg) {
+        markConditionOnly(ifStmt.cond);
 		ifStmt.cond.accept(this, arg);
-        ImcExpr condition = ImcGen.exprImc.get(ifStmt.cond);
 		ifStmt.thenStmt.accept(this, arg);
         ImcStmt stmt1 = ImcGen.stmtImc.get(ifStmt.thenStmt);
         ImcStmt stmt2 = null;
@@ -512,7 +639,7 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
         MemLabel endLabel = new MemLabel();
 
         Vector<ImcStmt> stmts = new Vector<>();
-        stmts.add(new ImcCJUMP(condition, thenLabel, elseLabel));
+        stmts.add(condition(ifStmt.cond, thenLabel, elseLabel));
         stmts.add(new ImcLABEL(thenLabel));
         stmts.add(stmt1);
         if (stmt2 != null)
@@ -529,8 +656,8 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
 
     @Override
 	public Object visit(AstWhileStmt whileStmt, Object arg) {
+        markConditionOnly(whileStmt.cond);
 		whileStmt.cond.accept(this, arg);
-        ImcExpr condition = ImcGen.exprImc.get(whileStmt.cond);
 		whileStmt.stmt.accept(this, arg);
         ImcStmt stmts = ImcGen.stmtImc.get(whileStmt.stmt);
 
@@ -540,7 +667,7 @@ public class ImcGenerator implements AstFullVisitor<Object, Object> {
 
         Vector<ImcStmt> statements = new Vector<>();
         statements.add(new ImcLABEL(whileLabel));
-        statements.add(new ImcCJUMP(condition, startLabel, endLabel));
+        statements.add(condition(whileStmt.cond, startLabel, endLabel));
         statements.add(new ImcLABEL(startLabel));
         statements.add(stmts);
         statements.add(new ImcJUMP(whileLabel));
@@ -294,9 +294,7 @@ public class ChunkGenerator implements AstFullVisitor<Object, Object>{
             } else if (expr instanceof ImcNAME) {
                 return false;
             } else if (expr instanceof ImcSEXPR) {
-                // boolean stmt = argumentConflict(((ImcSEXPR) expr).stmt);
-                boolean exp = argumentConflict(((ImcSEXPR) expr).expr);
-                return /*stmt ||*/ exp;
+                return true; // Its statements must be executed before the call
             } else if (expr instanceof ImcTEMP) {
                 return false;
             } else if (expr instanceof ImcUNOP) {
@@ -381,9 +379,11 @@ public class ChunkGenerator implements AstFullVisitor<Object, Object>{
         }
     
         public ImcInstr visit(ImcSEXPR sExpr, Object arg) {
+            // Statements go in front of the statement the expression is part of, only the value remains
             ImcStmt stmt = (ImcStmt) sExpr.stmt.accept(this, null);
-            ImcExpr exp = (ImcExpr) sExpr.expr.accept(this, null);
-            return new ImcSEXPR(stmt, exp);
+            if (stmt != null)
+                linearStatements.add(stmt);
+            return (ImcExpr) sExpr.expr.accept(this, arg);
         }
     
         public ImcInstr visit(ImcSTMTS stmts, Object arg) {
@@ -1,6 +1,7 @@
 package lang24.phase.imclin;
 
 import java.util.*;
+import lang24.*;
 import lang24.data.lin.*;
 import lang24.phase.*;
 
@@ -10,10 +11,12 @@ import lang24.phase.*;
 public class ImcLin extends Phase {
 
 	/** All data chunks of the program. */
-	private final static Vector<LinDataChunk> dataChunks = new Vector<LinDataChunk>();
+	private final static Compilation.Local<Vector<LinDataChunk>> dataChunks = new Compilation.Local<Vector<LinDataChunk>>(
+			Vector::new);
 
 	/** All code chinks of the program. */
-	private final static Vector<LinCodeChunk> codeChunks = new Vector<LinCodeChunk>();
+	private final static Compilation.Local<Vector<LinCodeChunk>> codeChunks = new Compilation.Local<Vector<LinCodeChunk>>(
+			Vector::new);
 
 	/**
 	 * Constructs a new phase for the linearization of intermediate code.
@@ -24,9 +27,9 @@ public class ImcLin extends Phase {
 
 	public void log() {
 		LinLogger linLogger = new LinLogger(logger);
-		for (LinDataChunk dataChunk : dataChunks)
+		for (LinDataChunk dataChunk : dataChunks.get())
 			linLogger.log(dataChunk);
-		for (LinCodeChunk codeChunk : codeChunks)
+		for (LinCodeChunk codeChunk : codeChunks.get())
 			linLogger.log(codeChunk);
 	}
 
@@ -36,7 +39,7 @@ public class ImcLin extends Phase {
 	 * @param dataChunk A data chunk.
 	 */
 	public static void addDataChunk(LinDataChunk dataChunk) {
-		dataChunks.add(dataChunk);
+		dataChunks.get().add(dataChunk);
 	}
 
 	/**
@@ -45,7 +48,7 @@ public class ImcLin extends Phase {
 	 * @return A collection of all data chunks of the program.
 	 */
 	public static Vector<LinDataChunk> dataChunks() {
-		return new Vector<LinDataChunk>(dataChunks);
+		return new Vector<LinDataChunk>(dataChunks.get());
 	}
 
 	/**
@@ -54,7 +57,7 @@ public class ImcLin extends Phase {
 	 * @param codeChunk A code chunk.
 	 */
 	public static void addCodeChunk(LinCodeChunk codeChunk) {
-		codeChunks.add(codeChunk);
+		codeChunks.get().add(codeChunk);
 	}
 
 	/**
@@ -63,7 +66,25 @@ public class ImcLin extends Phase {
 	 * @return A collection of all code chunks of the program.
 	 */
 	public static Vector<LinCodeChunk> codeChunks() {
-		return new Vector<LinCodeChunk>(codeChunks);
+		return new Vector<LinCodeChunk>(codeChunks.get());
+	}
+
+	/**
+	 * Replaces all code chunks of the program, e.g., with their optimized
+	 * versions.
+	 * 
+	 * @param codeChunks The new code chunks.
+	 */
+	public static void setCodeChunks(Vector<LinCodeChunk> codeChunks) {
+		ImcLin.codeChunks.set(new Vector<LinCodeChunk>(codeChunks));
+	}
+
+	/**
+	 * Releases all code chunks of the program once no phase needs them any more
+	 * (data chunks are kept until the assembly is dumped).
+	 */
+	public static void releaseCodeChunks() {
+		codeChunks.release();
 	}
 
 }
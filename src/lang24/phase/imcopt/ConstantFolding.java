@@ -0,0 +1,347 @@
+package lang24.phase.imcopt;
+
+import java.util.*;
+import lang24.data.imc.code.*;
+import lang24.data.imc.code.expr.*;
+import lang24.data.imc.code.stmt.*;
+import lang24.data.imc.visitor.*;
+import lang24.data.lin.*;
+
+/**
+ * Constant folding and algebraic simplification.
+ *
+ * Expression trees are rewritten bottom-up:
+ *
+ * <ul>
+ *
+ * <li>Operators applied to constants are evaluated. Division and remainder are
+ * evaluated only if both operands are nonnegative (and the divisor is not 0),
+ * as the target machine rounds quotients towards minus infinity.</li>
+ *
+ * <li>Identities are removed ({@code x+0}, {@code x-0}, {@code x*1},
+ * {@code x/1}), and so are products with 0 (as expressions within linear code
+ * contain no calls, dropping an operand has no side effects).</li>
+ *
+ * <li>Constant offsets are reassociated to the root of sums, e.g.,
+ * {@code ((FP+-16)+8)} becomes {@code (FP+-8)} and {@code (i+1)*8} becomes
+ * {@code i*8+8}, so that they end up as immediate operands of additions, loads
+ * and stores. Subtractions of constants become additions of negated
+ * constants.</li>
+ *
+ * <li>Constants are moved to the right of commutative operators and of
+ * comparisons (reversing the comparison), comparisons of sums with constants
+ * for (in)equality absorb the constant offset, and negated comparisons become
+ * reversed comparisons.</li>
+ *
+ * <li>Conditional jumps on constant conditions become unconditional
+ * jumps.</li>
+ *
+ * </ul>
+ *
+ * All arithmetic is the 64-bit two's complement arithmetic of the target
+ * machine, so reassociation never changes the value of an expression.
+ */
+public class ConstantFolding implements ImcPass {
+
+	/**
+	 * Constructs a new pass.
+	 */
+	public ConstantFolding() {
+	}
+
+	@Override
+	public String name() {
+		return "fold";
+	}
+
+	@Override
+	public LinCodeChunk run(final LinCodeChunk codeChunk) {
+		final Folder folder = new Folder();
+		final Vector<ImcStmt> stmts = new Vector<ImcStmt>();
+		for (final ImcStmt stmt : codeChunk.stmts())
+			stmts.add((ImcStmt) stmt.accept(folder, null));
+		return new LinCodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel);
+	}
+
+	/**
+	 * Folds a binary operator applied to two (already folded) operands.
+	 *
+	 * @param oper The operator.
+	 * @param fst  The first operand.
+	 * @param snd  The second operand.
+	 * @return The folded expression.
+	 */
+	static ImcExpr fold(final ImcBINOP.Oper oper, ImcExpr fst, ImcExpr snd) {
+		if ((fst instanceof ImcCONST fstConst) && (snd instanceof ImcCONST sndConst)) {
+			final Long value = eval(oper, fstConst.value, sndConst.value);
+			if (value != null)
+				return new ImcCONST(value);
+		}
+
+		// Constants go to the right.
+		if ((fst instanceof ImcCONST) && !(snd instanceof ImcCONST)) {
+			final ImcBINOP.Oper swapped = swapped(oper);
+			if (swapped != null)
+				return fold(swapped, snd, fst);
+		}
+
+		switch (oper) {
+		case ADD: {
+			if (isConst(snd, 0))
+				return fst;
+			if ((snd instanceof ImcCONST sndConst) && (offset(fst) != null))
+				return fold(ImcBINOP.Oper.ADD, base(fst), new ImcCONST(offset(fst) + sndConst.value));
+			if (!(snd instanceof ImcCONST) && (offset(fst) != null))
+				return fold(ImcBINOP.Oper.ADD, fold(ImcBINOP.Oper.ADD, base(fst), snd), new ImcCONST(offset(fst)));
+			if (offset(snd) != null)
+				return fold(ImcBINOP.Oper.ADD, fold(ImcBINOP.Oper.ADD, fst, base(snd)), new ImcCONST(offset(snd)));
+			break;
+		}
+		case SUB: {
+			if (snd instanceof ImcCONST sndConst)
+				return fold(ImcBINOP.Oper.ADD, fst, new ImcCONST(-sndConst.value));
+			if (offset(fst) != null)
+				return fold(ImcBINOP.Oper.ADD, fold(ImcBINOP.Oper.SUB, base(fst), snd), new ImcCONST(offset(fst)));
+			if (offset(snd) != null)
+				return fold(ImcBINOP.Oper.ADD, fold(ImcBINOP.Oper.SUB, fst, base(snd)), new ImcCONST(-offset(snd)));
+			break;
+		}
+		case MUL: {
+			if (isConst(snd, 1))
+				return fst;
+			if (isConst(snd, 0))
+				return snd;
+			if ((snd instanceof ImcCONST sndConst) && (offset(fst) != null))
+				return fold(ImcBINOP.Oper.ADD, fold(ImcBINOP.Oper.MUL, base(fst), snd),
+						new ImcCONST(offset(fst) * sndConst.value));
+			if ((snd instanceof ImcCONST sndConst) && (fst instanceof ImcBINOP fstBinOp)
+					&& (fstBinOp.oper == ImcBINOP.Oper.MUL) && (fstBinOp.sndExpr instanceof ImcCONST fstSndConst))
+				return fold(ImcBINOP.Oper.MUL, fstBinOp.fstExpr, new ImcCONST(fstSndConst.value * sndConst.value));
+			break;
+		}
+		case DIV: {
+			if (isConst(snd, 1))
+				return fst;
+			break;
+		}
+		case MOD: {
+			if (isConst(snd, 1))
+				return new ImcCONST(0);
+			break;
+		}
+		case AND: {
+			if (isConst(snd, 0))
+				return snd;
+			break;
+		}
+		case EQU:
+		case NEQ: {
+			if ((snd instanceof ImcCONST sndConst) && (offset(fst) != null))
+				return fold(oper, base(fst), new ImcCONST(sndConst.value - offset(fst)));
+			break;
+		}
+		default:
+			break;
+		}
+		return new ImcBINOP(oper, fst, snd);
+	}
+
+	/**
+	 * Evaluates a binary operator applied to two constants.
+	 *
+	 * @param oper The operator.
+	 * @param fst  The value of the first operand.
+	 * @param snd  The value of the second operand.
+	 * @return The value (or {@code null} if it must be computed at runtime).
+	 */
+	private static Long eval(final ImcBINOP.Oper oper, final long fst, final long snd) {
+		return switch (oper) {
+		case OR -> isBool(fst) && isBool(snd) ? fst | snd : null;
+		case AND -> isBool(fst) && isBool(snd) ? fst & snd : null;
+		case EQU -> fst == snd ? 1L : 0L;
+		case NEQ -> fst != snd ? 1L : 0L;
+		case LTH -> fst < snd ? 1L : 0L;
+		case GTH -> fst > snd ? 1L : 0L;
+		case LEQ -> fst <= snd ? 1L : 0L;
+		case GEQ -> fst >= snd ? 1L : 0L;
+		case ADD -> fst + snd;
+		case SUB -> fst - snd;
+		case MUL -> fst * snd;
+		case DIV -> fst >= 0 && snd > 0 ? fst / snd : null;
+		case MOD -> fst >= 0 && snd > 0 ? fst % snd : null;
+		};
+	}
+
+	/**
+	 * Returns the operator that yields the same result if its operands are
+	 * swapped.
+	 *
+	 * @param oper The operator.
+	 * @return The operator with swapped operands (or {@code null} if there is
+	 *         none).
+	 */
+	private static ImcBINOP.Oper swapped(final ImcBINOP.Oper oper) {
+		return switch (oper) {
+		case OR, AND, EQU, NEQ, ADD, MUL -> oper;
+		case LTH -> ImcBINOP.Oper.GTH;
+		case GTH -> ImcBINOP.Oper.LTH;
+		case LEQ -> ImcBINOP.Oper.GEQ;
+		case GEQ -> ImcBINOP.Oper.LEQ;
+		default -> null;
+		};
+	}
+
+	/**
+	 * Returns the comparison that yields the opposite result.
+	 *
+	 * @param oper The operator.
+	 * @return The opposite comparison (or {@code null} if the operator is not a
+	 *         comparison).
+	 */
+	private static ImcBINOP.Oper negated(final ImcBINOP.Oper oper) {
+		return switch (oper) {
+		case EQU -> ImcBINOP.Oper.NEQ;
+		case NEQ -> ImcBINOP.Oper.EQU;
+		case LTH -> ImcBINOP.Oper.GEQ;
+		case GEQ -> ImcBINOP.Oper.LTH;
+		case GTH -> ImcBINOP.Oper.LEQ;
+		case LEQ -> ImcBINOP.Oper.GTH;
+		default -> null;
+		};
+	}
+
+	/**
+	 * Returns the constant offset of a sum of the form {@code base+offset}.
+	 *
+	 * @param expr The expression.
+	 * @return The offset (or {@code null} if the expression is not such a sum).
+	 */
+	private static Long offset(final ImcExpr expr) {
+		if ((expr instanceof ImcBINOP binOp) && (binOp.oper == ImcBINOP.Oper.ADD)
+				&& (binOp.sndExpr instanceof ImcCONST sndConst))
+			return sndConst.value;
+		return null;
+	}
+
+	/**
+	 * Returns the base of a sum of the form {@code base+offset}.
+	 *
+	 * @param expr The expression (see {@link #offset(ImcExpr)}).
+	 * @return The base.
+	 */
+	private static ImcExpr base(final ImcExpr expr) {
+		return ((ImcBINOP) expr).fstExpr;
+	}
+
+	/**
+	 * Checks whether an expression is a particular constant.
+	 *
+	 * @param expr  The expression.
+	 * @param value The value of the constant.
+	 * @return {@code true} if the expression is the constant, {@code false}
+	 *         otherwise.
+	 */
+	private static boolean isConst(final ImcExpr expr, final long value) {
+		return (expr instanceof ImcCONST constant) && (constant.value == value);
+	}
+
+	/**
+	 * Checks whether a value is a boolean.
+	 *
+	 * @param value The value.
+	 * @return {@code true} if the value is 0 or 1, {@code false} otherwise.
+	 */
+	private static boolean isBool(final long value) {
+		return value == 0 || value == 1;
+	}
+
+	/**
+	 * Folds expressions within statements and expressions.
+	 */
+	private static class Folder implements ImcVisitor<ImcInstr, Object> {
+
+		@Override
+		public ImcInstr visit(final ImcBINOP binOp, final Object arg) {
+			return fold(binOp.oper, (ImcExpr) binOp.fstExpr.accept(this, arg),
+					(ImcExpr) binOp.sndExpr.accept(this, arg));
+		}
+
+		@Override
+		public ImcInstr visit(final ImcCALL call, final Object arg) {
+			final Vector<ImcExpr> args = new Vector<ImcExpr>();
+			for (final ImcExpr callArg : call.args)
+				args.add((ImcExpr) callArg.accept(this, arg));
+			return new ImcCALL(call.label, call.offs, args);
+		}
+
+		@Override
+		public ImcInstr visit(final ImcCJUMP cjump, final Object arg) {
+			final ImcExpr cond = (ImcExpr) cjump.cond.accept(this, arg);
+			if (cond instanceof ImcCONST constant)
+				return new ImcJUMP(constant.value != 0 ? cjump.posLabel : cjump.negLabel);
+			return new ImcCJUMP(cond, cjump.posLabel, cjump.negLabel);
+		}
+
+		@Override
+		public ImcInstr visit(final ImcCONST constant, final Object arg) {
+			return constant;
+		}
+
+		@Override
+		public ImcInstr visit(final ImcESTMT eStmt, final Object arg) {
+			return new ImcESTMT((ImcExpr) eStmt.expr.accept(this, arg));
+		}
+
+		@Override
+		public ImcInstr visit(final ImcJUMP jump, final Object arg) {
+			return jump;
+		}
+
+		@Override
+		public ImcInstr visit(final ImcLABEL label, final Object arg) {
+			return label;
+		}
+
+		@Override
+		public ImcInstr visit(final ImcMEM mem, final Object arg) {
+			return new ImcMEM((ImcExpr) mem.addr.accept(this, arg));
+		}
+
+		@Override
+		public ImcInstr visit(final ImcMOVE move, final Object arg) {
+			return new ImcMOVE((ImcExpr) move.dst.accept(this, arg), (ImcExpr) move.src.accept(this, arg));
+		}
+
+		@Override
+		public ImcInstr visit(final ImcNAME name, final Object arg) {
+			return name;
+		}
+
+		@Override
+		public ImcInstr visit(final ImcTEMP temp, final Object arg) {
+			return temp;
+		}
+
+		@Override
+		public ImcInstr visit(final ImcUNOP unOp, final Object arg) {
+			final ImcExpr subExpr = (ImcExpr) unOp.subExpr.accept(this, arg);
+			switch (unOp.oper) {
+			case NEG:
+				if (subExpr instanceof ImcCONST constant)
+					return new ImcCONST(-constant.value);
+				if ((subExpr instanceof ImcUNOP subUnOp) && (subUnOp.oper == ImcUNOP.Oper.NEG))
+					return subUnOp.subExpr;
+				break;
+			case NOT:
+				if (subExpr instanceof ImcCONST constant)
+					return new ImcCONST(constant.value == 0 ? 1 : 0);
+				if ((subExpr instanceof ImcBINOP subBinOp) && (negated(subBinOp.oper) != null))
+					return fold(negated(subBinOp.oper), subBinOp.fstExpr, subBinOp.sndExpr);
+				break;
+			}
+			return new ImcUNOP(unOp.oper, subExpr);
+		}
+
+	}
+
+}
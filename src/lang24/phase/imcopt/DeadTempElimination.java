@@ -0,0 +1,106 @@
+package lang24.phase.imcopt;
+
+import java.util.*;
+import lang24.data.imc.code.expr.*;
+import lang24.data.imc.code.stmt.*;
+import lang24.data.imc.visitor.*;
+import lang24.data.lin.*;
+import lang24.data.mem.*;
+
+/**
+ * Elimination of moves to temporaries that are never read.
+ *
+ * A move to a temporary is removed if no statement of the function reads the
+ * temporary and evaluating the source has no side effects, i.e., contains no
+ * call. The return value temporary is read by the epilogue and is never
+ * considered dead. Removing a move can make the temporaries its source reads
+ * dead as well, so moves are removed until none is left to remove.
+ */
+public class DeadTempElimination implements ImcPass {
+
+	/**
+	 * Constructs a new pass.
+	 */
+	public DeadTempElimination() {
+	}
+
+	@Override
+	public String name() {
+		return "deadtemps";
+	}
+
+	@Override
+	public LinCodeChunk run(final LinCodeChunk codeChunk) {
+		Vector<ImcStmt> stmts = codeChunk.stmts();
+		boolean changed = false;
+		while (true) {
+			// Count how many times each temporary is read.
+			final HashMap<MemTemp, Integer> numReads = new HashMap<MemTemp, Integer>();
+			final ImcFullVisitor<Object, Object> reads = new ImcFullVisitor<Object, Object>() {
+				@Override
+				public Object visit(final ImcTEMP temp, final Object arg) {
+					numReads.merge(temp.temp, 1, Integer::sum);
+					return null;
+				}
+
+				@Override
+				public Object visit(final ImcMOVE move, final Object arg) {
+					if (!(move.dst instanceof ImcTEMP))
+						move.dst.accept(this, arg);
+					move.src.accept(this, arg);
+					return null;
+				}
+			};
+			for (final ImcStmt stmt : stmts)
+				stmt.accept(reads, null);
+
+			final Vector<ImcStmt> liveStmts = new Vector<ImcStmt>();
+			for (final ImcStmt stmt : stmts)
+				if (!isDead(stmt, codeChunk.frame, numReads))
+					liveStmts.add(stmt);
+			if (liveStmts.size() == stmts.size())
+				break;
+			stmts = liveStmts;
+			changed = true;
+		}
+		return changed ? new LinCodeChunk(codeChunk.frame, stmts, codeChunk.entryLabel, codeChunk.exitLabel)
+				: codeChunk;
+	}
+
+	/**
+	 * Checks whether a statement is a move to a dead temporary.
+	 *
+	 * @param stmt     The statement.
+	 * @param frame    The frame of the function.
+	 * @param numReads The number of reads of each temporary.
+	 * @return {@code true} if the statement can be removed, {@code false}
+	 *         otherwise.
+	 */
+	private static boolean isDead(final ImcStmt stmt, final MemFrame frame, final HashMap<MemTemp, Integer> numReads) {
+		if (!(stmt instanceof ImcMOVE move) || !(move.dst instanceof ImcTEMP dst))
+			return false;
+		if (dst.temp == frame.RV || dst.temp == frame.FP || numReads.containsKey(dst.temp))
+			return false;
+		return !hasCall(move.src);
+	}
+
+	/**
+	 * Checks whether an expression contains a call.
+	 *
+	 * @param expr The expression.
+	 * @return {@code true} if the expression contains a call, {@code false}
+	 *         otherwise.
+	 */
+	static boolean hasCall(final ImcExpr expr) {
+		final boolean[] hasCall = new boolean[] { false };
+		expr.accept(new ImcFullVisitor<Object, Object>() {
+			@Override
+			public Object visit(final ImcCALL call, final Object arg) {
+				hasCall[0] = true;
+				return null;
+			}
+		}, null);
+		return hasCall[0];
+	}
+
+}
@@ -0,0 +1,45 @@
+package lang24.phase.imcopt;
+
+import lang24.data.lin.*;
+import lang24.phase.*;
+import lang24.phase.imclin.*;
+
+/**
+ * Optimization of linearized intermediate code.
+ *
+ * The code of each function is passed through the passes of the optimization
+ * level selected by {@code --opt-level} (or {@code -O}), see
+ * {@link PassManager#forLevel(int)}. At level 0 the code is left as it is.
+ */
+public class ImcOpt extends Phase {
+
+	/** The passes. */
+	public final PassManager passManager;
+
+	/**
+	 * Constructs a new phase for the optimization of intermediate code.
+	 */
+	public ImcOpt() {
+		super("imcopt");
+		passManager = PassManager.forLevel(Integer.parseInt(lang24.Compiler.cmdLineOptValue("--opt-level")));
+	}
+
+	/**
+	 * Optimizes the code chunks of all functions.
+	 */
+	public void optimize() {
+		ImcLin.setCodeChunks(passManager.run(ImcLin.codeChunks()));
+	}
+
+	/**
+	 * Logs all chunks of the program.
+	 */
+	public void log() {
+		final LinLogger linLogger = new LinLogger(logger);
+		for (final LinDataChunk dataChunk : ImcLin.dataChunks())
+			linLogger.log(dataChunk);
+		for (final LinCodeChunk codeChunk : ImcLin.codeChunks())
+			linLogger.log(codeChunk);
+	}
+
+}
@@ -0,0 +1,32 @@
+package lang24.phase.imcopt;
+
+import lang24.data.lin.*;
+
+/**
+ * An optimization pass over linearized intermediate code.
+ *
+ * A pass transforms the code of one function at a time. The code it is given
+ * and the code it returns are both linear, i.e., consist of {@code MOVE},
+ * {@code CJUMP}, {@code JUMP}, {@code LABEL} and {@code ESTMT} statements only,
+ * with calls appearing only as the source of a move to a temporary or as an
+ * expression statement.
+ */
+public interface ImcPass {
+
+	/**
+	 * Returns the name of this pass (used in profiles).
+	 *
+	 * @return The name of this pass.
+	 */
+	public String name();
+
+	/**
+	 * Optimizes the code of a single function.
+	 *
+	 * @param codeChunk The code chunk of the function.
+	 * @return The optimized code chunk (or the same code chunk if nothing has
+	 *         changed).
+	 */
+	public LinCodeChunk run(LinCodeChunk codeChunk);
+
+}
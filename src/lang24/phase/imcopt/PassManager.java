@@ -0,0 +1,176 @@
+package lang24.phase.imcopt;
+
+import java.util.*;
+import lang24.common.report.*;
+import lang24.data.imc.code.expr.*;
+import lang24.data.imc.code.stmt.*;
+import lang24.data.imc.visitor.*;
+import lang24.data.lin.*;
+import lang24.data.mem.*;
+
+/**
+ * A sequence of optimization passes run over the code of each function.
+ *
+ * The sequence is given by the optimization level (see {@link #forLevel(int)}).
+ * Every pass is timed, and its effect is measured as the number of statements
+ * it removes and the number of temporaries it eliminates; both are summed over
+ * all functions (and over all runs of the same pass).
+ */
+public class PassManager {
+
+	/** The highest optimization level. */
+	public static final int MAX_LEVEL = 2;
+
+	/**
+	 * The cost and the effect of a pass summed over all functions.
+	 */
+	private static class PassStats {
+
+		/** The time spent in the pass (in nanoseconds). */
+		long nanos;
+
+		/** The number of statements removed by the pass. */
+		long stmtsRemoved;
+
+		/** The number of temporaries eliminated by the pass. */
+		long tempsEliminated;
+
+	}
+
+	/** The passes in the order they are run. */
+	private final Vector<ImcPass> passes = new Vector<ImcPass>();
+
+	/** The statistics of passes indexed by their names. */
+	private final LinkedHashMap<String, PassStats> stats = new LinkedHashMap<String, PassStats>();
+
+	/**
+	 * Constructs a new pass manager without any passes.
+	 */
+	public PassManager() {
+	}
+
+	/**
+	 * Returns a new pass manager running the passes of an optimization level.
+	 *
+	 * @param level The optimization level (from 0 to {@link #MAX_LEVEL}).
+	 * @return The pass manager.
+	 */
+	public static PassManager forLevel(final int level) {
+		if (level < 0 || level > MAX_LEVEL)
+			throw new Report.InternalError();
+		final PassManager passManager = new PassManager();
+		if (level >= 1) {
+			passManager.add(new ConstantFolding());
+			if (level >= 2)
+				passManager.add(new ValueNumbering());
+			passManager.add(new DeadTempElimination());
+		}
+		return passManager;
+	}
+
+	/**
+	 * Appends a pass to the sequence of passes.
+	 *
+	 * @param pass The pass.
+	 * @return This pass manager.
+	 */
+	public PassManager add(final ImcPass pass) {
+		passes.add(pass);
+		stats.putIfAbsent(pass.name(), new PassStats());
+		return this;
+	}
+
+	/**
+	 * Runs all passes over the code of a single function.
+	 *
+	 * @param codeChunk The code chunk of the function.
+	 * @return The optimized code chunk.
+	 */
+	public LinCodeChunk run(LinCodeChunk codeChunk) {
+		if (passes.isEmpty())
+			return codeChunk;
+		Vector<ImcStmt> stmts = codeChunk.stmts();
+		int numTemps = numTemps(stmts);
+		for (final ImcPass pass : passes) {
+			final PassStats passStats = stats.get(pass.name());
+			final long start = System.nanoTime();
+			codeChunk = pass.run(codeChunk);
+			passStats.nanos += System.nanoTime() - start;
+
+			final Vector<ImcStmt> newStmts = codeChunk.stmts();
+			final int newNumTemps = numTemps(newStmts);
+			passStats.stmtsRemoved += stmts.size() - newStmts.size();
+			passStats.tempsEliminated += numTemps - newNumTemps;
+			stmts = newStmts;
+			numTemps = newNumTemps;
+		}
+		return codeChunk;
+	}
+
+	/**
+	 * Runs all passes over the code of each function.
+	 *
+	 * @param codeChunks The code chunks of functions.
+	 * @return The optimized code chunks.
+	 */
+	public Vector<LinCodeChunk> run(final Vector<LinCodeChunk> codeChunks) {
+		final Vector<LinCodeChunk> optCodeChunks = new Vector<LinCodeChunk>();
+		for (final LinCodeChunk codeChunk : codeChunks)
+			optCodeChunks.add(run(codeChunk));
+		return optCodeChunks;
+	}
+
+	/**
+	 * Returns the time spent in each pass so far.
+	 *
+	 * @return The time (in nanoseconds) indexed by pass names.
+	 */
+	public LinkedHashMap<String, Long> nanos() {
+		final LinkedHashMap<String, Long> nanos = new LinkedHashMap<String, Long>();
+		stats.forEach((name, passStats) -> nanos.put(name, passStats.nanos));
+		return nanos;
+	}
+
+	/**
+	 * Returns the number of statements removed by each pass so far.
+	 *
+	 * @return The number of statements removed indexed by pass names.
+	 */
+	public LinkedHashMap<String, Long> stmtsRemoved() {
+		final LinkedHashMap<String, Long> stmtsRemoved = new LinkedHashMap<String, Long>();
+		stats.forEach((name, passStats) -> stmtsRemoved.put(name, passStats.stmtsRemoved));
+		return stmtsRemoved;
+	}
+
+	/**
+	 * Returns the number of temporaries eliminated by each pass so far.
+	 *
+	 * @return The number of temporaries eliminated indexed by pass names.
+	 */
+	public LinkedHashMap<String, Long> tempsEliminated() {
+		final LinkedHashMap<String, Long> tempsEliminated = new LinkedHashMap<String, Long>();
+		stats.forEach((name, passStats) -> tempsEliminated.put(name, passStats.tempsEliminated));
+		return tempsEliminated;
+	}
+
+	/**
+	 * Returns the number of distinct temporaries statements refer to.
+	 *
+	 * @param stmts The statements.
+	 * @return The number of distinct temporaries.
+	 */
+	private static int numTemps(final Vector<ImcStmt> stmts) {
+		final HashSet<MemTemp> temps = new HashSet<MemTemp>();
+		final ImcFullVisitor<Object, Object> collector = new ImcFullVisitor<Object, Object>() {
+			@Override
+			public Object visit(final ImcTEMP temp, final Object arg) {
+				temps.add(temp.temp);
+				return null;
+			}
+		};
+		for (final ImcStmt stmt : stmts)
+			stmt.accept(collector, null);
+		return temps.size();
+	}
+
+}
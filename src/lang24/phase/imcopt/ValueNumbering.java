@@ -0,0 +1,420 @@
+package lang24.phase.imcopt;
+
+import java.util.*;
+import lang24.common.report.*;
+import lang24.data.imc.code.expr.*;
+import lang24.data.imc.code.stmt.*;
+import lang24.data.imc.visitor.*;
+import lang24.data.lin.*;
+import lang24.data.mem.*;
+
+/**
+ * Local value numbering.
+ *
+ * Within each basic block (a sequence of statements from one label to the
+ * next), every expression is given a value number so that two expressions get
+ * the same number only if they are guaranteed to have the same value. Numbers
+ * of operators are derived from the numbers of their operands (the operands of
+ * commutative operators are ordered), a temporary takes the number of the value
+ * last moved into it, and a load takes the number of its address together with
+ * the current state of memory. Every store and every call is assumed to change
+ * any location in memory, so loads are never reused across them; a load from
+ * the address just stored to, however, takes the number of the value stored.
+ *
+ * The block is numbered twice. The first time the occurrences of each value
+ * that is not already held by a temporary are counted. The second time the
+ * first occurrence of each value that occurs more than once is computed into a
+ * fresh temporary just before its statement, and all further occurrences read
+ * the temporary instead. Additions of small constants to temporaries are
+ * recomputed rather than held, as the code generator folds them into the
+ * offsets of loads and stores. A fresh temporary that ends up read only once
+ * within its own statement is substituted back.
+ */
+public class ValueNumbering implements ImcPass {
+
+	/**
+	 * Constructs a new pass.
+	 */
+	public ValueNumbering() {
+	}
+
+	@Override
+	public String name() {
+		return "lvn";
+	}
+
+	@Override
+	public LinCodeChunk run(final LinCodeChunk codeChunk) {
+		final Vector<ImcStmt> stmts = codeChunk.stmts();
+		final Vector<ImcStmt> newStmts = new Vector<ImcStmt>();
+		boolean changed = false;
+		int begin = 0;
+		for (int end = 1; end <= stmts.size(); end++) {
+			if (end < stmts.size() && !(stmts.get(end) instanceof ImcLABEL))
+				continue;
+			final List<ImcStmt> block = stmts.subList(begin, end);
+			final Vector<ImcStmt> newBlock = numberBlock(block);
+			changed = changed || (newBlock != null);
+			newStmts.addAll(newBlock == null ? block : newBlock);
+			begin = end;
+		}
+		return changed ? new LinCodeChunk(codeChunk.frame, newStmts, codeChunk.entryLabel, codeChunk.exitLabel)
+				: codeChunk;
+	}
+
+	/**
+	 * Numbers a basic block.
+	 *
+	 * @param block The statements of the block.
+	 * @return The new statements of the block (or {@code null} if nothing has
+	 *         changed).
+	 */
+	private static Vector<ImcStmt> numberBlock(final List<ImcStmt> block) {
+		final Numbering counting = new Numbering(null);
+		for (final ImcStmt stmt : block)
+			counting.number(stmt);
+
+		final Numbering numbering = new Numbering(counting.numOccurrences);
+		final Vector<Vector<ImcStmt>> groups = new Vector<Vector<ImcStmt>>();
+		boolean changed = false;
+		for (final ImcStmt stmt : block) {
+			final Vector<ImcStmt> group = numbering.number(stmt);
+			changed = changed || (group.size() > 1) || (group.lastElement() != stmt);
+			groups.add(group);
+		}
+		return changed ? substitute(groups, numbering.freshTemps) : null;
+	}
+
+	/**
+	 * Substitutes fresh temporaries read only once back into the statement
+	 * reading them.
+	 *
+	 * @param groups     The new statements of the block, grouped by the original
+	 *                   statement they were derived from.
+	 * @param freshTemps The fresh temporaries.
+	 * @return The new statements of the block.
+	 */
+	private static Vector<ImcStmt> substitute(final Vector<Vector<ImcStmt>> groups,
+			final HashSet<MemTemp> freshTemps) {
+		final HashMap<MemTemp, Integer> numReads = new HashMap<MemTemp, Integer>();
+		final HashMap<MemTemp, Integer> groupOfRead = new HashMap<MemTemp, Integer>();
+		for (int g = 0; g < groups.size(); g++) {
+			final int group = g;
+			final ImcFullVisitor<Object, Object> reads = new ImcFullVisitor<Object, Object>() {
+				@Override
+				public Object visit(final ImcTEMP temp, final Object arg) {
+					if (freshTemps.contains(temp.temp)) {
+						numReads.merge(temp.temp, 1, Integer::sum);
+						groupOfRead.put(temp.temp, group);
+					}
+					return null;
+				}
+
+				@Override
+				public Object visit(final ImcMOVE move, final Object arg) {
+					if (!(move.dst instanceof ImcTEMP))
+						move.dst.accept(this, arg);
+					move.src.accept(this, arg);
+					return null;
+				}
+			};
+			for (final ImcStmt stmt : groups.get(g))
+				stmt.accept(reads, null);
+		}
+
+		final HashMap<MemTemp, ImcExpr> substitutes = new HashMap<MemTemp, ImcExpr>();
+		final Vector<ImcStmt> stmts = new Vector<ImcStmt>();
+		for (int g = 0; g < groups.size(); g++) {
+			for (final ImcStmt stmt : groups.get(g)) {
+				if (stmt instanceof ImcMOVE move && move.dst instanceof ImcTEMP dst
+						&& freshTemps.contains(dst.temp) && numReads.getOrDefault(dst.temp, 0) == 1
+						&& groupOfRead.get(dst.temp) == g) {
+					substitutes.put(dst.temp, substitute(move.src, substitutes));
+					continue;
+				}
+				stmts.add(substitutes.isEmpty() ? stmt : substitute(stmt, substitutes));
+			}
+		}
+		return stmts;
+	}
+
+	/**
+	 * Substitutes temporaries within a statement.
+	 *
+	 * @param stmt        The statement.
+	 * @param substitutes The expressions substituted for temporaries.
+	 * @return The new statement.
+	 */
+	private static ImcStmt substitute(final ImcStmt stmt, final HashMap<MemTemp, ImcExpr> substitutes) {
+		if (stmt instanceof ImcMOVE move) {
+			final ImcExpr dst = move.dst instanceof ImcMEM mem ? new ImcMEM(substitute(mem.addr, substitutes))
+					: move.dst;
+			return new ImcMOVE(dst, substitute(move.src, substitutes));
+		}
+		if (stmt instanceof ImcCJUMP cjump)
+			return new ImcCJUMP(substitute(cjump.cond, substitutes), cjump.posLabel, cjump.negLabel);
+		if (stmt instanceof ImcESTMT eStmt)
+			return new ImcESTMT(substitute(eStmt.expr, substitutes));
+		return stmt;
+	}
+
+	/**
+	 * Substitutes temporaries within an expression.
+	 *
+	 * @param expr        The expression.
+	 * @param substitutes The expressions substituted for temporaries.
+	 * @return The new expression.
+	 */
+	private static ImcExpr substitute(final ImcExpr expr, final HashMap<MemTemp, ImcExpr> substitutes) {
+		if (expr instanceof ImcTEMP temp)
+			return substitutes.getOrDefault(temp.temp, temp);
+		if (expr instanceof ImcBINOP binOp)
+			return new ImcBINOP(binOp.oper, substitute(binOp.fstExpr, substitutes),
+					substitute(binOp.sndExpr, substitutes));
+		if (expr instanceof ImcUNOP unOp)
+			return new ImcUNOP(unOp.oper, substitute(unOp.subExpr, substitutes));
+		if (expr instanceof ImcMEM mem)
+			return new ImcMEM(substitute(mem.addr, substitutes));
+		if (expr instanceof ImcCALL call) {
+			final Vector<ImcExpr> args = new Vector<ImcExpr>();
+			for (final ImcExpr arg : call.args)
+				args.add(substitute(arg, substitutes));
+			return new ImcCALL(call.label, call.offs, args);
+		}
+		return expr;
+	}
+
+	/**
+	 * The value numbering of a single basic block.
+	 */
+	private static class Numbering {
+
+		/**
+		 * The number of occurrences of each value not held by a temporary, counted
+		 * if the occurrences are not yet known.
+		 */
+		private final HashMap<Integer, Integer> numOccurrences;
+
+		/** Whether the block is being numbered to count occurrences only. */
+		private final boolean counting;
+
+		/** The value numbers of expressions indexed by their keys. */
+		private final HashMap<String, Integer> values = new HashMap<String, Integer>();
+
+		/** The value numbers of temporaries. */
+		private final HashMap<MemTemp, Integer> tempValues = new HashMap<MemTemp, Integer>();
+
+		/** The temporaries holding values indexed by value numbers. */
+		private final HashMap<Integer, MemTemp> holders = new HashMap<Integer, MemTemp>();
+
+		/** The values of constants indexed by value numbers. */
+		private final HashMap<Integer, Long> constants = new HashMap<Integer, Long>();
+
+		/** The fresh temporaries holding values. */
+		private final HashSet<MemTemp> freshTemps = new HashSet<MemTemp>();
+
+		/** The number of value numbers given so far. */
+		private int numValues = 0;
+
+		/** The state of memory, changed by every store and every call. */
+		private int memState = 0;
+
+		/** The value number of the expression numbered last. */
+		private int value;
+
+		/** The statements computing fresh temporaries for the current statement. */
+		private Vector<ImcStmt> group;
+
+		/**
+		 * Constructs a new numbering.
+		 *
+		 * @param numOccurrences The number of occurrences of each value (or
+		 *                       {@code null} if they are to be counted).
+		 */
+		Numbering(final HashMap<Integer, Integer> numOccurrences) {
+			this.counting = numOccurrences == null;
+			this.numOccurrences = counting ? new HashMap<Integer, Integer>() : numOccurrences;
+		}
+
+		/**
+		 * Numbers a statement.
+		 *
+		 * @param stmt The statement.
+		 * @return The statements computing fresh temporaries followed by the new
+		 *         statement.
+		 */
+		Vector<ImcStmt> number(final ImcStmt stmt) {
+			group = new Vector<ImcStmt>();
+			final ImcStmt newStmt;
+			if (stmt instanceof ImcMOVE move && move.dst instanceof ImcTEMP dst) {
+				final ImcExpr src = number(move.src);
+				define(dst.temp, value);
+				newStmt = src == move.src ? move : new ImcMOVE(dst, src);
+			} else if (stmt instanceof ImcMOVE move && move.dst instanceof ImcMEM dst) {
+				final ImcExpr addr = number(dst.addr);
+				final int addrValue = value;
+				final ImcExpr src = number(move.src);
+				memState++;
+				values.put("M" + memState + " " + addrValue, value);
+				newStmt = addr == dst.addr && src == move.src ? move : new ImcMOVE(new ImcMEM(addr), src);
+			} else if (stmt instanceof ImcCJUMP cjump) {
+				final ImcExpr cond = number(cjump.cond);
+				newStmt = cond == cjump.cond ? cjump : new ImcCJUMP(cond, cjump.posLabel, cjump.negLabel);
+			} else if (stmt instanceof ImcESTMT eStmt) {
+				final ImcExpr expr = number(eStmt.expr);
+				newStmt = expr == eStmt.expr ? eStmt : new ImcESTMT(expr);
+			} else if (stmt instanceof ImcJUMP || stmt instanceof ImcLABEL) {
+				newStmt = stmt;
+			} else
+				throw new Report.InternalError();
+			group.add(newStmt);
+			return group;
+		}
+
+		/**
+		 * Numbers an expression.
+		 *
+		 * @param expr The expression.
+		 * @return The new expression.
+		 */
+		private ImcExpr number(final ImcExpr expr) {
+			if (expr instanceof ImcCONST constant) {
+				value = valueOf("C" + constant.value);
+				constants.put(value, constant.value);
+				return constant;
+			}
+			if (expr instanceof ImcNAME name) {
+				value = valueOf("N" + name.label.name);
+				return name;
+			}
+			if (expr instanceof ImcTEMP temp) {
+				final Integer tempValue = tempValues.get(temp.temp);
+				if (tempValue != null)
+					value = tempValue;
+				else
+					define(temp.temp, value = numValues++);
+				return temp;
+			}
+			if (expr instanceof ImcUNOP unOp) {
+				final ImcExpr subExpr = number(unOp.subExpr);
+				return occurrence("U" + unOp.oper + " " + value,
+						subExpr == unOp.subExpr ? unOp : new ImcUNOP(unOp.oper, subExpr));
+			}
+			if (expr instanceof ImcBINOP binOp) {
+				final ImcExpr fstExpr = number(binOp.fstExpr);
+				final int fstValue = value;
+				final ImcExpr sndExpr = number(binOp.sndExpr);
+				final int sndValue = value;
+				final boolean commutative = switch (binOp.oper) {
+				case ADD, MUL, AND, OR, EQU, NEQ -> true;
+				default -> false;
+				};
+				final String key = "B" + binOp.oper + " " + (commutative ? Math.min(fstValue, sndValue) : fstValue)
+						+ " " + (commutative ? Math.max(fstValue, sndValue) : sndValue);
+				return occurrence(key, fstExpr == binOp.fstExpr && sndExpr == binOp.sndExpr ? binOp
+						: new ImcBINOP(binOp.oper, fstExpr, sndExpr));
+			}
+			if (expr instanceof ImcMEM mem) {
+				final ImcExpr addr = number(mem.addr);
+				return occurrence("M" + memState + " " + value, addr == mem.addr ? mem : new ImcMEM(addr));
+			}
+			if (expr instanceof ImcCALL call) {
+				final Vector<ImcExpr> args = new Vector<ImcExpr>();
+				boolean changed = false;
+				for (final ImcExpr arg : call.args) {
+					args.add(number(arg));
+					changed = changed || (args.lastElement() != arg);
+				}
+				memState++;
+				value = numValues++;
+				return changed ? new ImcCALL(call.label, call.offs, args) : call;
+			}
+			throw new Report.InternalError();
+		}
+
+		/**
+		 * Numbers an occurrence of an operator or a load and decides whether it
+		 * is computed, held by a fresh temporary, or replaced.
+		 *
+		 * @param key  The key of the expression.
+		 * @param expr The expression with its operands already numbered.
+		 * @return The new expression.
+		 */
+		private ImcExpr occurrence(final String key, final ImcExpr expr) {
+			value = valueOf(key);
+			final Long constant = constants.get(value);
+			if (constant != null)
+				return new ImcCONST(constant);
+			final MemTemp holder = holder(value);
+			if (holder != null)
+				return new ImcTEMP(holder);
+			if (counting) {
+				numOccurrences.merge(value, 1, Integer::sum);
+				return expr;
+			}
+			if (numOccurrences.getOrDefault(value, 0) < 2 || isOffset(expr))
+				return expr;
+			final MemTemp temp = new MemTemp();
+			group.add(new ImcMOVE(new ImcTEMP(temp), expr));
+			freshTemps.add(temp);
+			define(temp, value);
+			return new ImcTEMP(temp);
+		}
+
+		/**
+		 * Returns the value number of an expression given by its key.
+		 *
+		 * @param key The key of the expression.
+		 * @return The value number.
+		 */
+		private int valueOf(final String key) {
+			final Integer value = values.get(key);
+			if (value != null)
+				return value;
+			values.put(key, numValues);
+			return numValues++;
+		}
+
+		/**
+		 * Records that a temporary holds a value.
+		 *
+		 * @param temp  The temporary.
+		 * @param value The value number.
+		 */
+		private void define(final MemTemp temp, final int value) {
+			tempValues.put(temp, value);
+			if (holder(value) == null)
+				holders.put(value, temp);
+		}
+
+		/**
+		 * Returns a temporary that still holds a value.
+		 *
+		 * @param value The value number.
+		 * @return The temporary (or {@code null} if no temporary holds the value).
+		 */
+		private MemTemp holder(final int value) {
+			final MemTemp holder = holders.get(value);
+			if (holder == null)
+				return null;
+			final Integer holderValue = tempValues.get(holder);
+			return holderValue != null && holderValue == value ? holder : null;
+		}
+
+		/**
+		 * Checks whether an expression adds a small constant to a temporary.
+		 *
+		 * @param expr The expression.
+		 * @return {@code true} if the expression is an offset the code generator
+		 *         folds into loads, stores and additions, {@code false}
+		 *         otherwise.
+		 */
+		private static boolean isOffset(final ImcExpr expr) {
+			return expr instanceof ImcBINOP binOp && binOp.oper == ImcBINOP.Oper.ADD
+					&& binOp.fstExpr instanceof ImcTEMP && binOp.sndExpr instanceof ImcCONST offset
+					&& offset.value >= -255 && offset.value <= 255;
+		}
+
+	}
+
+}
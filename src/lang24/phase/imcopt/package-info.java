@@ -0,0 +1,4 @@
+/**
+ * Optimization of linearized intermediate code.
+ */
+package lang24.phase.imcopt;
\ No newline at end of file
@@ -6,13 +6,6 @@ lexer grammar Lang24Lexer;
 	import lang24.data.token.*;
 }
 
-@members {
-    @Override
-	public LocLogToken nextToken() {
-		return (LocLogToken) super.nextToken();
-	}
-}
-
 // Fragments used for literals
 fragment HEXCHAR : [0-9A-F] ;
 fragment SINGLEQUOTE : '\'' ;
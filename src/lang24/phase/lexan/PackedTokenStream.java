@@ -0,0 +1,308 @@
+package lang24.phase.lexan;
+
+import java.util.*;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.*;
+import lang24.common.logger.*;
+import lang24.common.report.*;
+import lang24.data.token.*;
+
+/**
+ * A stream of tokens stored in parallel arrays of primitive values.
+ *
+ * For each token, its type, the indices of its first and last character within
+ * the source file, and the line and the column it starts at are stored. Token
+ * objects (see {@link LocLogToken}) are materialized only when asked for, i.e.,
+ * when the parser matches a token or reports an error, or when tokens are
+ * logged, and each token is materialized at most once. Prediction within the
+ * parser only looks at token types and needs no token objects at all.
+ *
+ * The lexer is pulled lazily as the parser proceeds unless the entire source
+ * file is lexed upfront by {@link #fill()}. As whitespace and comments are
+ * skipped by the lexer, all tokens are on the default channel.
+ *
+ * Names of identifiers are interned as they are lexed (see {@link Symbols}) and
+ * materialized identifiers share the interned names as their texts.
+ */
+public class PackedTokenStream implements TokenStream {
+
+	/** The lexer producing tokens. */
+	private final Lang24Lexer lexer;
+
+	/** The logger tokens are logged to (or {@code null}). */
+	private final Logger logger;
+
+	/** The source of materialized tokens. */
+	private final Pair<TokenSource, CharStream> source;
+
+	/** The types of tokens. */
+	private int[] types;
+
+	/** The indices of the first characters of tokens. */
+	private int[] starts;
+
+	/** The indices of the last characters of tokens. */
+	private int[] stops;
+
+	/** The lines of tokens. */
+	private int[] lines;
+
+	/** The columns of the first characters of tokens. */
+	private int[] columns;
+
+	/** The symbols of identifiers (undefined for other tokens). */
+	private int[] symbols;
+
+	/** The symbols of the current compilation. */
+	private final Symbols allSymbols = Symbols.current();
+
+	/** Materialized tokens (or {@code null} if none yet). */
+	private LocLogToken[] tokens = null;
+
+	/** The number of tokens lexed so far. */
+	private int size = 0;
+
+	/** The index of the current token. */
+	private int p = 0;
+
+	/** Whether the end of the source file has been reached. */
+	private boolean eof = false;
+
+	/** The lexical error encountered (or {@code null} if none so far). */
+	private Report.Error error = null;
+
+	/**
+	 * Constructs a new token stream and makes the lexer produce tokens into it.
+	 *
+	 * @param lexer  The lexer producing tokens.
+	 * @param logger The logger tokens are logged to (or {@code null}).
+	 */
+	public PackedTokenStream(final Lang24Lexer lexer, final Logger logger) {
+		this.lexer = lexer;
+		this.logger = logger;
+		this.source = new Pair<TokenSource, CharStream>(lexer, lexer.getInputStream());
+		// A rough guess of the number of tokens.
+		final int capacity = lexer.getInputStream().size() / 4 + 16;
+		types = new int[capacity];
+		starts = new int[capacity];
+		stops = new int[capacity];
+		lines = new int[capacity];
+		columns = new int[capacity];
+		symbols = new int[capacity];
+		lexer.setTokenFactory(new PackedTokenFactory());
+	}
+
+	/**
+	 * A token factory that records tokens in the arrays of this stream instead of
+	 * producing token objects.
+	 */
+	private class PackedTokenFactory implements TokenFactory<CommonToken> {
+
+		/** The token returned to the lexer (never used by anybody else). */
+		private final CommonToken flyweight = new CommonToken(Token.INVALID_TYPE);
+
+		@Override
+		public CommonToken create(int type, String text) {
+			return new LocLogToken(type, text);
+		}
+
+		@Override
+		public CommonToken create(Pair<TokenSource, CharStream> source, int type, String text, int channel,
+				int start, int stop, int line, int charPositionInLine) {
+			// The lexer is just past the token.
+			final int length = type == Token.EOF ? "<EOF>".length() : stop - start + 1;
+			final int symbol = type == Lang24Lexer.IDENTIFIER
+					? allSymbols.intern(source.b.getText(Interval.of(start, stop))) : 0;
+			add(type, start, stop, source.a.getLine(), source.a.getCharPositionInLine() - length + 1, symbol);
+			if (logger != null)
+				get(size - 1).log(logger);
+			flyweight.setType(type);
+			return flyweight;
+		}
+
+	}
+
+	/**
+	 * Appends a token.
+	 *
+	 * @param type   The type of the token.
+	 * @param start  The index of the first character of the token.
+	 * @param stop   The index of the last character of the token.
+	 * @param line   The line of the token.
+	 * @param column The column of the first character of the token.
+	 * @param symbol The symbol of an identifier.
+	 */
+	private void add(final int type, final int start, final int stop, final int line, final int column,
+			final int symbol) {
+		if (size == types.length) {
+			final int capacity = 2 * size;
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			stops = Arrays.copyOf(stops, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			columns = Arrays.copyOf(columns, capacity);
+			symbols = Arrays.copyOf(symbols, capacity);
+			if (tokens != null)
+				tokens = Arrays.copyOf(tokens, capacity);
+		}
+		types[size] = type;
+		starts[size] = start;
+		stops[size] = stop;
+		lines[size] = line;
+		columns[size] = column;
+		symbols[size] = symbol;
+		size++;
+		if (type == Token.EOF)
+			eof = true;
+	}
+
+	/**
+	 * Lexes tokens until the token with the specified index is available or the
+	 * end of the source file is reached.
+	 *
+	 * @param i The index of the token.
+	 */
+	private void sync(final int i) {
+		while (size <= i && !eof)
+			next();
+	}
+
+	/**
+	 * Lexes the entire source file.
+	 */
+	public void fill() {
+		while (!eof)
+			next();
+	}
+
+	/**
+	 * Lexes the next token. Once a lexical error is encountered, the lexer is not
+	 * used anymore and the same error is reported whenever the stream is asked
+	 * for tokens beyond the last one lexed (e.g., after the parser has rewound
+	 * the stream).
+	 */
+	private void next() {
+		if (error != null)
+			throw error;
+		try {
+			lexer.nextToken();
+		} catch (final Report.Error error) {
+			this.error = error;
+			throw error;
+		}
+	}
+
+	@Override
+	public LocLogToken get(final int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("token index " + i + " out of range 0.." + (size - 1));
+		if (tokens == null)
+			tokens = new LocLogToken[types.length];
+		LocLogToken token = tokens[i];
+		if (token == null) {
+			token = new LocLogToken(source, types[i], Token.DEFAULT_CHANNEL, starts[i], stops[i], lines[i],
+					columns[i]);
+			token.setTokenIndex(i);
+			if (types[i] == Lang24Lexer.IDENTIFIER)
+				token.setText(allSymbols.name(symbols[i]));
+			tokens[i] = token;
+		}
+		return token;
+	}
+
+	@Override
+	public Token LT(final int k) {
+		if (k == 0)
+			return null;
+		if (k < 0)
+			return p + k < 0 ? null : get(p + k);
+		sync(p + k - 1);
+		return get(Math.min(p + k - 1, size - 1));
+	}
+
+	@Override
+	public int LA(final int i) {
+		if (i == 0)
+			return Token.INVALID_TYPE;
+		if (i < 0)
+			return p + i < 0 ? Token.INVALID_TYPE : types[p + i];
+		sync(p + i - 1);
+		return types[Math.min(p + i - 1, size - 1)];
+	}
+
+	@Override
+	public void consume() {
+		if (LA(1) == Token.EOF)
+			throw new IllegalStateException("cannot consume EOF");
+		p++;
+		sync(p);
+	}
+
+	@Override
+	public int mark() {
+		return 0;
+	}
+
+	@Override
+	public void release(final int marker) {
+	}
+
+	@Override
+	public int index() {
+		return p;
+	}
+
+	@Override
+	public void seek(final int index) {
+		sync(index);
+		p = Math.min(index, size - 1);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String getSourceName() {
+		return lexer.getSourceName();
+	}
+
+	@Override
+	public TokenSource getTokenSource() {
+		return lexer;
+	}
+
+	@Override
+	public String getText() {
+		fill();
+		return getText(Interval.of(0, size - 1));
+	}
+
+	@Override
+	public String getText(final Interval interval) {
+		if (interval.a < 0 || interval.b < 0)
+			return "";
+		sync(interval.b);
+		final StringBuilder text = new StringBuilder();
+		for (int i = interval.a; i <= interval.b && i < size; i++) {
+			if (types[i] == Token.EOF)
+				break;
+			text.append(lexer.getInputStream().getText(Interval.of(starts[i], stops[i])));
+		}
+		return text.toString();
+	}
+
+	@Override
+	public String getText(final RuleContext ctx) {
+		return getText(ctx.getSourceInterval());
+	}
+
+	@Override
+	public String getText(final Token start, final Token stop) {
+		if (start == null || stop == null)
+			return "";
+		return getText(Interval.of(start.getTokenIndex(), stop.getTokenIndex()));
+	}
+
+}
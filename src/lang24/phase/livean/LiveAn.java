@@ -17,7 +17,7 @@ public class LiveAn extends Phase {
 	}
 
 	public void analysis() {
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			LivenessAnalyzer analyzer = new LivenessAnalyzer();
 			analyzer.analyze(code.instrs);
 		}
@@ -26,7 +26,7 @@ public class LiveAn extends Phase {
 	public void log() {
 		if (logger == null)
 			return;
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			logger.begElement("code");
 			logger.addAttribute("prologue", code.entryLabel.name);
 			logger.addAttribute("body", code.entryLabel.name);
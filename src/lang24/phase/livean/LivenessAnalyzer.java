@@ -41,7 +41,8 @@ public class LivenessAnalyzer {
 
     private boolean oneIterationOfLiveness(Vector<AsmOPER> instrs) {
 		boolean continueAlgorithm = false;
-		for (AsmOPER instr : instrs) {
+		for (int index = instrs.size() - 1; index >= 0; index--) {
+			AsmOPER instr = instrs.get(index);
 			boolean changeOut = updateOut(instr);
 			boolean changeIn = updateIn(instr);
 	
@@ -0,0 +1,126 @@
+package lang24.phase.memory;
+
+import java.util.*;
+import lang24.data.ast.tree.*;
+import lang24.data.ast.tree.defn.*;
+import lang24.data.ast.tree.expr.*;
+import lang24.data.ast.visitor.*;
+import lang24.data.type.*;
+import lang24.phase.seman.*;
+
+/**
+ * Escape analysis of local variables.
+ *
+ * A local variable escapes if its address is needed, i.e., if its address is
+ * taken by the prefix operator {@code ^}, if it is passed to a parameter
+ * called by reference, or if it is accessed by a nested function (through the
+ * static link). Local variables of scalar types (integers, characters, booleans
+ * and pointers) that do not escape can be kept in temporary variables instead
+ * of in the frame (see {@link MemEvaluator#MemEvaluator(Set)}).
+ */
+public class EscapeAnalysis implements AstFullVisitor<Object, Object> {
+
+	/** The function each local variable is defined in. */
+	private final HashMap<AstVarDefn, AstFunDefn> owners = new HashMap<AstVarDefn, AstFunDefn>();
+
+	/** The functions each local variable is accessed in. */
+	private final HashMap<AstVarDefn, HashSet<AstFunDefn>> users = new HashMap<AstVarDefn, HashSet<AstFunDefn>>();
+
+	/** The local variables whose address is needed. */
+	private final HashSet<AstVarDefn> addressed = new HashSet<AstVarDefn>();
+
+	/** The functions being analysed, the innermost on top. */
+	private final Stack<AstFunDefn> funDefns = new Stack<AstFunDefn>();
+
+	/**
+	 * Constructs a new escape analysis.
+	 */
+	public EscapeAnalysis() {
+	}
+
+	/**
+	 * Returns the local variables of a program that can be kept in temporary
+	 * variables.
+	 *
+	 * @param tree The abstract syntax tree of the program.
+	 * @return The local variables of scalar types that do not escape.
+	 */
+	public static HashSet<AstVarDefn> tempVars(final AstNode tree) {
+		final EscapeAnalysis escapeAnalysis = new EscapeAnalysis();
+		tree.accept(escapeAnalysis, null);
+		return escapeAnalysis.tempVars();
+	}
+
+	/**
+	 * Returns the local variables that can be kept in temporary variables (once
+	 * the entire program has been analysed).
+	 *
+	 * @return The local variables of scalar types that do not escape.
+	 */
+	public HashSet<AstVarDefn> tempVars() {
+		final HashSet<AstVarDefn> tempVars = new HashSet<AstVarDefn>();
+		for (final Map.Entry<AstVarDefn, AstFunDefn> owner : owners.entrySet()) {
+			final AstVarDefn varDefn = owner.getKey();
+			if (addressed.contains(varDefn))
+				continue;
+			final HashSet<AstFunDefn> users = this.users.get(varDefn);
+			if (users != null && (users.size() > 1 || !users.contains(owner.getValue())))
+				continue;
+			final SemType type = SemAn.ofType.get(varDefn).actualType();
+			if (type instanceof SemIntType || type instanceof SemCharType || type instanceof SemBoolType
+					|| type instanceof SemPointerType)
+				tempVars.add(varDefn);
+		}
+		return tempVars;
+	}
+
+	@Override
+	public Object visit(AstFunDefn funDefn, Object arg) {
+		funDefns.push(funDefn);
+		AstFullVisitor.super.visit(funDefn, arg);
+		funDefns.pop();
+		return null;
+	}
+
+	@Override
+	public Object visit(AstVarDefn varDefn, Object arg) {
+		if (!funDefns.isEmpty())
+			owners.put(varDefn, funDefns.peek());
+		return AstFullVisitor.super.visit(varDefn, arg);
+	}
+
+	@Override
+	public Object visit(AstNameExpr nameExpr, Object arg) {
+		if (SemAn.definedAt.get(nameExpr) instanceof AstVarDefn varDefn && !funDefns.isEmpty())
+			users.computeIfAbsent(varDefn, v -> new HashSet<AstFunDefn>()).add(funDefns.peek());
+		return null;
+	}
+
+	@Override
+	public Object visit(AstPfxExpr pfxExpr, Object arg) {
+		if (pfxExpr.oper == AstPfxExpr.Oper.PTR)
+			addressOf(pfxExpr.expr);
+		return AstFullVisitor.super.visit(pfxExpr, arg);
+	}
+
+	@Override
+	public Object visit(AstCallExpr callExpr, Object arg) {
+		if (callExpr.args != null && SemAn.definedAt.get(callExpr) instanceof AstFunDefn funDefn) {
+			for (int a = 0; a < callExpr.args.size(); a++)
+				if (funDefn.pars.get(a) instanceof AstFunDefn.AstRefParDefn)
+					addressOf(callExpr.args.get(a));
+		}
+		return AstFullVisitor.super.visit(callExpr, arg);
+	}
+
+	/**
+	 * Records that the address of an expression is needed.
+	 *
+	 * @param expr The expression.
+	 */
+	private void addressOf(final AstExpr expr) {
+		if (expr instanceof AstNameExpr && SemAn.definedAt.get(expr) instanceof AstVarDefn varDefn)
+			addressed.add(varDefn);
+	}
+
+}
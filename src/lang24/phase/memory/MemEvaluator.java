@@ -2,6 +2,7 @@ package lang24.phase.memory;
 
 import java.util.*;
 
+import lang24.*;
 import lang24.data.ast.tree.*;
 import lang24.data.ast.tree.defn.*;
 import lang24.data.ast.tree.defn.AstFunDefn.AstParDefn;
@@ -26,37 +27,96 @@ public class MemEvaluator implements AstFullVisitor<Object, Object> {
 
     private long depth = -1;
     private HashMap<AstFunDefn, HashSet<Long>> mapFunctionsToCallArguments = new HashMap<>();
+    private Set<AstVarDefn> tempVars = Set.of(); // Local variables kept in temporaries instead of in the frame
+
+    /**
+     * Constructs a new memory layout evaluator that keeps all local variables in
+     * frames.
+     */
+    public MemEvaluator() {
+    }
+
+    /**
+     * Constructs a new memory layout evaluator that keeps some local variables in
+     * temporary variables (see {@link EscapeAnalysis}).
+     *
+     * @param tempVars The local variables kept in temporary variables.
+     */
+    public MemEvaluator(Set<AstVarDefn> tempVars) {
+        this.tempVars = tempVars;
+    }
+
+    /** The layouts of types indexed by canonical ids of types (see {@link SemTypeInterner}). */
+    private static final Compilation.Local<Vector<MemLayout>> layouts = new Compilation.Local<Vector<MemLayout>>(Vector::new);
+
+    /**
+     * Returns the layout of a type. The layout is computed only once for all
+     * structurally equivalent types.
+     *
+     * @param type The type.
+     * @return The layout of the type.
+     */
+    public static MemLayout getTypeLayout(SemType type) {
+        final SemTypeInterner interner = SemTypeInterner.current();
+        final int canon = interner.canon(type);
+        if (canon < 0)
+            throw new InternalError("Memory calculation error: Cannot calculate layout of an undefined type! Check MemE");
+        final Vector<MemLayout> layouts = MemEvaluator.layouts.get();
+        if (canon < layouts.size() && layouts.get(canon) != null)
+            return layouts.get(canon);
+        final MemLayout layout = computeTypeLayout(interner.rep(canon));
+        synchronized (layouts) { // Layouts can be computed in parallel (see ImcGenerator).
+            if (canon >= layouts.size())
+                layouts.setSize(canon + 1);
+            layouts.set(canon, layout);
+        }
+        return layout;
+    }
 
     public static long getTypeSize(SemType type) {
-        type = type.actualType();
-        if (type instanceof SemVoidType) return 0;
-        else if (type instanceof SemCharType) return 8;
-        else if (type instanceof SemBoolType) return 8;
-        else if (type instanceof SemPointerType) return 8;
-        else if (type instanceof SemIntType) return 8;
+        return getTypeLayout(type).size;
+    }
+
+    /**
+     * Releases the layouts of types (within the current compilation) once no phase
+     * needs them any more.
+     */
+    static void release() {
+        layouts.release();
+    }
+
+    private static MemLayout computeTypeLayout(SemType type) {
+        if (type instanceof SemVoidType) return new MemLayout(0);
+        else if (type instanceof SemCharType) return new MemLayout(8);
+        else if (type instanceof SemBoolType) return new MemLayout(8);
+        else if (type instanceof SemPointerType) return new MemLayout(8);
+        else if (type instanceof SemIntType) return new MemLayout(8);
         else if (type instanceof SemArrayType) {
             SemArrayType array = (SemArrayType) type;
             long size = getTypeSize(array.elemType);
             if (size % 8 != 0) size += 8 - (size % 8);
-            return size * array.size;
+            return new MemLayout(size * array.size);
         }
         else if (type instanceof SemStructType) {
             SemStructType struct = (SemStructType) type;
+            long[] offsets = new long[struct.cmpTypes.size()];
             long size = 0;
-            for (SemType subType : struct.cmpTypes) {
-                size += getTypeSize(subType);
+            for (int c = 0; c < offsets.length; c++) {
+                offsets[c] = size;
+                size += getTypeSize(struct.cmpTypes.get(c));
                 if (size % 8 != 0) size += 8 - (size % 8);
             }
-            return size;
+            return new MemLayout(size, offsets);
         }
         else if (type instanceof SemUnionType) {
             SemUnionType union = (SemUnionType) type;
+            long[] offsets = new long[union.cmpTypes.size()];
             long size = 0;
             for (SemType subType : union.cmpTypes) {
                 long newSize = getTypeSize(subType);
                 if (newSize > size) size = newSize;
             }
-            return size;
+            return new MemLayout(size, offsets);
         }
         else {
             System.out.println(type);
@@ -69,14 +129,9 @@ public class MemEvaluator implements AstFullVisitor<Object, Object> {
     @Override
 	public Object visit(AstNodes<? extends AstNode> nodes, Object arg) {
         if (nodes.get(0) instanceof AstCmpDefn) {
-            long offset = 0;
-            for (final AstNode node : nodes) {
-                long size = (long) node.accept(this, offset);
-                if (arg.equals("struct")) {
-                    offset += size;
-                    if (offset % 8 != 0) offset += 8 - (offset % 8);
-                }
-            }
+            MemLayout layout = (MemLayout) arg;
+            for (int c = 0; c < nodes.size(); c++)
+                nodes.get(c).accept(this, layout.offset(c));
             return null;
         }
         else if (nodes.get(0) instanceof AstParDefn) {
@@ -109,13 +164,13 @@ public class MemEvaluator implements AstFullVisitor<Object, Object> {
 
     @Override
 	public Object visit(AstStrType strType, Object arg) {
-		strType.cmps.accept(this, "struct");
+		strType.cmps.accept(this, getTypeLayout(SemAn.isType.get(strType)));
 		return null;
 	}
 
 	@Override
 	public Object visit(AstUniType uniType, Object arg) {
-		uniType.cmps.accept(this, "union");
+		uniType.cmps.accept(this, getTypeLayout(SemAn.isType.get(uniType)));
 		return null;
 	}
 
@@ -183,6 +238,11 @@ public class MemEvaluator implements AstFullVisitor<Object, Object> {
         MemAccess mem = null;
         if (depth == -1)
             mem = new MemAbsAccess(mySize, new MemLabel(varDefn.name));
+        else if (tempVars.contains(varDefn)) { // No place in the frame needed
+            Memory.varAccesses.put(varDefn, new MemTempAccess(mySize, new MemTemp()));
+            varDefn.type.accept(this, arg);
+            return (long) 0;
+        }
         else {
             long myOffset = (long) arg;
             myOffset += mySize;
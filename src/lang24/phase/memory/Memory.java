@@ -36,4 +36,17 @@ public class Memory extends Phase {
 		super("memory");
 	}
 
+	/**
+	 * Releases all attributes of this phase, together with the layouts of types,
+	 * once no phase needs them any more.
+	 */
+	public static void release() {
+		frames.release();
+		varAccesses.release();
+		parAccesses.release();
+		cmpAccesses.release();
+		strings.release();
+		MemEvaluator.release();
+	}
+
 }
\ No newline at end of file
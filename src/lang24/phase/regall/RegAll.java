@@ -2,6 +2,7 @@ package lang24.phase.regall;
 
 import java.util.*;
 
+import lang24.*;
 import lang24.data.mem.*;
 import lang24.data.asm.*;
 import lang24.phase.*;
@@ -15,9 +16,16 @@ import lang24.phase.livean.LivenessAnalyzer;
 public class RegAll extends Phase {
 
 	/** Mapping of temporary variables to registers. */
-	public static final HashMap<MemTemp, Integer> tempToReg = new HashMap<MemTemp, Integer>();
+	public static final Compilation.Local<HashMap<MemTemp, Integer>> tempToReg = new Compilation.Local<HashMap<MemTemp, Integer>>(
+			HashMap::new);
 	private int numRegs;
 
+	/** The number of interference edges added during allocation. */
+	private long numEdges;
+
+	/** The number of allocation rounds that ended with spilling. */
+	private int numSpillRounds;
+
 	public RegAll(int numRegs) {
 		super("regall");
 		this.numRegs = numRegs;
@@ -29,15 +37,25 @@ public class RegAll extends Phase {
 		RegisterAllocator allocator = new RegisterAllocator(this.numRegs);
 
 		allocator.main();
+		numEdges = allocator.numEdges();
+		numSpillRounds = allocator.numSpillRounds();
 	
 		for (MemTemp tmp : allocator.getColors().keySet()) {
-			tempToReg.put(tmp, allocator.getColors().get(tmp));
+			tempToReg.get().put(tmp, allocator.getColors().get(tmp));
 		}
 		removeRedundantMoves();
 	}
 
+	public long numEdges() {
+		return numEdges;
+	}
+
+	public int numSpillRounds() {
+		return numSpillRounds;
+	}
+
 	private void changePUSHJ() {
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			for (AsmInstr instr : code.instrs) {
 				AsmOPER operInstr = (AsmOPER) instr;
 				operInstr.setInstr(operInstr.instr().replace("PUSHJ $8", "PUSHJ $" + numRegs));
@@ -46,10 +64,10 @@ public class RegAll extends Phase {
 	}
 
 	private void removeRedundantMoves() {
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			for (int i = 0; i < code.instrs.size(); i++) {
 				AsmOPER asm = (AsmOPER) code.instrs.get(i);
-				if (asm instanceof AsmMOVE && tempToReg.get(asm.uses().toArray()[0]) == tempToReg.get(asm.defs().toArray()[0])) {
+				if (asm instanceof AsmMOVE && tempToReg.get().get(asm.uses().toArray()[0]) == tempToReg.get().get(asm.defs().toArray()[0])) {
 					code.instrs.remove(i);
 					i -= 1;
 				}
@@ -60,7 +78,7 @@ public class RegAll extends Phase {
 	public void log() {
 		if (logger == null)
 			return;
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			logger.begElement("code");
 			logger.addAttribute("body", code.entryLabel.name);
 			logger.addAttribute("epilogue", code.exitLabel.name);
@@ -69,7 +87,7 @@ public class RegAll extends Phase {
 			logger.begElement("instructions");
 			for (AsmInstr instr : code.instrs) {
 				logger.begElement("instruction");
-				logger.addAttribute("code", instr.toString(tempToReg));
+				logger.addAttribute("code", instr.toString(tempToReg.get()));
 				logger.begElement("temps");
 				logger.addAttribute("name", "use");
 				for (MemTemp temp : instr.uses()) {
@@ -2,6 +2,7 @@ package lang24.phase.regall;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -56,6 +57,19 @@ public class RegisterAllocator {
 
 	int i = 0;
 
+	/** The number of interference edges added over all rounds. */
+	private long numEdges = 0;
+
+	/** Returns the number of interference edges added over all rounds. */
+	public long numEdges() {
+		return numEdges;
+	}
+
+	/** Returns the number of rounds that ended with spilling. */
+	public int numSpillRounds() {
+		return i;
+	}
+
     public void main() {
 		init();
 		build();
@@ -125,11 +139,11 @@ public class RegisterAllocator {
 		coloredNodes = new HashSet<>();
 		selectStack = new Stack<>();
 	
-		coalescedMoves = new HashSet<>();
-		constrainedMoves = new HashSet<>();
-		frozenMoves = new HashSet<>();
-		worklistMoves = new HashSet<>();
-		activeMoves = new HashSet<>();
+		coalescedMoves = new LinkedHashSet<>();
+		constrainedMoves = new LinkedHashSet<>();
+		frozenMoves = new LinkedHashSet<>();
+		worklistMoves = new LinkedHashSet<>();
+		activeMoves = new LinkedHashSet<>();
 		
 		adjList = new HashMap<>();
 		degree = new HashMap<>();
@@ -139,7 +153,7 @@ public class RegisterAllocator {
 
 		heuristic = new HashMap<>();
 
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			for (AsmInstr instr : code.instrs) {
 				AsmOPER asm = (AsmOPER) instr;
 				initial.addAll(asm.in());
@@ -151,11 +165,11 @@ public class RegisterAllocator {
 		for (MemTemp temp : initial) {
 			adjList.put(temp, new HashSet<>());
 			degree.put(temp, 0);
-			moveList.put(temp, new HashSet<>());
+			moveList.put(temp, new LinkedHashSet<>());
 			heuristic.put(temp, 0);
 		}
 
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			for (AsmInstr instr : code.instrs) {
 				AsmOPER asm = (AsmOPER) instr;
 				for (MemTemp i : asm.in()) {
@@ -171,7 +185,7 @@ public class RegisterAllocator {
 
 	// In the book
 	private void build() {
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			for (int index = code.instrs.size() - 1; index >= 0 ; index--) {
 				AsmOPER asm = (AsmOPER) code.instrs.get(index);
 
@@ -205,6 +219,7 @@ public class RegisterAllocator {
 			degree.put(src, degree.get(src) + 1);
 			adjList.get(dst).add(src);
 			degree.put(dst, degree.get(dst) + 1);
+			numEdges++;
 		}
 	}
 
@@ -226,7 +241,7 @@ public class RegisterAllocator {
 	}
 
 	private HashSet<AsmOPER> nodeMoves(MemTemp temp) {
-		HashSet<AsmOPER> result = new HashSet<>();
+		HashSet<AsmOPER> result = new LinkedHashSet<>();
 		result.addAll(activeMoves);
 		result.addAll(worklistMoves);
 		result.retainAll(moveList.get(temp));
@@ -447,7 +462,7 @@ public class RegisterAllocator {
 		HashMap<MemTemp, Long> offsets = new HashMap<>();
 
 		// Do this for each block
-		for (Code code : AsmGen.codes) {
+		for (Code code : AsmGen.codes.get()) {
 			Vector<AsmInstr> newInstrs = new Vector<>();
 			// Go over all instructions
 			for (AsmInstr instr : code.instrs) {
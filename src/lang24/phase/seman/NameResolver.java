@@ -7,7 +7,6 @@ import lang24.data.ast.tree.*;
 import lang24.data.ast.tree.defn.*;
 import lang24.data.ast.tree.expr.*;
 import lang24.data.ast.tree.type.*;
-import lang24.data.ast.visitor.*;
 
 /**
  * Name resolver.
@@ -17,8 +16,11 @@ import lang24.data.ast.visitor.*;
  * union component names which are connected with their definitions by type
  * resolver. The results of the name resolver are stored in
  * {@link lang24.phase.seman.SemAn#definedAt}.
+ * 
+ * As whether an expression is an lvalue depends on the syntax only, lvalues are
+ * resolved (see {@link LValResolver}) within the same traversal of the tree.
  */
-public class NameResolver implements AstFullVisitor<Object, Object> {
+public class NameResolver extends LValResolver {
 
 	/** Constructs a new name resolver. */
 	public NameResolver() {
@@ -64,42 +66,46 @@ public class NameResolver implements AstFullVisitor<Object, Object> {
 		return null;
 	}
 
-	private void insertHandled(AstDefn node, String err) {
+	// The error messages are only composed if needed to keep name resolution free
+	// of allocation.
+
+	private void insertHandled(AstDefn node, String kind) {
 		try {
 			this.symbTable.ins(node.name, node);
 		} catch (Exception e) {
-			throw new Report.Error(node.location(), err);
+			throw new Report.Error(node.location(),
+					"Semantic error: " + kind + " name '" + node.name + "' already defined!");
 		}
 	}
 
-	private AstDefn findHandled(String name, Location loc, String err) {
+	private AstDefn findHandled(String name, Locatable loc, String kind) {
 		AstDefn def = null;
 		try {
 			def = symbTable.fnd(name);
 		} catch (Exception e) {
-			throw new Report.Error(loc, err);
+			throw new Report.Error(loc, "Semantic error: " + kind + " name '" + name + "' not found!");
 		}
 		return def;
 	}
 
 	@Override
 	public Object visit(AstVarDefn var, Object __) {
-		this.insertHandled(var, "Semantic error: Variable name '" + var.name + "' already defined!");
+		this.insertHandled(var, "Variable");
 		var.type.accept(this, __);
 		return null;
 	}
 
 	@Override
 	public Object visit(AstNameExpr name, Object __) {
-		AstDefn def = findHandled(name.name, name.location(), "Semantic error: Variable name '" + name.name + "' not found!");
+		AstDefn def = findHandled(name.name, name, "Variable");
 		SemAn.definedAt.put(name, def);
-		return null;
+		return super.visit(name, __);
 	}
 
 	@Override
 	public Object visit(AstTypDefn type, Object pass) {
 		if (pass != Pass.SECOND_TYPE) {
-			this.insertHandled(type, "Semantic error: Type name '" + type.name + "' already defined!");
+			this.insertHandled(type, "Type");
 		}
 		type.type.accept(this, pass);
 		return null;
@@ -109,7 +115,7 @@ public class NameResolver implements AstFullVisitor<Object, Object> {
 	public Object visit(AstNameType name, Object pass) {
 		if (pass == Pass.FIRST_TYPE) return null;
 		else {
-			AstDefn def = findHandled(name.name, name.location(), "Semantic error: Type name '" + name.name + "' not found!");
+			AstDefn def = findHandled(name.name, name, "Type");
 			SemAn.definedAt.put(name, def);
 		}
 		return null;
@@ -118,7 +124,7 @@ public class NameResolver implements AstFullVisitor<Object, Object> {
 	@Override
 	public Object visit(AstFunDefn func, Object pass) {
 		if (pass == Pass.FIRST_FUNC) {
-			this.insertHandled(func, "Semantic error: Function name '" + func.name + "' already defined!");
+			this.insertHandled(func, "Function");
 			if (func.pars != null)
 				func.pars.accept(this, pass);
 			func.type.accept(this, pass);
@@ -138,17 +144,16 @@ public class NameResolver implements AstFullVisitor<Object, Object> {
 		return null;
 	}
 
+	@Override
 	public Object visit(AstCallExpr call, Object pass) {
-		AstDefn found = findHandled(call.name, call.location(), "Semantic error: Function name '" + call.name + "' not found!");
+		AstDefn found = findHandled(call.name, call, "Function");
 		SemAn.definedAt.put(call, found);
-		if (call.args != null)
-			call.args.accept(this, pass);
-		return null;
+		return super.visit(call, pass);
 	}
 
 	private void doParams(AstFunDefn.AstParDefn param, Object pass) {
 		if (pass == Pass.SECOND_FUNC) {
-			this.insertHandled(param, "Semantic error: Parameter name '" + param.name + "' already defined!");
+			this.insertHandled(param, "Parameter");
 		}
 		param.type.accept(this, pass);
 	}
@@ -19,7 +19,7 @@ public class SemAn extends Phase {
 	/**
 	 * Attribute specifying whether someting is an lvalue or not (where applicable).
 	 */
-	public static final Attribute<AstNode, Boolean> isLVal = new Attribute<AstNode, Boolean>();
+	public static final BooleanAttribute<AstNode> isLVal = new BooleanAttribute<AstNode>();
 
 	/**
 	 * Attribute specifying what type is defined by a particular language construct
@@ -40,4 +40,17 @@ public class SemAn extends Phase {
 		super("seman");
 	}
 
+	/**
+	 * Releases all attributes of this phase, together with the representatives of
+	 * types and their equivalences, once no phase needs them any more.
+	 */
+	public static void release() {
+		definedAt.release();
+		isLVal.release();
+		isType.release();
+		ofType.release();
+		TypeResolver.release();
+		SemTypeInterner.release();
+	}
+
 }
\ No newline at end of file
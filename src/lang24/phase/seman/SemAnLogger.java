@@ -65,12 +65,9 @@ public class SemAnLogger implements AstNullVisitor<Object, Object>, SemVisitor<O
 				logger.endElement();
 			}
 		}
-		{
-			final Boolean lval = SemAn.isLVal.get(node);
-			if ((lval != null) && (lval == true)) {
-				logger.begElement("lvalue");
-				logger.endElement();
-			}
+		if (SemAn.isLVal.get(node)) {
+			logger.begElement("lvalue");
+			logger.endElement();
 		}
 	}
 
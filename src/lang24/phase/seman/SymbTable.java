@@ -3,53 +3,54 @@ package lang24.phase.seman;
 import java.util.*;
 import lang24.common.report.*;
 import lang24.data.ast.tree.defn.*;
+import lang24.data.token.*;
 
 /**
  * A symbol table.
  * 
+ * Names are looked up by their symbols (see {@link Symbols}) in primitive arrays
+ * and the definitions are recorded in a log that is undone as scopes are
+ * destroyed, so neither inserting nor finding a name allocates any memory (once
+ * the arrays are large enough).
+ * 
  * @author bostjan.slivnik@fri.uni-lj.si
  */
 public class SymbTable {
 
+	/** The symbols of the current compilation. */
+	private final Symbols allSymbols = Symbols.current();
+
 	/**
-	 * A symbol table record denoting a definition of a name within a certain scope.
+	 * The innermost definition of each symbol (see {@link Symbols}) as the index
+	 * of its record, or -1 if the symbol is not defined within any active scope.
+	 */
+	private int[] innermost;
+
+	/*
+	 * The records of definitions within all active scopes in the order of their
+	 * insertion, which also serves as the log for undoing insertions when a scope
+	 * is destroyed. Each record consists of the symbol, the depth of the scope, the
+	 * definition, and the record of the definition of the same symbol it hides (or
+	 * -1 if none).
 	 */
-	private class ScopedDefn {
 
-		/** The depth of the scope the definition belongs to. */
-		public final int depth;
+	/** The symbols of records. */
+	private int[] symbols;
 
-		/** The definition. */
-		public final AstDefn defn;
+	/** The depths of the scopes of records. */
+	private int[] depths;
 
-		/**
-		 * Constructs a new record denoting a definition of a name within a certain
-		 * scope.
-		 * 
-		 * @param depth The depth of the scope the definition belongs to.
-		 * @param defn  The definition.
-		 */
-		public ScopedDefn(int depth, AstDefn defn) {
-			this.depth = depth;
-			this.defn = defn;
-		}
+	/** The definitions of records. */
+	private AstDefn[] defns;
 
-	}
+	/** The records hidden by records (or -1). */
+	private int[] hidden;
 
-	/**
-	 * A mapping of names into lists of records denoting definitions at different
-	 * scopes. At each moment during the lifetime of a symbol table, the definition
-	 * list corresponding to a particular name contains all definitions that name
-	 * within currently active scopes: the definition at the inner most scope is the
-	 * first in the list and is visible, the other definitions are hidden.
-	 */
-	private final HashMap<String, LinkedList<ScopedDefn>> allDefnsOfAllNames;
+	/** The number of records. */
+	private int numRecords;
 
-	/**
-	 * The list of scopes. Each scope is represented by a list of names defined
-	 * within it.
-	 */
-	private final LinkedList<LinkedList<String>> scopes;
+	/** The number of records at the moment each active scope was constructed. */
+	private int[] scopeStarts;
 
 	/** The depth of the currently active scope. */
 	private int currDepth;
@@ -61,8 +62,14 @@ public class SymbTable {
 	 * Constructs a new symbol table.
 	 */
 	public SymbTable() {
-		allDefnsOfAllNames = new HashMap<String, LinkedList<ScopedDefn>>();
-		scopes = new LinkedList<LinkedList<String>>();
+		innermost = new int[Math.max(64, allSymbols.size())];
+		Arrays.fill(innermost, -1);
+		symbols = new int[64];
+		depths = new int[64];
+		defns = new AstDefn[64];
+		hidden = new int[64];
+		numRecords = 0;
+		scopeStarts = new int[16];
 		currDepth = 0;
 		lock = false;
 		newScope();
@@ -92,20 +99,28 @@ public class SymbTable {
 		if (lock)
 			throw new Report.InternalError();
 
-		LinkedList<ScopedDefn> allDefnsOfName = allDefnsOfAllNames.get(name);
-		if (allDefnsOfName == null) {
-			allDefnsOfName = new LinkedList<ScopedDefn>();
-			allDefnsOfAllNames.put(name, allDefnsOfName);
+		final int symbol = allSymbols.intern(name);
+		if (symbol >= innermost.length) {
+			final int length = innermost.length;
+			innermost = Arrays.copyOf(innermost, Math.max(2 * length, symbol + 1));
+			Arrays.fill(innermost, length, innermost.length, -1);
 		}
 
-		if (!allDefnsOfName.isEmpty()) {
-			ScopedDefn defnOfName = allDefnsOfName.getFirst();
-			if (defnOfName.depth == currDepth)
-				throw new CannotInsNameException();
-		}
+		final int record = innermost[symbol];
+		if (record >= 0 && depths[record] == currDepth)
+			throw new CannotInsNameException();
 
-		allDefnsOfName.addFirst(new ScopedDefn(currDepth, defn));
-		scopes.getFirst().addFirst(name);
+		if (numRecords == symbols.length) {
+			symbols = Arrays.copyOf(symbols, 2 * numRecords);
+			depths = Arrays.copyOf(depths, 2 * numRecords);
+			defns = Arrays.copyOf(defns, 2 * numRecords);
+			hidden = Arrays.copyOf(hidden, 2 * numRecords);
+		}
+		symbols[numRecords] = symbol;
+		depths[numRecords] = currDepth;
+		defns[numRecords] = defn;
+		hidden[numRecords] = record;
+		innermost[symbol] = numRecords++;
 	}
 
 	/**
@@ -119,14 +134,11 @@ public class SymbTable {
 	 *                                it.
 	 */
 	public AstDefn fnd(String name) throws CannotFndNameException {
-		LinkedList<ScopedDefn> allDefnsOfName = allDefnsOfAllNames.get(name);
-		if (allDefnsOfName == null)
-			throw new CannotFndNameException();
-
-		if (allDefnsOfName.isEmpty())
+		final int symbol = allSymbols.id(name);
+		if (symbol < 0 || symbol >= innermost.length || innermost[symbol] < 0)
 			throw new CannotFndNameException();
 
-		return allDefnsOfName.getFirst().defn;
+		return defns[innermost[symbol]];
 	}
 
 	/** Used for selecting the range of scopes. */
@@ -146,7 +158,9 @@ public class SymbTable {
 			throw new Report.InternalError();
 
 		currDepth++;
-		scopes.addFirst(new LinkedList<String>());
+		if (currDepth == scopeStarts.length)
+			scopeStarts = Arrays.copyOf(scopeStarts, 2 * currDepth);
+		scopeStarts[currDepth] = numRecords;
 	}
 
 	/**
@@ -161,10 +175,11 @@ public class SymbTable {
 		if (currDepth == 0)
 			throw new Report.InternalError();
 
-		for (String name : scopes.getFirst()) {
-			allDefnsOfAllNames.get(name).removeFirst();
+		while (numRecords > scopeStarts[currDepth]) {
+			numRecords--;
+			innermost[symbols[numRecords]] = hidden[numRecords];
+			defns[numRecords] = null;
 		}
-		scopes.removeFirst();
 		currDepth--;
 	}
 
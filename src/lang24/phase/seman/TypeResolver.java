@@ -1,6 +1,8 @@
 package lang24.phase.seman;
 
 import java.util.*;
+import java.util.concurrent.*;
+import lang24.*;
 import lang24.common.report.*;
 import lang24.data.ast.tree.*;
 import lang24.data.ast.tree.defn.*;
@@ -10,22 +12,62 @@ import lang24.data.ast.tree.type.*;
 import lang24.data.ast.tree.type.AstRecType.AstCmpDefn;
 import lang24.data.ast.visitor.*;
 import lang24.data.type.*;
+import lang24.phase.*;
 
 /**
  * @author bostjan.slivnik@fri.uni-lj.si
  */
 public class TypeResolver implements AstFullVisitor<SemType, Object> {
 
+	/**
+	 * The structural equivalence of pairs of canonical types that are not the
+	 * same but one of them contains a pointer to void (indexed by pairs of
+	 * canonical ids).
+	 */
+	private static final Compilation.Local<ConcurrentHashMap<Long, Boolean>> equivs = new Compilation.Local<ConcurrentHashMap<Long, Boolean>>(
+			ConcurrentHashMap::new);
+
 	/**
 	 * Structural equivalence of types.
 	 * 
+	 * Types with the same canonical id (see {@link SemTypeInterner}) are
+	 * equivalent. Types with different canonical ids can only be equivalent if a
+	 * pointer to void is reachable from one of them; such pairs are compared
+	 * structurally once and the result is memoized.
+	 * 
 	 * @param type1 The first type.
 	 * @param type2 The second type.
 	 * @return {@code true} if the types are structurally equivalent, {@code false}
 	 *         otherwise.
 	 */
 	public static boolean equiv(SemType type1, SemType type2) {
-		return equiv(type1, type2, new HashMap<SemType, HashSet<SemType>>());
+		if (type1 == type2)
+			return true;
+		final SemTypeInterner interner = SemTypeInterner.current();
+		final int canon1 = interner.canon(type1);
+		final int canon2 = interner.canon(type2);
+		if (canon1 < 0 || canon2 < 0) // Types not completely defined yet.
+			return equiv(type1, type2, new HashMap<SemType, HashSet<SemType>>());
+		if (canon1 == canon2)
+			return true;
+		if (!interner.reachesVoidPointer(canon1) && !interner.reachesVoidPointer(canon2))
+			return false;
+		final long pair = canon1 < canon2 ? ((long) canon1 << 32) | canon2 : ((long) canon2 << 32) | canon1;
+		final ConcurrentHashMap<Long, Boolean> equivs = TypeResolver.equivs.get();
+		Boolean equiv = equivs.get(pair);
+		if (equiv == null) {
+			equiv = equiv(interner.rep(canon1), interner.rep(canon2), new HashMap<SemType, HashSet<SemType>>());
+			equivs.put(pair, equiv);
+		}
+		return equiv;
+	}
+
+	/**
+	 * Releases the memoized structural equivalences of types (within the current
+	 * compilation) once no phase compares types any more.
+	 */
+	static void release() {
+		equivs.release();
 	}
 
 	/**
@@ -134,11 +176,43 @@ public class TypeResolver implements AstFullVisitor<SemType, Object> {
 		}
 	}
 
-	HashMap<SemType, AstNodes<AstRecType.AstCmpDefn>> recordsToComponents = new HashMap<>();
+	ConcurrentHashMap<SemType, AstNodes<AstRecType.AstCmpDefn>> recordsToComponents = new ConcurrentHashMap<>();
 	Stack<AstNode> definitionCycleStack = new Stack<>();
 	Stack<SemType> functionReturnTypes = new Stack<>();
 	ArrayList<UncheckedVoidPair> uncheckedVoidPairs = new ArrayList<>();
 
+	/**
+	 * The pool of threads the bodies of top-level functions are resolved by (or
+	 * {@code null} if they are resolved one after another).
+	 */
+	private ForkJoinPool pool = null;
+
+	/**
+	 * Constructs a new type resolver.
+	 */
+	public TypeResolver() {
+	}
+
+	/**
+	 * Constructs a new type resolver that resolves the bodies of top-level
+	 * functions in parallel (see {@link FunctionTasks}).
+	 * 
+	 * @param pool The pool of threads (or {@code null} if the bodies of
+	 *             functions are resolved one after another).
+	 */
+	public TypeResolver(final ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Constructs a new type resolver of the body of a single top-level function.
+	 * 
+	 * @param recordsToComponents The components of record types resolved so far.
+	 */
+	private TypeResolver(final ConcurrentHashMap<SemType, AstNodes<AstRecType.AstCmpDefn>> recordsToComponents) {
+		this.recordsToComponents = recordsToComponents;
+	}
+
 	private boolean testTypeArrayInclusion(SemType myType, SemType[] types) {
 		boolean isOfType = false;
 		for (SemType type : types) {
@@ -150,6 +224,9 @@ public class TypeResolver implements AstFullVisitor<SemType, Object> {
 
 	@Override
 	public SemType visit(AstNodes<? extends AstNode> nodes, Object arg) {
+		// Only the functions of the outermost sequence of definitions are resolved in parallel.
+		final ForkJoinPool pool = this.pool;
+		this.pool = null;
 
 		for (int i = 0; i < 4; i++) {
 			if (i == 1) { // Check if any void type was used as struct/union component or array. 
@@ -162,6 +239,18 @@ public class TypeResolver implements AstFullVisitor<SemType, Object> {
 				} 
 				this.uncheckedVoidPairs.clear();
 			}
+			if (i == 2 && pool != null) {
+				// Signatures first as calls may refer to functions defined later.
+				final Vector<AstFunDefn> funDefns = new Vector<AstFunDefn>();
+				for (final AstNode node : nodes)
+					if (node instanceof AstFunDefn funDefn) {
+						resolveSignature(funDefn, null);
+						funDefns.add(funDefn);
+					}
+				FunctionTasks.run(pool, funDefns, false,
+						funDefn -> new TypeResolver(recordsToComponents).resolveBody(funDefn, null));
+				continue;
+			}
 			for (final AstNode node : nodes) {
 				switch (i) {
 					case 0:
@@ -365,36 +454,46 @@ public class TypeResolver implements AstFullVisitor<SemType, Object> {
 	@Override
 	public SemType visit(AstFunDefn funDefn, Object arg) {
 		if (SemAn.ofType.get(funDefn) == null) {
-			SemType myType = funDefn.type.accept(this, arg);
-			SemType[] allowedReturnTypes = new SemType[] {SemVoidType.type, SemIntType.type, SemCharType.type, SemBoolType.type, SemPointerType.type};
-			if (!testTypeArrayInclusion(myType, allowedReturnTypes))
-				throw new Report.Error(funDefn.type.location(), "Semantic error: Bad function return type. Use: 'void', 'int', 'char', 'bool' or pointers!");
-			SemAn.ofType.put(funDefn, myType);
-
-			if (funDefn.pars != null) {
-				funDefn.pars.accept(this, arg);
-				SemType[] allowedParamTypes = new SemType[] {SemIntType.type, SemCharType.type, SemBoolType.type, SemPointerType.type};
-				for (AstDefn param : funDefn.pars) {
-					if (!testTypeArrayInclusion(SemAn.isType.get(param.type), allowedParamTypes))
-						throw new Report.Error(param.location(), "Semantic error: Functions cannot have parameter types: 'void', 'array', 'strict', 'union'! Use pointers instead!");
-				}
-			}
-			if (funDefn.defns != null)
-				funDefn.defns.accept(this, arg);
-			functionReturnTypes.push(myType);
-			if (funDefn.stmt != null)
-				funDefn.stmt.accept(this, arg);
-			functionReturnTypes.pop();
-
-			if (funDefn.stmt == null || equiv(SemAn.ofType.get(funDefn.stmt), SemVoidType.type)) {
-				return myType;
-			} else 
-				throw new Report.Error(funDefn.location(), "Semantic error: Illegal function definition!");
+			resolveSignature(funDefn, arg);
+			return resolveBody(funDefn, arg);
 		} else {
 			return SemAn.ofType.get(funDefn);
 		}
 	}
 
+	private SemType resolveSignature(AstFunDefn funDefn, Object arg) {
+		SemType myType = funDefn.type.accept(this, arg);
+		SemType[] allowedReturnTypes = new SemType[] {SemVoidType.type, SemIntType.type, SemCharType.type, SemBoolType.type, SemPointerType.type};
+		if (!testTypeArrayInclusion(myType, allowedReturnTypes))
+			throw new Report.Error(funDefn.type.location(), "Semantic error: Bad function return type. Use: 'void', 'int', 'char', 'bool' or pointers!");
+		SemAn.ofType.put(funDefn, myType);
+
+		if (funDefn.pars != null) {
+			funDefn.pars.accept(this, arg);
+			SemType[] allowedParamTypes = new SemType[] {SemIntType.type, SemCharType.type, SemBoolType.type, SemPointerType.type};
+			for (AstDefn param : funDefn.pars) {
+				if (!testTypeArrayInclusion(SemAn.isType.get(param.type), allowedParamTypes))
+					throw new Report.Error(param.location(), "Semantic error: Functions cannot have parameter types: 'void', 'array', 'strict', 'union'! Use pointers instead!");
+			}
+		}
+		return myType;
+	}
+
+	private SemType resolveBody(AstFunDefn funDefn, Object arg) {
+		SemType myType = SemAn.ofType.get(funDefn);
+		if (funDefn.defns != null)
+			funDefn.defns.accept(this, arg);
+		functionReturnTypes.push(myType);
+		if (funDefn.stmt != null)
+			funDefn.stmt.accept(this, arg);
+		functionReturnTypes.pop();
+
+		if (funDefn.stmt == null || equiv(SemAn.ofType.get(funDefn.stmt), SemVoidType.type)) {
+			return myType;
+		} else 
+			throw new Report.Error(funDefn.location(), "Semantic error: Illegal function definition!");
+	}
+
 	// EXPRESSIONS
 
 	@Override
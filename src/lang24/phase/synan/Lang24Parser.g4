@@ -18,11 +18,12 @@ parser grammar Lang24Parser;
 
 @members {
 
-	private Location loc(Token tok) { return new Location((LocLogToken)tok); }
-	private Location loc(Token     tok1, Token     tok2) { return new Location((LocLogToken)tok1, (LocLogToken)tok2); }
-	private Location loc(Token     tok1, Locatable loc2) { return new Location((LocLogToken)tok1, loc2); }
-	private Location loc(Locatable loc1, Token     tok2) { return new Location(loc1, (LocLogToken)tok2); }
-	private Location loc(Locatable loc1, Locatable loc2) { return new Location(loc1, loc2); }
+	// Locations are combined in their packed form (see Location.pack).
+	private Location loc(Token tok) { return Location.unpack(((LocLogToken)tok).packedLocation()); }
+	private Location loc(Token     tok1, Token     tok2) { return Location.unpack(Location.pack((LocLogToken)tok1, (LocLogToken)tok2)); }
+	private Location loc(Token     tok1, Locatable loc2) { return Location.unpack(Location.pack((LocLogToken)tok1, loc2)); }
+	private Location loc(Locatable loc1, Token     tok2) { return Location.unpack(Location.pack(loc1, (LocLogToken)tok2)); }
+	private Location loc(Locatable loc1, Locatable loc2) { return Location.unpack(Location.pack(loc1, loc2)); }
 
 }
 
@@ -39,8 +40,7 @@ source returns [AstNode ast] : definitions EOF {$ast = new AstNodes<AstDefn>($de
 
 definitions returns [List list]
 	@init {$list = new ArrayList<AstDefn>();}
-	: definition {$list.add($definition.ast);}
-	| definition d=definitions {$list.add($definition.ast); $list.addAll($d.list);}
+	: (definition {$list.add($definition.ast);})+
 	; 
 	catch[Exception e] {
 		Token token = getCurrentToken();
@@ -61,7 +61,7 @@ definition returns [AstNode ast]
 
 
 type_definition returns [AstNode ast]
-	: IDENTIFIER ASSIGN type {$ast = new AstTypDefn(loc($IDENTIFIER, $type.ast.location()), $IDENTIFIER.text, $type.ast);}
+	: IDENTIFIER ASSIGN type {$ast = new AstTypDefn(loc($IDENTIFIER, $type.ast), $IDENTIFIER.text, $type.ast);}
 	;
 	catch[Exception e] {
 		Token token = getCurrentToken();
@@ -70,7 +70,7 @@ type_definition returns [AstNode ast]
 	}
 
 variable_definition returns [AstNode ast]
-	: IDENTIFIER COLON type {$ast = new AstVarDefn(loc($IDENTIFIER, $type.ast.location()), $IDENTIFIER.text, $type.ast);}
+	: IDENTIFIER COLON type {$ast = new AstVarDefn(loc($IDENTIFIER, $type.ast), $IDENTIFIER.text, $type.ast);}
 	;
 	catch[Exception e] {
 		Token token = getCurrentToken();
@@ -94,9 +94,9 @@ function_definition returns [AstNode ast]
 		if ($RIGHTBRACE != null) {
 			$ast = new AstFunDefn(loc($IDENTIFIER, $RIGHTBRACE), $IDENTIFIER.text, params, $type.ast, $statement.ast, defs);
 		} else if ($statement.ctx != null) {
-			$ast = new AstFunDefn(loc($IDENTIFIER, $statement.ast.location()), $IDENTIFIER.text, params, $type.ast, $statement.ast, defs);
+			$ast = new AstFunDefn(loc($IDENTIFIER, $statement.ast), $IDENTIFIER.text, params, $type.ast, $statement.ast, defs);
 		} else {
-			$ast = new AstFunDefn(loc($IDENTIFIER, $type.ast.location()), $IDENTIFIER.text, params, $type.ast, null, defs);
+			$ast = new AstFunDefn(loc($IDENTIFIER, $type.ast), $IDENTIFIER.text, params, $type.ast, null, defs);
 		}
 	}
 	;
@@ -118,8 +118,8 @@ parameters returns [List list]
 	}
 
 parameter returns [AstNode ast]
-	: CARET IDENTIFIER COLON type {$ast = new AstFunDefn.AstRefParDefn(loc($CARET, $type.ast.location()), $IDENTIFIER.text, $type.ast);}
-	| IDENTIFIER COLON type {$ast = new AstFunDefn.AstValParDefn(loc($IDENTIFIER, $type.ast.location()), $IDENTIFIER.text, $type.ast);}
+	: CARET IDENTIFIER COLON type {$ast = new AstFunDefn.AstRefParDefn(loc($CARET, $type.ast), $IDENTIFIER.text, $type.ast);}
+	| IDENTIFIER COLON type {$ast = new AstFunDefn.AstValParDefn(loc($IDENTIFIER, $type.ast), $IDENTIFIER.text, $type.ast);}
 	;
 	catch[Exception e] {
 		Token token = getCurrentToken();
@@ -128,16 +128,16 @@ parameter returns [AstNode ast]
 	}
 
 statement returns [AstStmt ast]
-	: expression SEMICOLON {$ast = new AstExprStmt(loc($expression.ast.location(), $SEMICOLON), $expression.ast);}
-	| e1=expression ASSIGN e2=expression SEMICOLON {$ast = new AstAssignStmt(loc($e1.ast.location(), $SEMICOLON), $e1.ast, $e2.ast);}
+	: expression SEMICOLON {$ast = new AstExprStmt(loc($expression.ast, $SEMICOLON), $expression.ast);}
+	| e1=expression ASSIGN e2=expression SEMICOLON {$ast = new AstAssignStmt(loc($e1.ast, $SEMICOLON), $e1.ast, $e2.ast);}
 	| IF expression THEN s1=statement (ELSE s2=statement)? {
 		if ($s2.ctx != null) {
-			$ast = new AstIfStmt(loc($IF, $s2.ast.location()), $expression.ast, $s1.ast, $s2.ast);
+			$ast = new AstIfStmt(loc($IF, $s2.ast), $expression.ast, $s1.ast, $s2.ast);
 		} else {
-			$ast = new AstIfStmt(loc($IF, $s1.ast.location()), $expression.ast, $s1.ast, null);
+			$ast = new AstIfStmt(loc($IF, $s1.ast), $expression.ast, $s1.ast, null);
 		}
 	}
-	| WHILE expression COLON s=statement {$ast = new AstWhileStmt(loc($WHILE, $s.ast.location()), $expression.ast, $s.ast);}
+	| WHILE expression COLON s=statement {$ast = new AstWhileStmt(loc($WHILE, $s.ast), $expression.ast, $s.ast);}
 	| RETURN expression SEMICOLON {$ast = new AstReturnStmt(loc($RETURN, $SEMICOLON), $expression.ast);}
 	| LEFTBRACE ss=statements RIGHTBRACE {$ast = new AstBlockStmt(loc($LEFTBRACE, $RIGHTBRACE), $ss.list);}
 	; 
@@ -149,8 +149,7 @@ statement returns [AstStmt ast]
 
 statements returns [List list]
 	@init {$list = new ArrayList<AstStmt>();}
-	: statement {$list.add($statement.ast);}
-	| statement s=statements {$list.add($statement.ast); $list.addAll($s.list);}
+	: (statement {$list.add($statement.ast);})+
 	;
 	catch[Exception e] {
 		Token token = getCurrentToken();
@@ -163,12 +162,12 @@ type returns [AstType ast]
 	| BOOL {$ast = new AstAtomType(loc($BOOL), AstAtomType.Type.BOOL);}
 	| CHAR {$ast = new AstAtomType(loc($CHAR), AstAtomType.Type.CHAR);}
 	| INT {$ast = new AstAtomType(loc($INT), AstAtomType.Type.INT);}
-	| LEFTBRACKET INTCONST RIGHTBRACKET t=type {$ast = new AstArrType(loc($LEFTBRACKET, $t.ast.location()), 
+	| LEFTBRACKET INTCONST RIGHTBRACKET t=type {$ast = new AstArrType(loc($LEFTBRACKET, $t.ast), 
 																	$t.ast, 
 																	new AstAtomExpr(loc($INTCONST),
 																					AstAtomExpr.Type.INT, 
 																					$INTCONST.text));}
-	| CARET t=type {$ast = new AstPtrType(loc($CARET, $t.ast.location()), $t.ast);}
+	| CARET t=type {$ast = new AstPtrType(loc($CARET, $t.ast), $t.ast);}
 	| LEFTPAREN components RIGHTPAREN {$ast = new AstStrType(loc($LEFTPAREN, $RIGHTPAREN), new AstNodes<AstRecType.AstCmpDefn>($components.list));}
 	| LEFTBRACE components RIGHTBRACE {$ast = new AstUniType(loc($LEFTBRACE, $RIGHTBRACE), new AstNodes<AstRecType.AstCmpDefn>($components.list));}
 	| IDENTIFIER {$ast = new AstNameType(loc($IDENTIFIER), $IDENTIFIER.text);}
@@ -190,7 +189,7 @@ components returns [List list]
 		throw new Report.Error(location, "Syntax error at '" + token.getText() + "': Check your type components!");
 	}
 component returns [AstNode ast]
-	: IDENTIFIER COLON type {$ast = new AstRecType.AstCmpDefn(loc($IDENTIFIER, $type.ast.location()), $IDENTIFIER.text, $type.ast);}
+	: IDENTIFIER COLON type {$ast = new AstRecType.AstCmpDefn(loc($IDENTIFIER, $type.ast), $IDENTIFIER.text, $type.ast);}
 	;
 	catch[Exception e] {
 		Token token = getCurrentToken();
@@ -200,7 +199,7 @@ component returns [AstNode ast]
 
 expression returns [AstExpr ast] 
 	: e=expression OR conjunctive {
-		$ast = new AstBinExpr(loc($e.ast.location(), $conjunctive.ast.location()), AstBinExpr.Oper.OR, $e.ast, $conjunctive.ast);
+		$ast = new AstBinExpr(loc($e.ast, $conjunctive.ast), AstBinExpr.Oper.OR, $e.ast, $conjunctive.ast);
 	}
 	| conjunctive {$ast = $conjunctive.ast;}
 	;
@@ -212,7 +211,7 @@ expression returns [AstExpr ast]
 
 conjunctive returns [AstExpr ast]
 	: c=conjunctive AND relational {
-		$ast = new AstBinExpr(loc($c.ast.location(), $relational.ast.location()), AstBinExpr.Oper.AND, $c.ast, $relational.ast);
+		$ast = new AstBinExpr(loc($c.ast, $relational.ast), AstBinExpr.Oper.AND, $c.ast, $relational.ast);
 	}
 	| relational {$ast = $relational.ast;}
 	;
@@ -223,12 +222,12 @@ conjunctive returns [AstExpr ast]
 	}
 
 relational returns [AstExpr ast]
-	: r=relational EQUAL additive {$ast = new AstBinExpr(loc($r.ast.location(), $additive.ast.location()), AstBinExpr.Oper.EQU, $r.ast, $additive.ast);}
-	| r=relational NOTEQUAL additive {$ast = new AstBinExpr(loc($r.ast.location(), $additive.ast.location()), AstBinExpr.Oper.NEQ, $r.ast, $additive.ast);}
-	| r=relational LESS additive {$ast = new AstBinExpr(loc($r.ast.location(), $additive.ast.location()), AstBinExpr.Oper.LTH, $r.ast, $additive.ast);} 
-	| r=relational GREATER additive {$ast = new AstBinExpr(loc($r.ast.location(), $additive.ast.location()), AstBinExpr.Oper.GTH, $r.ast, $additive.ast);}
-	| r=relational LESSEQUAL additive {$ast = new AstBinExpr(loc($r.ast.location(), $additive.ast.location()), AstBinExpr.Oper.LEQ, $r.ast, $additive.ast);}
-	| r=relational GREATEREQUAL additive {$ast = new AstBinExpr(loc($r.ast.location(), $additive.ast.location()), AstBinExpr.Oper.GEQ, $r.ast, $additive.ast);}
+	: r=relational EQUAL additive {$ast = new AstBinExpr(loc($r.ast, $additive.ast), AstBinExpr.Oper.EQU, $r.ast, $additive.ast);}
+	| r=relational NOTEQUAL additive {$ast = new AstBinExpr(loc($r.ast, $additive.ast), AstBinExpr.Oper.NEQ, $r.ast, $additive.ast);}
+	| r=relational LESS additive {$ast = new AstBinExpr(loc($r.ast, $additive.ast), AstBinExpr.Oper.LTH, $r.ast, $additive.ast);} 
+	| r=relational GREATER additive {$ast = new AstBinExpr(loc($r.ast, $additive.ast), AstBinExpr.Oper.GTH, $r.ast, $additive.ast);}
+	| r=relational LESSEQUAL additive {$ast = new AstBinExpr(loc($r.ast, $additive.ast), AstBinExpr.Oper.LEQ, $r.ast, $additive.ast);}
+	| r=relational GREATEREQUAL additive {$ast = new AstBinExpr(loc($r.ast, $additive.ast), AstBinExpr.Oper.GEQ, $r.ast, $additive.ast);}
 	| additive {$ast = $additive.ast;}
 	;
 	catch[Exception e] {
@@ -239,10 +238,10 @@ relational returns [AstExpr ast]
 
 additive returns [AstExpr ast]
 	: a=additive PLUS multiplicative {
-		$ast = new AstBinExpr(loc($a.ast.location(), $multiplicative.ast.location()), AstBinExpr.Oper.ADD, $a.ast, $multiplicative.ast);
+		$ast = new AstBinExpr(loc($a.ast, $multiplicative.ast), AstBinExpr.Oper.ADD, $a.ast, $multiplicative.ast);
 	}
 	| a=additive MINUS multiplicative {
-		$ast = new AstBinExpr(loc($a.ast.location(), $multiplicative.ast.location()), AstBinExpr.Oper.SUB, $a.ast, $multiplicative.ast);
+		$ast = new AstBinExpr(loc($a.ast, $multiplicative.ast), AstBinExpr.Oper.SUB, $a.ast, $multiplicative.ast);
 	}
 	| multiplicative {$ast = $multiplicative.ast;}
 	;
@@ -253,9 +252,9 @@ additive returns [AstExpr ast]
 	}
 
 multiplicative returns [AstExpr ast]
-	: m=multiplicative STAR prefix {$ast = new AstBinExpr(loc($m.ast.location(), $prefix.ast.location()), AstBinExpr.Oper.MUL, $m.ast, $prefix.ast);}
-	| m=multiplicative DIV prefix {$ast = new AstBinExpr(loc($m.ast.location(), $prefix.ast.location()), AstBinExpr.Oper.DIV, $m.ast, $prefix.ast);}
-	| m=multiplicative MOD prefix {$ast = new AstBinExpr(loc($m.ast.location(), $prefix.ast.location()), AstBinExpr.Oper.MOD, $m.ast, $prefix.ast);}
+	: m=multiplicative STAR prefix {$ast = new AstBinExpr(loc($m.ast, $prefix.ast), AstBinExpr.Oper.MUL, $m.ast, $prefix.ast);}
+	| m=multiplicative DIV prefix {$ast = new AstBinExpr(loc($m.ast, $prefix.ast), AstBinExpr.Oper.DIV, $m.ast, $prefix.ast);}
+	| m=multiplicative MOD prefix {$ast = new AstBinExpr(loc($m.ast, $prefix.ast), AstBinExpr.Oper.MOD, $m.ast, $prefix.ast);}
 	| prefix {$ast = $prefix.ast;}
 	;
 	catch[Exception e] {
@@ -265,11 +264,11 @@ multiplicative returns [AstExpr ast]
 	}
 
 prefix returns [AstExpr ast]
-	: NOT p=prefix {$ast = new AstPfxExpr(loc($NOT, $p.ast.location()), AstPfxExpr.Oper.NOT, $p.ast);}
-	| PLUS p=prefix {$ast = new AstPfxExpr(loc($PLUS, $p.ast.location()), AstPfxExpr.Oper.ADD, $p.ast);}
-	| MINUS p=prefix {$ast = new AstPfxExpr(loc($MINUS, $p.ast.location()), AstPfxExpr.Oper.SUB, $p.ast);}
-	| CARET p=prefix {$ast = new AstPfxExpr(loc($CARET, $p.ast.location()), AstPfxExpr.Oper.PTR, $p.ast);}
-	| LESS type GREATER p=prefix {$ast = new AstCastExpr(loc($LESS, $p.ast.location()), $type.ast, $p.ast);}
+	: NOT p=prefix {$ast = new AstPfxExpr(loc($NOT, $p.ast), AstPfxExpr.Oper.NOT, $p.ast);}
+	| PLUS p=prefix {$ast = new AstPfxExpr(loc($PLUS, $p.ast), AstPfxExpr.Oper.ADD, $p.ast);}
+	| MINUS p=prefix {$ast = new AstPfxExpr(loc($MINUS, $p.ast), AstPfxExpr.Oper.SUB, $p.ast);}
+	| CARET p=prefix {$ast = new AstPfxExpr(loc($CARET, $p.ast), AstPfxExpr.Oper.PTR, $p.ast);}
+	| LESS type GREATER p=prefix {$ast = new AstCastExpr(loc($LESS, $p.ast), $type.ast, $p.ast);}
 	| postfix {$ast = $postfix.ast;}
 	;
 	catch[Exception e] {
@@ -279,9 +278,9 @@ prefix returns [AstExpr ast]
 	}
 
 postfix returns [AstExpr ast]
-	: p=postfix CARET {$ast = new AstSfxExpr(loc($p.ast.location(), $CARET), AstSfxExpr.Oper.PTR, $p.ast);}
-	| p=postfix DOT IDENTIFIER {$ast = new AstCmpExpr(loc($p.ast.location(), $IDENTIFIER), $p.ast, $IDENTIFIER.text);}
-	| p=postfix LEFTBRACKET expression RIGHTBRACKET {$ast = new AstArrExpr(loc($p.ast.location(), $RIGHTBRACKET), $p.ast, $expression.ast);}
+	: p=postfix CARET {$ast = new AstSfxExpr(loc($p.ast, $CARET), AstSfxExpr.Oper.PTR, $p.ast);}
+	| p=postfix DOT IDENTIFIER {$ast = new AstCmpExpr(loc($p.ast, $IDENTIFIER), $p.ast, $IDENTIFIER.text);}
+	| p=postfix LEFTBRACKET expression RIGHTBRACKET {$ast = new AstArrExpr(loc($p.ast, $RIGHTBRACKET), $p.ast, $expression.ast);}
 	| sizeparen {$ast = $sizeparen.ast;}
 	;
 	catch[Exception e] {
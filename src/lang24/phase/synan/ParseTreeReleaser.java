@@ -0,0 +1,63 @@
+package lang24.phase.synan;
+
+import java.lang.reflect.*;
+import java.util.*;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.tree.*;
+import lang24.common.report.*;
+
+/**
+ * A parse listener that releases the parse tree as the parse goes.
+ *
+ * The abstract syntax tree is built by the actions of the parser: once a rule
+ * is exited, its results (the abstract syntax tree and lists of its parts) are
+ * all its parent needs, while the contexts of its subrules and its tokens are
+ * not needed anymore. Hence all references to them are cleared when the rule
+ * is exited. If the parser does not build the parse tree, i.e., it does not
+ * link contexts to their children, the parse tree is released as soon as it is
+ * not needed, and only the contexts of the rules being parsed (and their
+ * immediate subrules) are kept at any moment.
+ */
+class ParseTreeReleaser implements ParseTreeListener {
+
+	/** The fields referring to subrules and tokens of each kind of context. */
+	private static final ClassValue<Field[]> fields = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(final Class<?> ctxClass) {
+			final Vector<Field> fields = new Vector<Field>();
+			for (final Field field : ctxClass.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+					continue;
+				if (ParserRuleContext.class.isAssignableFrom(field.getType())
+						|| Token.class.isAssignableFrom(field.getType()))
+					fields.add(field);
+			}
+			return fields.toArray(new Field[0]);
+		}
+	};
+
+	@Override
+	public void enterEveryRule(final ParserRuleContext ctx) {
+	}
+
+	@Override
+	public void exitEveryRule(final ParserRuleContext ctx) {
+		try {
+			for (final Field field : fields.get(ctx.getClass()))
+				field.set(ctx, null);
+		} catch (final IllegalAccessException __) {
+			throw new Report.InternalError();
+		}
+		ctx.start = null;
+		ctx.stop = null;
+	}
+
+	@Override
+	public void visitTerminal(final TerminalNode node) {
+	}
+
+	@Override
+	public void visitErrorNode(final ErrorNode node) {
+	}
+
+}
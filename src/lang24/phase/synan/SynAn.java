@@ -1,8 +1,11 @@
 package lang24.phase.synan;
 
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.*;
 import org.antlr.v4.runtime.tree.*;
+import lang24.*;
 import lang24.common.report.*;
+import lang24.data.ast.tree.*;
 import lang24.data.token.*;
 import lang24.phase.*;
 import lang24.phase.lexan.*;
@@ -13,20 +16,32 @@ import lang24.phase.lexan.*;
 public class SynAn extends Phase {
 
 	/** The parse tree. */
-	public static Lang24Parser.SourceContext tree;
+	public static final Compilation.Local<Lang24Parser.SourceContext> tree = new Compilation.Local<Lang24Parser.SourceContext>(
+			() -> null);
 
 	/** The ANTLR parser that actually performs syntax analysis. */
 	public final Lang24Parser parser;
 
+	/** Whether parsing has fallen back to LL prediction. */
+	private boolean fallenBack = false;
+
 	/**
-	 * Phase construction: sets up logging and the ANTLR lexer and parser.
+	 * Phase construction: sets up logging and the ANTLR lexer and parser. Unless
+	 * the parse tree is logged, it is not built and the parser releases the
+	 * contexts of rules as soon as their abstract syntax trees have been built
+	 * (see {@link ParseTreeReleaser}), so that the parse tree and the abstract
+	 * syntax tree are not both kept in memory.
 	 * 
 	 * @param lexan The lexical analyzer.
 	 */
 	public SynAn(final LexAn lexan) {
 		super("synan");
-		parser = new Lang24Parser(new CommonTokenStream(lexan.lexer));
-		
+		parser = new Lang24Parser(lexan.tokens);
+		if (logger == null) {
+			parser.setBuildParseTree(false);
+			parser.addParseListener(new ParseTreeReleaser());
+		}
+
 		parser.setErrorHandler(new BailErrorStrategy());
 		parser.removeErrorListeners();
 		// parser.addErrorListener(new BaseErrorListener() {
@@ -38,6 +53,54 @@ public class SynAn extends Phase {
 		// });
 	}
 
+	/**
+	 * Parses the source file in two stages: using SLL prediction first and, if
+	 * that fails, using LL prediction. SLL prediction is much faster but might
+	 * fail on some valid inputs, while LL prediction fails only if the input is
+	 * not valid. Hence the outcome is the same as if LL prediction were used from
+	 * the start.
+	 * 
+	 * @return The parse tree.
+	 */
+	public Lang24Parser.SourceContext parse() {
+		return parse(true);
+	}
+
+	/**
+	 * Parses the source file.
+	 * 
+	 * @param twoStage Whether SLL prediction is tried first (see {@link #parse()})
+	 *                 or LL prediction is used from the start.
+	 * @return The parse tree.
+	 */
+	public Lang24Parser.SourceContext parse(final boolean twoStage) {
+		if (twoStage) {
+			final int numNodes = AstNode.numNodes();
+			parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+			try {
+				return parser.source();
+			} catch (final Report.Error __) {
+				// Either SLL prediction failed or the input is not valid, LL
+				// prediction tells which.
+				fallenBack = true;
+				AstNode.abandonNodes(numNodes);
+				parser.reset();
+			}
+		}
+		parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+		return parser.source();
+	}
+
+	/**
+	 * Returns whether parsing has fallen back to LL prediction.
+	 * 
+	 * @return {@code true} if parsing has fallen back to LL prediction,
+	 *         {@code false} otherwise.
+	 */
+	public boolean fallenBack() {
+		return fallenBack;
+	}
+
 	/**
 	 * Logs a parse tree.
 	 * 
@@ -50,6 +113,20 @@ public class SynAn extends Phase {
 			final TerminalNodeImpl node = (TerminalNodeImpl) tree;
 			((LocLogToken) (node.getPayload())).log(logger);
 		}
+		if (tree instanceof Lang24Parser.DefinitionsContext || tree instanceof Lang24Parser.StatementsContext) {
+			// Lists are parsed by loops but logged as right recursive lists, one
+			// node per element, as they are defined in the language grammar.
+			final ParserRuleContext node = (ParserRuleContext) tree;
+			final int numChildren = node.getChildCount();
+			for (int i = 0; i < numChildren; i++) {
+				logger.begElement("node");
+				logger.addAttribute("label", Lang24Parser.ruleNames[node.getRuleIndex()]);
+				log(node.getChild(i));
+			}
+			for (int i = 0; i < numChildren; i++)
+				logger.endElement();
+			return;
+		}
 		if (tree instanceof ParserRuleContext) {
 			final ParserRuleContext node = (ParserRuleContext) tree;
 			logger.begElement("node");
@@ -32,6 +32,59 @@
  * <li><code>--xsl=</code><i>dir-name</i>: The directory where xsl templates
  * used by generated xml report files are stored.</li>
  * 
+ * <li><code>--profile=</code>[<i>file-name</i>]: Record the time, the
+ * allocation and the heap size of each phase together with phase-specific
+ * counters and write them to the specified JSON file (by default the
+ * destination file name with suffix <code>-profile.json</code>; see
+ * {@link lang24.common.profile.Profiler}).</li>
+ * 
+ * <li><code>--opt-level=</code><i>level</i> or <code>-O</code><i>level</i>:
+ * The optimization level of intermediate code, from 0 (default, no
+ * optimization) to 2; <code>-O</code> alone stands for level 1 (see
+ * {@link lang24.phase.imcopt.PassManager}). From level 1 on, scalar local
+ * variables whose address is never needed are also kept in temporary variables
+ * instead of in the frame (see {@link lang24.phase.memory.EscapeAnalysis}).</li>
+ * 
+ * <li><code>--heap-budget=</code><i>megabytes</i>: Report the peak and the
+ * live heap once each phase is over and stop the compilation as soon as the
+ * live heap exceeds the specified budget (see
+ * {@link lang24.common.profile.Profiler}).</li>
+ * 
+ * <li><code>--cache=</code><i>dir-name</i>: Keep the results of compilations
+ * (the assembly and the logs) in the specified directory and restore them
+ * without running any phase whenever the same source file is compiled with the
+ * same options by the same compiler again (see {@link lang24.CompileCache}).
+ * On a hit the intermediate code is not interpreted. On a miss the allocated
+ * code of each function is restored if the function has not changed, so only
+ * the changed functions pass through liveness analysis and register allocation
+ * (see {@link lang24.CodeCache}). Not used when profiling.</li>
+ * 
+ * <li><code>--cache-size=</code><i>megabytes</i>: The size limit of the
+ * compile cache (by default 256 MB).</li>
+ * 
+ * <li><code>--compact-ast</code>: Pack the abstract syntax tree into parallel
+ * arrays once it is built and run all subsequent phases on its materialization
+ * (see {@link lang24.data.ast.compact.CompactAst}).</li>
+ * 
+ * <li><code>--parallel=</code>[<i>number</i>]: Once all top-level names and
+ * types are resolved, type-check and translate the bodies of top-level functions
+ * in parallel using the specified number of threads (by default the number of
+ * available processors); anonymous labels and temporary variables are numbered
+ * in per-function blocks, so the result does not depend on the schedule of
+ * threads (see
+ * {@link lang24.phase.FunctionTasks}).</li>
+ * 
+ * <li><code>--server=</code><i>port</i>: Keep the compiler running and compile
+ * the requests received on the local socket at the specified port (see
+ * {@link lang24.CompileServer}).</li>
+ * 
+ * <li><code>--batch=</code><i>dir-or-file-name</i>: Compile all source files
+ * within the specified directory or listed (one per line) in the specified file
+ * concurrently and report the throughput (see {@link lang24.BatchCompiler}).</li>
+ * 
+ * <li><code>--threads=</code><i>number</i>: The number of threads used in batch
+ * mode (by default the number of available processors).</li>
+ * 
  * </ul>
  * 
  * The source file can be specified by its name only, i.e., without
@@ -42,5 +95,7 @@
  */
 module lang24compiler {
 	requires java.xml;
+	requires java.management;
+	requires jdk.management;
 	requires antlr;
 }